@@ -1,5 +1,6 @@
 package codes.thischwa.bcs.conf;
 
+import org.jspecify.annotations.Nullable;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -11,9 +12,19 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * @param cron             The cron expression for scheduling tasks.
  * @param runOnStart       A flag indicating whether the associated task should run on application
  *                         startup.
+ * @param stateDir         The directory of the local state files, e.g. the card store. If not set,
+ *                         the state is kept in memory only.
+ * @param reconcileIntervalInHours The interval in hours in which the birthday calendar is read
+ *                         completely from the server to catch changes made by others. In between,
+ *                         the events written by BCS are taken from the calendar store. A value less
+ *                         than 1 reads the calendar on each run.
+ * @param metricsPort      The port on which the metrics are served for Prometheus at `/metrics`. If
+ *                         not set, the metrics aren't exported.
  */
 @ConfigurationProperties(prefix = "bcs")
-public record BcsConf(String product, String calendarCategory, String cron, boolean runOnStart) {
+public record BcsConf(String product, String calendarCategory, String cron, boolean runOnStart,
+                      @Nullable String stateDir, @Nullable Integer reconcileIntervalInHours,
+                      @Nullable Integer metricsPort) {
 
   public String getProdId() {
     return String.format("-//%s//iCal4j 1.0//EN", product);
@@ -1,5 +1,7 @@
 package codes.thischwa.bcs.conf;
 
+import java.time.Duration;
+import org.jspecify.annotations.Nullable;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -13,11 +15,104 @@ import org.springframework.web.util.UriComponentsBuilder;
  * @param cardUrl             The URL for accessing address book services.
  * @param retryDelayInSeconds The delay in seconds for scheduled tasks or updates.
  * @param maxRetries          The maximum number of trials for a specific operation.
+ * @param multigetBatchSize   The number of vCards or events fetched per addressbook-multiget or
+ *                            calendar-multiget REPORT. A value less than 1 disables the REPORTs,
+ *                            each vCard and event is fetched separately.
+ * @param incrementalSync     Whether the address book is synchronized incrementally by the
+ *                            sync-collection REPORT (RFC 6578).
+ * @param birthdayQuery       Whether only the vCards with a birthday are requested by the
+ *                            addressbook-query REPORT.
+ * @param fetchParallelism    The maximum number of vCards fetched at the same time. A value less
+ *                            than 2 fetches the vCards sequentially.
+ * @param changeProbe         Whether a run is skipped if the ctags or sync tokens of the address
+ *                            book and the calendar are unchanged since the last successful run.
+ * @param writeParallelism    The maximum number of birthday events written or deleted at the same
+ *                            time. A value less than 2 writes the events sequentially.
+ * @param writeRequestsPerSecond The maximum number of write requests per second. A value less than
+ *                            1 doesn't limit the rate.
+ * @param http                The settings of the HTTP connections, or null for the defaults.
+ * @param transport           The client used for the requests to the DAV server, or null for
+ *                            {@link Transport#SARDINE}.
+ * @param maxRetryDelayInSeconds The maximum delay between the retries of the reachability probe,
+ *                            the delay doubles from `retryDelayInSeconds` up to this value.
+ * @param circuitOpenInSeconds The time the DAV server is regarded as down after the reachability
+ *                            probe failed. Runs are skipped in this time.
  */
 @ConfigurationProperties(prefix = "dav")
 public record DavConf(
     String user, String password, String calUrl, String cardUrl, Integer retryDelayInSeconds,
-    Integer maxRetries) {
+    Integer maxRetries, Integer multigetBatchSize, boolean incrementalSync,
+    boolean birthdayQuery, Integer fetchParallelism, boolean changeProbe,
+    @Nullable Integer writeParallelism, @Nullable Integer writeRequestsPerSecond, @Nullable Http http,
+    @Nullable Transport transport, @Nullable Integer maxRetryDelayInSeconds,
+    @Nullable Integer circuitOpenInSeconds) {
+
+  private static final int DEFAULT_MAX_RETRY_DELAY_IN_SECONDS = 60;
+  private static final int DEFAULT_CIRCUIT_OPEN_IN_SECONDS = 300;
+
+  /**
+   * The clients for the requests to the DAV server.
+   */
+  public enum Transport {
+    /**
+     * Sardine on the blocking Apache HttpClient with a pool of HTTP/1.1 connections.
+     */
+    SARDINE,
+    /**
+     * The HttpClient of the JDK, which uses HTTP/2 if the server supports it and fetches vCards
+     * without blocking threads.
+     */
+    JDK
+  }
+
+  /**
+   * The settings of the pooled HTTP connections to the DAV server. All handlers share one pool.
+   *
+   * @param maxConnections                   The maximum number of connections in total.
+   * @param maxConnectionsPerRoute           The maximum number of connections per host. It's
+   *                                         raised to the fetch or write parallelism, if that is
+   *                                         higher.
+   * @param connectTimeoutInSeconds          The timeout for establishing a connection.
+   * @param socketTimeoutInSeconds           The timeout for waiting for data of a response.
+   * @param connectionTtlInSeconds           The maximum lifetime of a connection.
+   * @param validateAfterInactivityInSeconds The idle time after which a connection is validated
+   *                                         before it's reused.
+   * @param keepAliveInSeconds               The time a connection is kept alive, if the server
+   *                                         doesn't send a 'Keep-Alive' header.
+   * @param idleTimeoutInSeconds             The idle time after which a connection is evicted from
+   *                                         the pool.
+   * @param preemptiveAuth                   Whether the credentials are sent by Basic
+   *                                         authentication with the first request to the server,
+   *                                         without waiting for a challenge.
+   */
+  public record Http(int maxConnections, int maxConnectionsPerRoute, int connectTimeoutInSeconds,
+                     int socketTimeoutInSeconds, int connectionTtlInSeconds,
+                     int validateAfterInactivityInSeconds, int keepAliveInSeconds, int idleTimeoutInSeconds,
+                     boolean preemptiveAuth) {
+
+    /**
+     * The default settings, the same as in the application.yml.
+     */
+    public static final Http DEFAULT = new Http(20, 10, 10, 60, 300, 2, 30, 60, true);
+  }
+
+  /**
+   * Retrieves the settings of the HTTP connections.
+   *
+   * @return the configured settings, or the defaults if not configured
+   */
+  public Http getHttp() {
+    return http != null ? http : Http.DEFAULT;
+  }
+
+  /**
+   * Retrieves the client used for the requests to the DAV server.
+   *
+   * @return the configured client, or {@link Transport#SARDINE} if not configured
+   */
+  public Transport getTransport() {
+    return transport != null ? transport : Transport.SARDINE;
+  }
 
   /**
    * Retrieves the base URL derived from the `cardUrl` property. It removes any path, query,
@@ -37,4 +132,22 @@ public record DavConf(
   public long getRetryDelayInMillis() {
     return retryDelayInSeconds * 1000L;
   }
+
+  /**
+   * Retrieves the maximum delay between the retries of the reachability probe.
+   *
+   * @return the configured delay in milliseconds, or 60 seconds if not configured
+   */
+  public long getMaxRetryDelayInMillis() {
+    return (maxRetryDelayInSeconds != null ? maxRetryDelayInSeconds : DEFAULT_MAX_RETRY_DELAY_IN_SECONDS) * 1000L;
+  }
+
+  /**
+   * Retrieves the time the DAV server is regarded as down after the reachability probe failed.
+   *
+   * @return the configured time, or 5 minutes if not configured
+   */
+  public Duration getCircuitOpenDuration() {
+    return Duration.ofSeconds(circuitOpenInSeconds != null ? circuitOpenInSeconds : DEFAULT_CIRCUIT_OPEN_IN_SECONDS);
+  }
 }
@@ -5,6 +5,9 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.MonthDay;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.Getter;
@@ -20,8 +23,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "event")
 public class EventConf {
 
-  private final String summary;
-  private final String description;
+  private final Template summary;
+  private final Template description;
 
   @Nullable
   private @Getter Duration alarmDuration;
@@ -30,6 +33,8 @@ public class EventConf {
 
   private final DateTimeFormatter formatterShort;
 
+  private final List<String> settings;
+
   /**
    * Constructs a new EventConf instance with the specified configuration properties.
    *
@@ -42,8 +47,8 @@ public class EventConf {
    *                        will be set.
    */
   public EventConf(String summary, String description, String dateFormat, String dataFormatShort, String alarm) {
-    this.summary = summary;
-    this.description = description;
+    this.summary = Template.compile(summary);
+    this.description = Template.compile(description);
 
     if (!alarm.isBlank()) {
       Pattern pattern = Pattern.compile("(\\d+)([dh])");
@@ -68,6 +73,17 @@ public class EventConf {
 
     formatter = DateTimeFormatter.ofPattern(dateFormat);
     formatterShort = DateTimeFormatter.ofPattern(dataFormatShort);
+    settings = List.of(summary, description, dateFormat, dataFormatShort, alarm);
+  }
+
+  /**
+   * Retrieves the settings which affect the content of the generated events, e.g. to detect a
+   * changed configuration.
+   *
+   * @return the templates, the date formats and the alarm as configured
+   */
+  public List<String> getSettings() {
+    return settings;
   }
 
   /**
@@ -79,7 +95,7 @@ public class EventConf {
    *     details.
    */
   public String generateSummary(Contact contact) {
-    return replace(summary, contact);
+    return summary.render(contact, this);
   }
 
   /**
@@ -91,14 +107,77 @@ public class EventConf {
    *     person's details.
    */
   public String generateDescription(Contact contact) {
-    return replace(description, contact);
+    return description.render(contact, this);
   }
 
-  private String replace(String template, Contact contact) {
-    String birthdayStr = (contact.birthday() instanceof MonthDay) ? formatterShort.format(contact.birthday()) :
+  private String formatBirthday(Contact contact) {
+    return (contact.birthday() instanceof MonthDay) ? formatterShort.format(contact.birthday()) :
         formatter.format(contact.birthday());
-    return template.replace("~first-name~", contact.firstName())
-        .replace("~last-name~", contact.lastName()).replace("~display-name~", contact.displayName())
-        .replace("~birthday~", birthdayStr);
+  }
+
+  /**
+   * The placeholders which can be used in the templates.
+   */
+  private enum Placeholder {
+    FIRST_NAME("~first-name~"),
+    LAST_NAME("~last-name~"),
+    DISPLAY_NAME("~display-name~"),
+    BIRTHDAY("~birthday~");
+
+    private final String token;
+
+    Placeholder(String token) {
+      this.token = token;
+    }
+  }
+
+  /**
+   * A template precompiled into its literal texts and the placeholders in between, so it's rendered
+   * in a single pass without searching the placeholders for each contact.
+   *
+   * @param literals     The literal texts, one more than placeholders.
+   * @param placeholders The placeholders, each of them follows the literal text of the same index.
+   */
+  private record Template(String[] literals, Placeholder[] placeholders) {
+
+    static Template compile(String template) {
+      List<String> literals = new ArrayList<>();
+      List<Placeholder> placeholders = new ArrayList<>();
+      int start = 0;
+      while (true) {
+        Placeholder next = null;
+        int nextIndex = -1;
+        for (Placeholder placeholder : Placeholder.values()) {
+          int index = template.indexOf(placeholder.token, start);
+          if (index >= 0 && (nextIndex < 0 || index < nextIndex)) {
+            next = placeholder;
+            nextIndex = index;
+          }
+        }
+        if (next == null) {
+          literals.add(template.substring(start));
+          return new Template(literals.toArray(new String[0]), placeholders.toArray(new Placeholder[0]));
+        }
+        literals.add(template.substring(start, nextIndex));
+        placeholders.add(next);
+        start = nextIndex + next.token.length();
+      }
+    }
+
+    String render(Contact contact, EventConf conf) {
+      StringBuilder result = new StringBuilder(64);
+      result.append(literals[0]);
+      for (int i = 0; i < placeholders.length; i++) {
+        result.append(switch (placeholders[i]) {
+          // a missing name is rendered as an empty text instead of 'null'
+          case FIRST_NAME -> Objects.requireNonNullElse(contact.firstName(), "");
+          case LAST_NAME -> Objects.requireNonNullElse(contact.lastName(), "");
+          case DISPLAY_NAME -> Objects.requireNonNullElse(contact.displayName(), "");
+          case BIRTHDAY -> conf.formatBirthday(contact);
+        });
+        result.append(literals[i + 1]);
+      }
+      return result.toString();
+    }
   }
 }
\ No newline at end of file
@@ -15,6 +15,9 @@ public class BirthdayCalGenerator {
 
   private final CalHandler calHandler;
   private final CardHandler cardHandler;
+  private final ChangeProbe changeProbe;
+  private final SardineInitializer sardineInitializer;
+  private final SyncMetrics metrics;
 
   /**
    * Constructs an instance of BirthdayCalGenerator, which is responsible for managing and
@@ -24,10 +27,17 @@ public class BirthdayCalGenerator {
    *                    generating calendar files
    * @param cardHandler the handler responsible for managing and reading card data (e.g., people
    *                    with birthdays)
+   * @param changeProbe the probe which detects whether anything changed since the last run
+   * @param sardineInitializer the initializer of the shared client, which counts the requests
+   * @param metrics     the metrics, which record the time of the last successful run
    */
-  public BirthdayCalGenerator(CalHandler calHandler, CardHandler cardHandler) {
+  public BirthdayCalGenerator(CalHandler calHandler, CardHandler cardHandler, ChangeProbe changeProbe,
+                              SardineInitializer sardineInitializer, SyncMetrics metrics) {
     this.calHandler = calHandler;
     this.cardHandler = cardHandler;
+    this.changeProbe = changeProbe;
+    this.sardineInitializer = sardineInitializer;
+    this.metrics = metrics;
   }
 
   /**
@@ -36,14 +46,39 @@ public class BirthdayCalGenerator {
    * <p>This method retrieves a list of people with birthdays from the card handler and syncs these
    * details with the calendar using the calendar handler. It ensures that all birthday events
    * in the calendar reflect any changes in the underlying data source, such as additions,
-   * updates, or deletions of birthdays.
+   * updates, or deletions of birthdays. If neither the address book nor the calendar nor the
+   * configuration changed since the last successful run, the synchronization is skipped, which
+   * counts as a successful run. It's
+   * skipped, too, while the dav server is regarded as down after a failed reachability probe.
    *
    * @throws IOException if an I/O error occurs during synchronization operations.
    */
   public void processBirthdayEvents() throws IOException {
-    log.info("Syncing birthday events ...");
-    List<Contact> people = cardHandler.readContactsWithBirthday();
-    calHandler.syncEventsWithBirthdayChanges(people);
-    log.info("Synced birthday events successfully.");
+    if (!sardineInitializer.beginRun()) {
+      log.info("The dav server is regarded as down. Sync skipped.");
+      return;
+    }
+    sardineInitializer.getAndResetRequestStats();
+    try {
+      ChangeProbe.Tags tags = changeProbe.probe(calHandler.configFingerprint());
+      if (changeProbe.isUnchanged(tags)) {
+        log.info("Address book and calendar are unchanged since the last run. Sync skipped.");
+        metrics.syncSucceeded();
+        return;
+      }
+      log.info("Syncing birthday events ...");
+      List<Contact> people = cardHandler.readContactsWithBirthday();
+      calHandler.syncEventsWithBirthdayChanges(people);
+      changeProbe.record(tags);
+      metrics.syncSucceeded();
+      log.info("Synced birthday events successfully.");
+    } catch (IOException | RuntimeException e) {
+      metrics.failure("sync");
+      throw e;
+    } finally {
+      RequestCounter.Stats stats = sardineInitializer.getAndResetRequestStats();
+      log.info("Requests to the dav server: {}, answered with an authentication challenge: {}",
+          stats.requests(), stats.authChallenges());
+    }
   }
 }
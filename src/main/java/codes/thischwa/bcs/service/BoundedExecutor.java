@@ -0,0 +1,102 @@
+package codes.thischwa.bcs.service;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Runs tasks with a bounded parallelism. Virtual threads are used if the runtime provides them
+ * (Java 21+), otherwise a fixed thread pool is used. In both cases, not more than the given number
+ * of tasks run at the same time, so the DAV server isn't flooded with requests.
+ *
+ * <p>An instance is meant for a single batch of tasks and must be closed afterward.
+ */
+@Slf4j
+final class BoundedExecutor implements AutoCloseable {
+
+  private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+  private final ExecutorService executor;
+  private final Semaphore permits;
+
+  /**
+   * Constructs a new BoundedExecutor.
+   *
+   * @param parallelism the maximum number of tasks running at the same time
+   * @param name        the name prefix of the threads
+   */
+  BoundedExecutor(int parallelism, String name) {
+    this.permits = new Semaphore(parallelism);
+    ExecutorService virtualExecutor = newVirtualThreadExecutor();
+    this.executor = (virtualExecutor != null) ? virtualExecutor
+        : Executors.newFixedThreadPool(parallelism, newThreadFactory(name));
+  }
+
+  /**
+   * Runs all tasks and waits for their results. If a task fails, the remaining tasks are cancelled.
+   *
+   * @param tasks the tasks to run
+   * @param <T>   the result type of the tasks
+   * @return the results in the order of the tasks
+   * @throws ExecutionException   if a task failed, the cause is the exception of the first failed
+   *                              task in the order of the tasks
+   * @throws InterruptedException if the current thread was interrupted while waiting
+   */
+  <T> List<T> invokeAll(List<Callable<T>> tasks) throws ExecutionException, InterruptedException {
+    List<Future<T>> futures = new ArrayList<>(tasks.size());
+    for (Callable<T> task : tasks) {
+      futures.add(executor.submit(() -> {
+        permits.acquire();
+        try {
+          return task.call();
+        } finally {
+          permits.release();
+        }
+      }));
+    }
+    List<T> results = new ArrayList<>(tasks.size());
+    try {
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+    return results;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private static @Nullable ExecutorService newVirtualThreadExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      log.trace("Virtual threads aren't available: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  private static ThreadFactory newThreadFactory(String name) {
+    String prefix = name + "-" + POOL_COUNTER.incrementAndGet() + "-";
+    AtomicInteger threadCounter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -4,33 +4,29 @@ import codes.thischwa.bcs.Contact;
 import codes.thischwa.bcs.conf.BcsConf;
 import codes.thischwa.bcs.conf.DavConf;
 import codes.thischwa.bcs.conf.EventConf;
-import com.github.sardine.Sardine;
+import com.github.sardine.DavResource;
+import com.github.sardine.impl.SardineException;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import javax.xml.namespace.QName;
 import lombok.extern.slf4j.Slf4j;
-import net.fortuna.ical4j.model.Calendar;
-import net.fortuna.ical4j.model.Recur;
-import net.fortuna.ical4j.model.component.VAlarm;
-import net.fortuna.ical4j.model.component.VEvent;
-import net.fortuna.ical4j.model.property.Action;
-import net.fortuna.ical4j.model.property.CalScale;
-import net.fortuna.ical4j.model.property.Categories;
-import net.fortuna.ical4j.model.property.Description;
-import net.fortuna.ical4j.model.property.ProdId;
-import net.fortuna.ical4j.model.property.RRule;
-import net.fortuna.ical4j.model.property.Status;
-import net.fortuna.ical4j.model.property.Summary;
-import net.fortuna.ical4j.model.property.Transp;
-import net.fortuna.ical4j.model.property.Uid;
-import net.fortuna.ical4j.model.property.Version;
-import net.fortuna.ical4j.transform.recurrence.Frequency;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.jspecify.annotations.Nullable;
 import org.springframework.stereotype.Service;
 
 /**
@@ -44,12 +40,13 @@ import org.springframework.stereotype.Service;
 public class CalHandler {
 
   public static final String CALENDAR_CONTENT_TYPE = "text/calendar";
+  private static final QName ETAG_PROPERTY = new QName(DavReport.NS_DAV, "getetag");
   private final BcsConf conf;
   private final EventConf eventConf;
   private final DavConf davConf;
   private final SardineInitializer sardineInitializer;
-
-  private record ExistingEventData(Map<String, VEvent> existingEvents, Map<String, URL> existingEventUris) {}
+  private final CalStore calStore;
+  private final SyncMetrics metrics;
 
   /**
    * Constructor for the CalHandler class.
@@ -58,173 +55,344 @@ public class CalHandler {
    * @param eventConf          The configuration object for defining event-related settings.
    * @param davConf            The configuration object containing WebDAV user and password
    *                           details.
-   * @param sardineInitializer The initializer for {@link Sardine}.
+   * @param sardineInitializer The initializer of the {@link DavTransport}.
+   * @param calStore           The store of the events written by BCS.
+   * @param metrics            The metrics of the diff and the written events.
    */
   CalHandler(BcsConf conf, EventConf eventConf, DavConf davConf,
-             SardineInitializer sardineInitializer) {
+             SardineInitializer sardineInitializer, CalStore calStore, SyncMetrics metrics) {
     this.conf = conf;
     this.eventConf = eventConf;
     this.davConf = davConf;
     this.sardineInitializer = sardineInitializer;
+    this.calStore = calStore;
+    this.metrics = metrics;
   }
 
+  /**
+   * Syncs the birthday events with the contacts. The {@link SyncDiff} compares the contacts with the
+   * existing events and builds the {@link SyncPlan}, which is applied afterward. The contacts and the
+   * plan are held in memory completely.
+   *
+   * @param contacts the contacts with a birthday
+   * @throws IOException if the events can't be read or some events can't be written
+   */
   void syncEventsWithBirthdayChanges(List<Contact> contacts) throws IOException {
     if (!sardineInitializer.canAccessBaseUrl()) {
       log.error("Access to {} timed out after {} trails.", davConf.getBaseUrl(), davConf.maxRetries());
       throw new IllegalArgumentException("Access to " + davConf.getBaseUrl() + " timed out.");
     }
-    Sardine sardine = sardineInitializer.getSardine();
-    log.info("Syncing birthday events of {} contacts.", contacts.size());
-
-    Map<VEvent, URL> allBirthdayEvents = CalUtil.collectBirthdayEvents(sardine, davConf.calUrl());
-    ExistingEventData eventData = buildExistingEventData(allBirthdayEvents);
+    DavTransport transport = sardineInitializer.getTransport();
 
-    deleteOutdatedEvents(sardine, contacts, eventData);
-    List<Contact> changedPeople = findChangedContacts(contacts, eventData.existingEvents());
-
-    if (changedPeople.isEmpty()) {
-      log.info("No birthday events to update found. Sync stopped.");
-      return;
+    List<Failure> failures;
+    try {
+      Map<String, EventRef> existingEvents = readExistingEvents(transport);
+      Timer.Sample sample = metrics.start();
+      SyncPlan plan;
+      try {
+        plan = new SyncDiff(this::isChanged).diff(contacts, existingEvents.values());
+      } finally {
+        metrics.stop(sample, SyncMetrics.Phase.DIFF);
+      }
+      if (plan.isEmpty()) {
+        log.info("No birthday events to update found. Sync stopped.");
+        return;
+      }
+      log.info("Syncing birthday events: {}.", plan);
+      failures = applyPlan(transport, plan);
+    } finally {
+      // the events written so far are stored even if the sync fails
+      calStore.save();
+    }
+    if (!failures.isEmpty()) {
+      failures.forEach(failure -> metrics.failure(failure.operation()));
+      StringBuilder summary = new StringBuilder();
+      failures.forEach(failure -> summary.append("\n  ").append(failure));
+      log.error("Failed to write {} birthday events:{}", failures.size(), summary);
+      throw new IOException("Failed to write " + failures.size() + " birthday events.");
     }
-
-    updateChangedEvents(sardine, changedPeople, eventData.existingEventUris());
   }
 
-  private ExistingEventData buildExistingEventData(Map<VEvent, URL> allBirthdayEvents) {
-    Map<String, VEvent> existingEvents = new HashMap<>();
-    Map<String, URL> existingEventUris = new HashMap<>();
+  /**
+   * A failed write of a birthday event.
+   *
+   * @param operation The operation, e.g. 'delete'.
+   * @param target    The name of the contact or the href of the event.
+   * @param message   The message of the exception.
+   */
+  record Failure(String operation, String target, @Nullable String message) {
 
-    for (Map.Entry<VEvent, URL> entry : allBirthdayEvents.entrySet()) {
-      String uuid = CalUtil.extractContactsUuidFromEvent(entry.getKey());
-      existingEvents.put(uuid, entry.getKey());
-      String eventId = NetUtil.extractUuId(entry.getValue());
-      existingEventUris.put(eventId, allBirthdayEvents.get(entry.getKey()));
+    @Override
+    public String toString() {
+      return operation + " '" + target + "': " + message;
     }
-
-    return new ExistingEventData(existingEvents, existingEventUris);
   }
 
-  private void deleteOutdatedEvents(Sardine sardine, List<Contact> contacts, ExistingEventData eventData) {
-    Map<String, Contact> existingContacts = new HashMap<>();
-    contacts.forEach(contact -> existingContacts.put(contact.identifier(), contact));
+  /**
+   * Reads the existing events from the {@link CalStore}. If a reconciliation is due, the events are
+   * read from the server and replace the stored ones.
+   */
+  private Map<String, EventRef> readExistingEvents(DavTransport transport) throws IOException {
+    Instant now = Instant.now();
+    Integer intervalInHours = conf.reconcileIntervalInHours();
+    if (!calStore.isReconciliationDue(now, intervalInHours == null ? null : Duration.ofHours(intervalInHours))) {
+      Map<String, EventRef> storedEvents = calStore.getEvents();
+      log.info("Existing birthday events taken from the calendar store: {}", storedEvents.size());
+      return storedEvents;
+    }
+    Map<String, EventRef> serverEvents = CalUtil.collectEventRefs(transport, davConf.calUrl(),
+        davConf.multigetBatchSize());
+    log.info("Existing birthday events read from the server: {}", serverEvents.size());
+    calStore.reconcile(serverEvents, now);
+    return serverEvents;
+  }
 
-    eventData.existingEvents().keySet().forEach(eventUuid -> {
-      if (!existingContacts.containsKey(eventUuid)) {
-        deleteEvent(sardine, eventData.existingEventUris().get(eventUuid));
+  /**
+   * Writes the new and outdated events of the plan and deletes the events without a contact
+   * afterward, which is safe, because both affect different UIDs.
+   */
+  private List<Failure> applyPlan(DavTransport transport, SyncPlan plan) throws IOException {
+    List<Callable<@Nullable Failure>> writes = new ArrayList<>(plan.creates().size() + plan.updates().size());
+    for (Contact contact : plan.creates()) {
+      if (contact.identifier() == null) {
+        throw new IllegalArgumentException("Contact identifier must not be null.");
       }
-    });
+      writes.add(() -> updateEvent(transport, contact, null));
+    }
+    for (SyncPlan.Update update : plan.updates()) {
+      writes.add(() -> updateEvent(transport, update.contact(), update.existingEvent()));
+    }
+    List<Callable<@Nullable Failure>> deletes = new ArrayList<>(plan.deletes().size());
+    for (EventRef eventRef : plan.deletes()) {
+      deletes.add(() -> deleteEvent(transport, eventRef));
+    }
+    List<Failure> failures = new ArrayList<>(runWriteTasks(writes, "cal-upload"));
+    failures.addAll(runWriteTasks(deletes, "cal-delete"));
+    return failures;
   }
 
-  private void deleteEvent(Sardine sardine, URL eventUri) {
+  private @Nullable Failure deleteEvent(DavTransport transport, EventRef eventRef) {
     try {
-      sardine.delete(davConf.getBaseUrl() + eventUri.getPath());
-      log.debug("Deleted outdated event: {}", eventUri.getPath());
+      transport.delete(davConf.getBaseUrl() + eventRef.href());
+      log.debug("Deleted outdated event: {}", eventRef.href());
+      metrics.eventDeleted();
+      removeFromStore(eventRef);
+    } catch (SardineException e) {
+      if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+        log.debug("Outdated event was already deleted: {}", eventRef.href());
+        removeFromStore(eventRef);
+      } else {
+        log.error("Failed to delete outdated event: {}", eventRef.href(), e);
+        return new Failure("delete", eventRef.href(), e.getMessage());
+      }
     } catch (IOException e) {
-      log.error("Failed to delete outdated event: {}", eventUri.getPath(), e);
+      log.error("Failed to delete outdated event: {}", eventRef.href(), e);
+      return new Failure("delete", eventRef.href(), e.getMessage());
     }
+    return null;
   }
 
-  private List<Contact> findChangedContacts(List<Contact> contacts, Map<String, VEvent> existingEvents) {
-    List<Contact> changedPeople = new ArrayList<>();
-
-    for (Contact contact : contacts) {
-      VEvent existingEvent = existingEvents.get(contact.identifier());
-      if (existingEvent == null || !CalUtil.isBirthdayEquals(existingEvent, contact)) {
-        changedPeople.add(contact);
-        log.debug("Found new or updated event found for: {}", contact.getFullName());
-      }
+  private void removeFromStore(EventRef eventRef) {
+    try {
+      calStore.remove(eventRef.uid());
+    } catch (IOException e) {
+      log.error("Failed to remove the event from the calendar store: {}", eventRef.href(), e);
     }
+  }
 
-    return changedPeople;
+  private boolean isChanged(Contact contact, @Nullable EventRef existingEvent) {
+    // events without a fingerprint were written by an older version and are rewritten once
+    if (existingEvent == null || !CalUtil.isBirthdayEquals(existingEvent, contact)
+        || !fingerprint(contact).equals(existingEvent.hash())) {
+      log.debug("Found new or updated event found for: {}", contact.getFullName());
+      return true;
+    }
+    return false;
   }
 
-  private void updateChangedEvents(Sardine sardine, List<Contact> changedPeople, Map<String, URL> existingEventUris) throws IOException {
-    for (Contact contact : changedPeople) {
-      Calendar personCal = buildBirthdayCalendar(contact);
-      String uuid = contact.identifier();
-      if (uuid == null) {
-        throw new IllegalArgumentException("Contact identifier must not be null.");
-      }
+  private @Nullable Failure updateEvent(DavTransport transport, Contact contact, @Nullable EventRef existingEvent) {
+    String uuid = contact.identifier();
+    assert uuid != null;
+    String summary = eventConf.generateSummary(contact);
+    String description = eventConf.generateDescription(contact);
+    String fingerprint = fingerprint(contact, summary, description);
+    LocalDate start = TemporalUtil.toEventDate(contact.birthday());
+    byte[] bytes = IcsWriter.write(conf.getProdId(), new IcsWriter.BirthdayEvent(uuid, start, summary, description,
+        conf.calendarCategory(), eventConf.getAlarmDuration(), fingerprint), Instant.now());
 
-      if (existingEventUris.containsKey(uuid)) {
-        URL eventUri = existingEventUris.get(uuid);
-        sardine.delete(davConf.getBaseUrl() + eventUri.getPath());
-        log.debug("Deleted outdated event before add: {}", eventUri.getPath());
+    String eventUrl = davConf.calUrl() + uuid + ".ics";
+    boolean created = existingEvent == null;
+    try {
+      if (existingEvent != null && !existingEvent.href().equals(DavEntry.toPath(eventUrl))) {
+        // the event can't be replaced in place, because it isn't stored at the URL written by BCS
+        transport.delete(davConf.getBaseUrl() + existingEvent.href());
+        log.debug("Deleted outdated event before add: {}", existingEvent.href());
+        existingEvent = null;
       }
 
-      uploadSingleEvent(sardine, personCal, contact);
-      log.info("Added or updated event for: {}", contact.getFullName());
+      String etag = uploadSingleEvent(transport, bytes, contact, eventUrl, existingEvent);
+      calStore.put(new EventRef(uuid, start, DavEntry.toPath(eventUrl), etag, fingerprint));
+    } catch (IOException e) {
+      // a conflict fails the run, so the changes aren't recorded and the next run isn't skipped
+      return new Failure(isPreconditionFailed(e) ? "conflict" : "upload", contact.getFullName(), e.getMessage());
     }
+    metrics.eventWritten(created);
+    log.info("Added or updated event for: {}", contact.getFullName());
+    return null;
   }
 
-  private Calendar buildBirthdayCalendar(Contact contact) {
-    Version version = new Version();
-    version.setValue(Version.VALUE_2_0);
-    Calendar calendar = new Calendar();
-    calendar.add(new ProdId(conf.getProdId()));
-    calendar.add(version);
-    calendar.add(new CalScale(CalScale.VALUE_GREGORIAN)); //
+  /**
+   * Runs the write tasks with the parallelism `dav.write-parallelism` and the rate
+   * `dav.write-requests-per-second`. Each task catches its own errors and returns them as a failure,
+   * so a failed event doesn't abort the others.
+   *
+   * @return the failures of the tasks
+   */
+  private List<Failure> runWriteTasks(List<Callable<@Nullable Failure>> tasks, String name) throws IOException {
+    if (tasks.isEmpty()) {
+      return List.of();
+    }
+    RateLimiter rateLimiter = new RateLimiter(davConf.writeRequestsPerSecond());
+    List<Callable<@Nullable Failure>> limitedTasks = tasks.stream()
+        .<Callable<@Nullable Failure>>map(task -> () -> {
+          rateLimiter.acquire();
+          return task.call();
+        })
+        .toList();
+    Integer writeParallelism = davConf.writeParallelism();
+    int parallelism = Math.min(writeParallelism == null ? 1 : writeParallelism, tasks.size());
+    List<@Nullable Failure> results;
+    try {
+      if (parallelism <= 1) {
+        results = new ArrayList<>(tasks.size());
+        for (Callable<@Nullable Failure> task : limitedTasks) {
+          results.add(task.call());
+        }
+      } else {
+        log.debug("Writing {} events with a parallelism of {}.", tasks.size(), parallelism);
+        try (BoundedExecutor executor = new BoundedExecutor(parallelism, name)) {
+          results = executor.invokeAll(limitedTasks);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing events.");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new IOException(e.getCause());
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+    return results.stream().filter(Objects::nonNull).toList();
+  }
 
-    VEvent birthdayEvent = buildBirthdayEvent(contact);
-    calendar.add(birthdayEvent);
-    return calendar;
+  /**
+   * Builds the fingerprint of the inputs of the birthday event of the contact. It changes if the
+   * event has to be rewritten, e.g. because the summary template, the alarm or the name of the contact
+   * changed.
+   *
+   * @param contact the contact of the birthday event
+   * @return the fingerprint
+   */
+  String fingerprint(Contact contact) {
+    return fingerprint(contact, eventConf.generateSummary(contact), eventConf.generateDescription(contact));
   }
 
-  private Summary buildSummary(Contact contact) {
-    String summary = eventConf.generateSummary(contact);
-    return new Summary(summary);
+  private String fingerprint(Contact contact, String summary, String description) {
+    Duration alarmDuration = eventConf.getAlarmDuration();
+    return CalUtil.fingerprint(Arrays.asList(
+        contact.identifier(),
+        String.valueOf(contact.birthday()),
+        summary,
+        description,
+        alarmDuration == null ? null : alarmDuration.toString(),
+        conf.calendarCategory()));
   }
 
   /**
-   * Builds a VEvent instance for a specified person's birthday. The event is annually repeated.
+   * Builds the fingerprint of the configuration of the birthday events. It changes if all events have
+   * to be rewritten, even though no contact changed.
    *
-   * @param contact the Person object containing the birthday and other related information
-   * @return the constructed VEvent representing the person's birthday
+   * @return the fingerprint
    */
-  private VEvent buildBirthdayEvent(Contact contact) {
-    assert contact.birthday() != null;
-    Summary summary = buildSummary(contact);
-    String description = eventConf.generateDescription(contact);
-
-    // Create the birthday event as an all-day event
-    LocalDate birthday = TemporalUtil.toEventDate(contact.birthday());
-    VEvent birthdayEvent =
-        new VEvent(birthday, Duration.ofDays(1), summary.getValue());
+  String configFingerprint() {
+    List<@Nullable String> settings = new ArrayList<>(eventConf.getSettings());
+    settings.add(conf.getProdId());
+    settings.add(conf.calendarCategory());
+    settings.add(davConf.calUrl());
+    settings.add(davConf.cardUrl());
+    return CalUtil.fingerprint(settings);
+  }
 
-    // add the UID
-    birthdayEvent.add(new Uid(contact.identifier()));
+  /**
+   * Uploads the event by a single conditional PUT. An existing event is replaced in place with
+   * 'If-Match' and its known ETag, a new event is created with 'If-None-Match: *', so a concurrent
+   * change isn't overwritten unnoticed. If a precondition fails, the event isn't written, but a
+   * reconciliation is requested, so the next run compares it with the event on the server.
+   *
+   * @return the ETag of the written event, taken from the response or fetched by PROPFIND if the
+   *     response doesn't contain it, or null if the server doesn't provide any
+   */
+  private @Nullable String uploadSingleEvent(DavTransport transport, byte[] bytes, Contact contact, String eventUrl,
+      @Nullable EventRef existingEvent) throws IOException {
+    // Use byte[] upload to ensure Content-Length is set (some servers reject chunked) and send a minimal Content-Type
+    try {
+      String etag = putEvent(transport, eventUrl, bytes, existingEvent == null,
+          existingEvent == null ? null : existingEvent.etag());
+      if (log.isDebugEnabled()) {
+        log.debug("Uploaded birthday event for '{}': {}\n{}", contact.getFullName(), eventUrl,
+            new String(bytes, StandardCharsets.UTF_8));
+      }
+      return etag == null ? fetchEtag(transport, eventUrl) : etag;
+    } catch (IOException e) {
+      if (isPreconditionFailed(e)) {
+        log.warn("Birthday event for '{}' was changed concurrently, it's skipped until the next reconciliation: {}",
+            contact.getFullName(), eventUrl);
+        calStore.requestReconciliation();
+      } else {
+        log.error("Failed to upload birthday event for '{}': {}\n{}", contact.getFullName(), eventUrl,
+            new String(bytes, StandardCharsets.UTF_8), e);
+      }
+      throw e;
+    }
+  }
 
-    // add the repetition rule
-    birthdayEvent.add(new RRule<>(new Recur.Builder<LocalDate>().frequency(Frequency.YEARLY).build()));
+  private static boolean isPreconditionFailed(IOException e) {
+    return e instanceof SardineException sardineException
+        && sardineException.getStatusCode() == HttpStatus.SC_PRECONDITION_FAILED;
+  }
 
-    if (eventConf.getAlarmDuration() != null) {
-      // build and add an alarm with negative duration (trigger before event)
-      VAlarm alarm = new VAlarm(eventConf.getAlarmDuration());
-      alarm.add(new Action(Action.VALUE_DISPLAY));
-      alarm.add(new Description(description));
-      alarm.add(summary);
-      birthdayEvent.add(alarm);
+  private @Nullable String putEvent(DavTransport transport, String eventUrl, byte[] bytes, boolean create,
+      @Nullable String etag) throws IOException {
+    Map<String, String> headers = new HashMap<>();
+    headers.put(HttpHeaders.CONTENT_TYPE, CALENDAR_CONTENT_TYPE);
+    if (create) {
+      headers.put(HttpHeaders.IF_NONE_MATCH, "*");
+    } else if (etag != null) {
+      headers.put(HttpHeaders.IF_MATCH, etag);
     }
-
-    // add other properties
-    birthdayEvent.add(new Categories(conf.calendarCategory()));
-    birthdayEvent.add(new Transp(Transp.VALUE_TRANSPARENT));
-    birthdayEvent.add(new Description(description));
-    birthdayEvent.add(new Status(Status.VALUE_CONFIRMED));
-    return birthdayEvent;
+    return transport.put(eventUrl, bytes, headers);
   }
 
-  private void uploadSingleEvent(Sardine sardine, Calendar calendar, Contact contact) throws IOException {
-    String eventContent = calendar.toString();
-    String eventUrl = davConf.calUrl() + contact.identifier() + ".ics";
-    // Use byte[] upload to ensure Content-Length is set (some servers reject chunked) and send a minimal Content-Type
-    byte[] bytes = eventContent.getBytes(StandardCharsets.UTF_8);
+  /**
+   * Fetches the current ETag of the event.
+   *
+   * @return the ETag, or null if the event doesn't exist
+   */
+  private @Nullable String fetchEtag(DavTransport transport, String eventUrl) throws IOException {
     try {
-      sardine.put(eventUrl, bytes, CALENDAR_CONTENT_TYPE);
-      log.debug("Uploaded birthday event for '{}': {}\n{}", contact.getFullName(), eventUrl, eventContent);
-    } catch (IOException e) {
-      log.error("Failed to upload birthday event for '{}': {}\n{}", contact.getFullName(), eventUrl, eventContent, e);
+      List<DavResource> resources = transport.propfind(eventUrl, 0, Set.of(ETAG_PROPERTY));
+      return resources.isEmpty() ? null : resources.get(0).getEtag();
+    } catch (SardineException e) {
+      if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+        return null;
+      }
       throw e;
     }
   }
+
 }
@@ -0,0 +1,204 @@
+package codes.thischwa.bcs.service;
+
+import codes.thischwa.bcs.conf.BcsConf;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Local store of the birthday events in the calendar, keyed by their UID. For each event, the href,
+ * the ETag, the fingerprint and the start date are stored.
+ *
+ * <p>Because BCS writes the events to deterministic URLs, it knows the state of the calendar without
+ * reading it on each run. To catch events changed or deleted by others, the calendar is read
+ * completely in the interval `bcs.reconcile-interval-in-hours`, see {@link #isReconciliationDue}.
+ *
+ * <p>If the property `bcs.state-dir` is set, the store is persisted to the file
+ * {@value #FILE_NAME} inside this directory. Otherwise, the store is kept in memory only.
+ */
+@Component
+@Slf4j
+public class CalStore {
+
+  static final String FILE_NAME = "cal-store.tsv";
+
+  /**
+   * The version of the file format. It must be increased if the format changes, so outdated stores
+   * are discarded.
+   */
+  static final String VERSION = "2";
+
+  private static final String TYPE_VERSION = "version";
+  private static final String TYPE_RECONCILED = "reconciled";
+  private static final String TYPE_EVENT = "event";
+
+  private final @Nullable Path file;
+
+  private final Map<String, EventRef> events = new LinkedHashMap<>();
+
+  private @Nullable Instant reconciled;
+
+  private boolean loaded;
+
+  /**
+   * Constructs a new CalStore.
+   *
+   * @param conf The configuration object containing the directory of the state files.
+   */
+  public CalStore(BcsConf conf) {
+    this.file = StringUtils.hasText(conf.stateDir()) ? Path.of(conf.stateDir()).resolve(FILE_NAME) : null;
+  }
+
+  /**
+   * Checks whether the calendar has to be read completely from the server, because it wasn't read
+   * within the given interval.
+   *
+   * @param now      the current time
+   * @param interval the reconciliation interval, null or not positive to reconcile on each run
+   * @return true if the calendar has to be read, false if the stored events can be used
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized boolean isReconciliationDue(Instant now, @Nullable Duration interval) throws IOException {
+    load();
+    return interval == null || interval.isZero() || interval.isNegative() || reconciled == null
+        || !now.isBefore(reconciled.plus(interval));
+  }
+
+  /**
+   * Retrieves the stored events.
+   *
+   * @return a copy of the events keyed by their UID
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized Map<String, EventRef> getEvents() throws IOException {
+    load();
+    return new HashMap<>(events);
+  }
+
+  /**
+   * Replaces the stored events by the events read from the server.
+   *
+   * @param serverEvents the events read from the server, keyed by their UID
+   * @param now          the time the events were read
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized void reconcile(Map<String, EventRef> serverEvents, Instant now) throws IOException {
+    load();
+    events.clear();
+    events.putAll(serverEvents);
+    reconciled = now;
+  }
+
+  /**
+   * Makes the next run read the calendar from the server, e.g. because an event was changed by
+   * others and the stored event is outdated.
+   *
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized void requestReconciliation() throws IOException {
+    load();
+    reconciled = null;
+  }
+
+  /**
+   * Adds or replaces an event written by BCS.
+   *
+   * @param eventRef the reference of the written event
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized void put(EventRef eventRef) throws IOException {
+    load();
+    events.put(eventRef.uid(), eventRef);
+  }
+
+  /**
+   * Removes a deleted event.
+   *
+   * @param uid the UID of the event
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized void remove(String uid) throws IOException {
+    load();
+    events.remove(uid);
+  }
+
+  /**
+   * Persists the store if a state directory is configured.
+   *
+   * @throws IOException if the store can't be written
+   */
+  public synchronized void save() throws IOException {
+    load();
+    if (file == null) {
+      return;
+    }
+    List<@Nullable String[]> records = new ArrayList<>(events.size() + 2);
+    records.add(new String[] {TYPE_VERSION, VERSION});
+    if (reconciled != null) {
+      records.add(new String[] {TYPE_RECONCILED, reconciled.toString()});
+    }
+    events.values().forEach(eventRef -> records.add(toRecord(eventRef)));
+    StateFile.write(file, "BCS calendar store", records);
+    log.debug("Saved {} events to {}", events.size(), file);
+  }
+
+  private void load() throws IOException {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    if (file == null) {
+      return;
+    }
+    Map<String, EventRef> loadedEvents = new LinkedHashMap<>();
+    Instant[] loadedReconciled = new Instant[1];
+    boolean[] validVersion = new boolean[1];
+    boolean exists = StateFile.read(file, fields -> {
+      try {
+        if (TYPE_VERSION.equals(fields[0]) && fields.length == 2) {
+          validVersion[0] = VERSION.equals(fields[1]);
+        } else if (TYPE_RECONCILED.equals(fields[0]) && fields.length == 2 && fields[1] != null) {
+          loadedReconciled[0] = Instant.parse(fields[1]);
+        } else if (TYPE_EVENT.equals(fields[0]) && fields.length == 6 && fields[1] != null && fields[2] != null) {
+          EventRef eventRef = new EventRef(fields[1], fields[5] == null ? null : LocalDate.parse(fields[5]),
+              fields[2], fields[3], fields[4]);
+          loadedEvents.put(eventRef.uid(), eventRef);
+        } else {
+          log.warn("Ignoring invalid record in {}: {}", file, fields[0]);
+        }
+      } catch (DateTimeParseException e) {
+        log.warn("Ignoring invalid record in {}: {}", file, e.getMessage());
+      }
+    });
+    if (!exists) {
+      return;
+    }
+    if (!validVersion[0]) {
+      log.info("Discarding {}, it was written by another version.", file);
+      return;
+    }
+    events.putAll(loadedEvents);
+    reconciled = loadedReconciled[0];
+    log.debug("Loaded {} events from {}", events.size(), file);
+  }
+
+  private static @Nullable String[] toRecord(EventRef eventRef) {
+    // only all-day start dates are stored, other events are rewritten by BCS anyway
+    Temporal dtStart = eventRef.dtStart();
+    return new @Nullable String[] {TYPE_EVENT, eventRef.uid(), eventRef.href(), eventRef.etag(), eventRef.hash(),
+        dtStart instanceof LocalDate date ? date.toString() : null};
+  }
+}
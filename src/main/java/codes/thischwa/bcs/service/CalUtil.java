@@ -4,16 +4,24 @@ import static codes.thischwa.bcs.service.CalHandler.CALENDAR_CONTENT_TYPE;
 
 import codes.thischwa.bcs.Contact;
 import com.github.sardine.DavResource;
-import com.github.sardine.Sardine;
+import com.github.sardine.impl.SardineException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.temporal.Temporal;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import net.fortuna.ical4j.data.CalendarBuilder;
+import java.util.function.BiConsumer;
+import lombok.extern.slf4j.Slf4j;
 import net.fortuna.ical4j.data.ParserException;
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.Property;
@@ -26,8 +34,14 @@ import org.jspecify.annotations.Nullable;
 /**
  * Utility class providing methods to work with calendar events and contacts.
  */
+@Slf4j
 public class CalUtil {
 
+  /**
+   * The name of the property which holds the fingerprint of the inputs an event was built from.
+   */
+  public static final String FINGERPRINT_PROPERTY = "X-BCS-HASH";
+
   private CalUtil() {
   }
 
@@ -62,63 +76,244 @@ public class CalUtil {
     return TemporalUtil.isSameBirthday(contact.birthday(), eventBirthday);
   }
 
+  /**
+   * Checks if the referenced event corresponds to the contact's birthday.
+   *
+   * @param eventRef the reference of the event to be checked
+   * @param contact  the Contact object whose birthday is to be compared against the event
+   * @return true if the event date matches the contact's birthday, false otherwise
+   */
+  public static boolean isBirthdayEquals(EventRef eventRef, Contact contact) {
+    return eventRef.dtStart() != null && TemporalUtil.isSameBirthday(contact.birthday(), eventRef.dtStart());
+  }
+
+  /**
+   * Builds a deterministic fingerprint of the given inputs of an event. Null values are distinguished
+   * from empty ones.
+   *
+   * @param inputs the inputs the event is built from
+   * @return the hex-encoded SHA-256 hash of the inputs
+   */
+  public static String fingerprint(List<@Nullable String> inputs) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 isn't supported.", e);
+    }
+    for (String input : inputs) {
+      if (input == null) {
+        digest.update((byte) 0);
+      } else {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        digest.update(bytes);
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
   /**
    * Collects and returns a map of birthday events along with their corresponding URLs from a calendar resource.
    * The method processes the provided calendar URL to list all entries, filters for calendar content,
    * and attempts to parse and convert them into VEvent objects.
    *
-   * @param sardine the Sardine HTTP client used for interacting with the DAV server
-   * @param calUrl  the URL of the calendar resource to scan for events
+   * @param transport the transport used for interacting with the DAV server
+   * @param calUrl    the URL of the calendar resource to scan for events
    * @return a map where the key is the VEvent object representing a birthday event,
    *     and the value is the URL of the corresponding calendar entry
    * @throws IOException if an I/O error occurs during interaction with the remote server
    */
-  public static Map<VEvent, URL> collectBirthdayEvents(Sardine sardine, String calUrl)
+  public static Map<VEvent, URL> collectBirthdayEvents(DavTransport transport, String calUrl)
+      throws IOException {
+    return collectBirthdayEvents(transport, calUrl, 0);
+  }
+
+  /**
+   * Collects and returns a map of birthday events along with their corresponding URLs from a calendar resource.
+   * The events are fetched in batches by the calendar-multiget REPORT. If the server doesn't support
+   * the REPORT, or an event is missing in its response, the event is fetched by a single GET.
+   *
+   * @param transport         the transport used for interacting with the DAV server
+   * @param calUrl            the URL of the calendar resource to scan for events
+   * @param multigetBatchSize the number of events fetched per calendar-multiget REPORT, a value less
+   *                          than 1 fetches each event by a single GET
+   * @return a map where the key is the VEvent object representing a birthday event,
+   *     and the value is the URL of the corresponding calendar entry
+   * @throws IOException if an I/O error occurs during interaction with the remote server
+   */
+  public static Map<VEvent, URL> collectBirthdayEvents(DavTransport transport, String calUrl, int multigetBatchSize)
       throws IOException {
     Map<VEvent, URL> events = new HashMap<>();
-    List<DavResource> davResources = sardine.list(calUrl);
-    davResources = davResources.stream().filter(e -> !e.isDirectory()).toList();
-    for (DavResource davResource : davResources) {
-      if (davResource.getContentType().contains(CALENDAR_CONTENT_TYPE)) {
-        URL eventUrl = new URL(NetUtil.getBaseUrl(calUrl) + davResource.getHref().getPath());
-        VEvent event = convert(sardine, eventUrl);
-        events.put(event, eventUrl);
+    collectEvents(transport, calUrl, multigetBatchSize, (in, eventUrl, etag) -> parse(in, eventUrl), events::put);
+    return events;
+  }
+
+  /**
+   * Collects the references of the birthday events of a calendar resource. Unlike
+   * {@link #collectBirthdayEvents(DavTransport, String, int)}, only the UID and the start date of the
+   * events are extracted by the {@link EventScanner}, the complete events are only built if the
+   * scanner isn't sure about the result.
+   *
+   * @param transport         the transport used for interacting with the DAV server
+   * @param calUrl            the URL of the calendar resource to scan for events
+   * @param multigetBatchSize the number of events fetched per calendar-multiget REPORT, a value less
+   *                          than 1 fetches each event by a single GET
+   * @return the references of the events keyed by their UID
+   * @throws IOException if an I/O error occurs during interaction with the remote server
+   */
+  public static Map<String, EventRef> collectEventRefs(DavTransport transport, String calUrl, int multigetBatchSize)
+      throws IOException {
+    Map<String, EventRef> eventRefs = new HashMap<>();
+    collectEvents(transport, calUrl, multigetBatchSize, CalUtil::toEventRef, (eventRef, eventUrl) -> {
+      if (eventRef != null) {
+        eventRefs.put(eventRef.uid(), eventRef);
+      }
+    });
+    return eventRefs;
+  }
+
+  /**
+   * Lists the calendar resource and reads its events. The events are fetched in batches by the
+   * calendar-multiget REPORT. If the server doesn't support the REPORT, or an event is missing in its
+   * response, the event is fetched by a single GET.
+   */
+  private static <T> void collectEvents(DavTransport transport, String calUrl, int multigetBatchSize,
+      EventReader<T> reader, BiConsumer<@Nullable T, URL> consumer) throws IOException {
+    List<DavResource> davResources = transport.propfind(calUrl, 1, DavSardine.LIST_PROPERTIES);
+    davResources = davResources.stream()
+        .filter(e -> !e.isDirectory() && e.getContentType().contains(CALENDAR_CONTENT_TYPE))
+        .toList();
+    int from = 0;
+    if (multigetBatchSize > 0) {
+      for (; from < davResources.size(); from += multigetBatchSize) {
+        List<DavResource> batch = davResources.subList(from, Math.min(from + multigetBatchSize, davResources.size()));
+        if (!collectByMultiget(transport, calUrl, batch, reader, consumer)) {
+          break;
+        }
       }
     }
-    return events;
+    for (DavResource davResource : davResources.subList(Math.min(from, davResources.size()), davResources.size())) {
+      URL eventUrl = new URL(NetUtil.getBaseUrl(calUrl) + davResource.getHref().getPath());
+      consumer.accept(fetch(transport, eventUrl, davResource.getEtag(), reader), eventUrl);
+    }
+  }
+
+  /**
+   * Fetches the events by a calendar-multiget REPORT. Events missing in the response are fetched
+   * separately.
+   *
+   * @return false if the REPORT isn't supported by the server, true otherwise
+   */
+  private static <T> boolean collectByMultiget(DavTransport transport, String calUrl, List<DavResource> batch,
+      EventReader<T> reader, BiConsumer<@Nullable T, URL> consumer) throws IOException {
+    List<DavEntry> entries;
+    try {
+      List<String> hrefs = batch.stream().map(davResource -> davResource.getHref().getRawPath()).toList();
+      entries = transport.report(calUrl, 1, DavReport.calendarMultiget(hrefs)).entries();
+    } catch (SardineException e) {
+      if (!DavReport.isUnsupported(e)) {
+        throw e;
+      }
+      log.warn("calendar-multiget isn't supported by the server (status: {}), fetching events one by one.",
+          e.getStatusCode());
+      return false;
+    }
+    Map<String, DavEntry> entriesByPath = new HashMap<>();
+    entries.forEach(entry -> entriesByPath.put(entry.path(), entry));
+    for (DavResource davResource : batch) {
+      URL eventUrl = new URL(NetUtil.getBaseUrl(calUrl) + davResource.getHref().getPath());
+      DavEntry entry = entriesByPath.get(davResource.getHref().getPath());
+      if (entry == null || !entry.hasData()) {
+        log.debug("Event {} is missing in the REPORT response, fetching it separately.", eventUrl);
+        consumer.accept(fetch(transport, eventUrl, davResource.getEtag(), reader), eventUrl);
+      } else {
+        String etag = entry.etag() != null ? entry.etag() : davResource.getEtag();
+        InputStream in = new ByteArrayInputStream(entry.data().getBytes(StandardCharsets.UTF_8));
+        consumer.accept(reader.read(in, eventUrl, etag), eventUrl);
+      }
+    }
+    return true;
+  }
+
+  private static <T> @Nullable T fetch(DavTransport transport, URL eventUrl, @Nullable String etag, EventReader<T> reader)
+      throws IllegalArgumentException {
+    try (InputStream inputStream = transport.get(eventUrl.toString())) {
+      if (inputStream != null) {
+        return reader.read(inputStream, eventUrl, etag);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+    return null;
+  }
+
+  /**
+   * Extracts the reference of the event by the {@link EventScanner}. If the scanner isn't sure about
+   * the result, the event is parsed by the full parser.
+   */
+  private static @Nullable EventRef toEventRef(InputStream in, URL eventUrl, @Nullable String etag)
+      throws IOException {
+    String data = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    EventScanner scanner = new EventScanner();
+    scanner.scan(new StringReader(data));
+    EventRef eventRef = scanner.toEventRef(eventUrl.getPath(), etag);
+    if (eventRef != null) {
+      return eventRef;
+    }
+    VEvent event = parse(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)), eventUrl);
+    if (event == null) {
+      return null;
+    }
+    DtStart<Temporal> dtStart = event.getDateTimeStart();
+    String hash = event.getProperty(FINGERPRINT_PROPERTY).map(Property::getValue).orElse(null);
+    return new EventRef(extractContactsUuidFromEvent(event), dtStart == null ? null : dtStart.getDate(),
+        eventUrl.getPath(), etag, hash);
   }
 
   /**
-   * Converts an event behindURL into a VEvent object by retrieving and parsing the content using the provided Sardine client.
+   * Converts an event behindURL into a VEvent object by retrieving and parsing the content using the provided transport.
    * This method fetches the data from the given URL, processes it as an iCalendar object, and extracts the VEvent component.
    * If the data cannot be parsed or does not contain exactly one VEvent, an exception is thrown.
    *
-   * @param sardine  the Sardine HTTP client used to interact with the DAV server
-   * @param eventUrl the URL of the calendar event to be converted into a VEvent object
+   * @param transport the transport used to interact with the DAV server
+   * @param eventUrl  the URL of the calendar event to be converted into a VEvent object
    * @return a VEvent object if successfully parsed and found, or null if no event could be parsed
    * @throws IllegalArgumentException if the URL content cannot be parsed, the data is invalid,
    *                                  or it contains an unexpected number of calendar components
    */
-  public static @Nullable VEvent convert(Sardine sardine, URL eventUrl)
+  public static @Nullable VEvent convert(DavTransport transport, URL eventUrl)
       throws IllegalArgumentException {
-    try (InputStream inputStream = sardine.get(eventUrl.toString())) {
-      if (inputStream != null) {
-        // Parse the iCalendar content
-        CalendarBuilder builder = new CalendarBuilder();
-        Calendar calendar = builder.build(inputStream);
-        if (calendar.getComponents().size() != 1) {
-          throw new IllegalArgumentException("Unexpected number of calendar components: " + calendar.getComponents().size()
-              + " for URL: " + eventUrl + " (expected: 1)");
-        }
+    return fetch(transport, eventUrl, null, (in, url, etag) -> parse(in, url));
+  }
 
-        CalendarComponent component = calendar.getComponents().get(0);
-        if (component instanceof VEvent event) {
-          return event;
-        }
+  private static @Nullable VEvent parse(InputStream inputStream, URL eventUrl) throws IllegalArgumentException {
+    try {
+      // Parse the iCalendar content
+      Calendar calendar = ParserPool.buildCalendar(inputStream);
+      if (calendar.getComponents().size() != 1) {
+        throw new IllegalArgumentException("Unexpected number of calendar components: " + calendar.getComponents().size()
+            + " for URL: " + eventUrl + " (expected: 1)");
+      }
+
+      CalendarComponent component = calendar.getComponents().get(0);
+      if (component instanceof VEvent event) {
+        return event;
       }
     } catch (ParserException | IOException e) {
       throw new IllegalArgumentException(e);
     }
     return null;
   }
+
+  /**
+   * Reads an event from the iCalendar data.
+   *
+   * @param <T> the type of the result
+   */
+  @FunctionalInterface
+  private interface EventReader<T> {
+    @Nullable T read(InputStream in, URL eventUrl, @Nullable String etag) throws IOException;
+  }
 }
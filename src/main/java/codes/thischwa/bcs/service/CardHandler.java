@@ -3,14 +3,28 @@ package codes.thischwa.bcs.service;
 import codes.thischwa.bcs.Contact;
 import codes.thischwa.bcs.conf.DavConf;
 import com.github.sardine.DavResource;
-import com.github.sardine.Sardine;
+import com.github.sardine.impl.SardineException;
+import io.micrometer.core.instrument.Timer;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import lombok.extern.slf4j.Slf4j;
 import net.fortuna.ical4j.data.ParserException;
+import org.jspecify.annotations.Nullable;
 import org.springframework.stereotype.Component;
 
 /**
@@ -23,6 +37,11 @@ public class CardHandler {
 
   private final DavConf davConf;
   private final SardineInitializer sardineInitializer;
+  private final CardStore cardStore;
+  private final SyncMetrics metrics;
+
+  private boolean syncCollectionUnsupported;
+  private boolean birthdayQueryUnsupported;
 
   /**
    * Constructs a new CardHandler instance to manage operations related to DAV address book
@@ -31,11 +50,16 @@ public class CardHandler {
    * @param davConf            The configuration object containing the credentials and URLs required
    *                           for DAV integration, such as user, password, and the address book
    *                           URL.
-   * @param sardineInitializer The initializer for {@link Sardine}.
+   * @param sardineInitializer The initializer of the {@link DavTransport}.
+   * @param cardStore          The store of the contacts of the last synchronization.
+   * @param metrics            The metrics of the parsed vCards.
    */
-  public CardHandler(DavConf davConf, SardineInitializer sardineInitializer) {
+  public CardHandler(DavConf davConf, SardineInitializer sardineInitializer, CardStore cardStore,
+                     SyncMetrics metrics) {
     this.sardineInitializer = sardineInitializer;
     this.davConf = davConf;
+    this.cardStore = cardStore;
+    this.metrics = metrics;
   }
 
   List<Contact> readContactsWithBirthday() throws IllegalArgumentException {
@@ -44,38 +68,463 @@ public class CardHandler {
           davConf.maxRetries());
       throw new IllegalArgumentException("Access to " + davConf.getBaseUrl() + " timed out.");
     }
-    Sardine sardine = sardineInitializer.getSardine();
-    List<Contact> contacts = new ArrayList<>();
+    DavTransport transport = sardineInitializer.getTransport();
     try {
-      List<DavResource> vcardResources = sardine.list(davConf.cardUrl())
+      List<Contact> contacts = (davConf.incrementalSync() && !syncCollectionUnsupported)
+          ? readContactsIncrementally(transport) : readAllContacts(transport);
+      log.info("Contacts with birthday found: {}", contacts.size());
+      return contacts;
+    } catch (Exception e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private List<Contact> readAllContacts(DavTransport transport) throws URISyntaxException, IOException, ParserException {
+    Map<String, Contact> contactsWithBirthday = readContactsByBirthdayQuery(transport);
+    if (contactsWithBirthday == null) {
+      List<CardRef> cardRefs = transport.propfind(davConf.cardUrl(), 1, DavSardine.LIST_PROPERTIES)
           .stream()
           .filter(item -> !item.isDirectory())
+          .map(CardRef::of)
           .toList();
-      log.info("dav resources found to process: {}", vcardResources.size());
+      log.info("dav resources found to process: {}", cardRefs.size());
+      contactsWithBirthday = readContacts(transport, cardRefs);
+      cardStore.retain(cardRefs.stream().map(CardRef::path).toList());
+    }
+    cardStore.save(null);
+    return new ArrayList<>(contactsWithBirthday.values());
+  }
 
-      for (DavResource davResource : vcardResources) {
-        String resourceName = (davResource.getDisplayName() == null || davResource.getDisplayName().isEmpty())
-            ? davResource.toString() : davResource.getDisplayName();
-        log.info("Processing contact: {}", resourceName);
-        URI href = new URI(davConf.getBaseUrl() + davResource.getHref().toString());
-        readContactFromDav(sardine, href, contacts, resourceName);
+  /**
+   * Synchronizes the address book by the sync-collection REPORT (RFC 6578). Only the vCards changed
+   * since the last synchronization are fetched, the others are taken from the {@link CardStore}. The
+   * initial synchronization fetches the contacts with birthday by the addressbook-query REPORT, if
+   * possible. If the server rejects the sync token, the address book is synchronized completely,
+   * whereby vCards with an unchanged ETag aren't fetched again. If the server doesn't support the
+   * REPORT at all, all vCards are read.
+   */
+  private List<Contact> readContactsIncrementally(DavTransport transport)
+      throws URISyntaxException, IOException, ParserException {
+    String collectionPath = DavEntry.toPath(davConf.cardUrl());
+    DavMultistatus changes;
+    do {
+      String syncToken = cardStore.getSyncToken();
+      try {
+        changes = transport.report(davConf.cardUrl(), 0, DavReport.syncCollection(syncToken));
+      } catch (SardineException e) {
+        if (syncToken != null && DavReport.isInvalidSyncToken(e)) {
+          log.warn("The sync token was rejected by the server (status: {}), synchronizing all contacts.",
+              e.getStatusCode());
+          cardStore.resetSyncToken();
+          changes = null;
+          continue;
+        }
+        if (syncToken == null && DavReport.isUnsupported(e)) {
+          log.warn("sync-collection isn't supported by the server (status: {}), reading all contacts.",
+              e.getStatusCode());
+          syncCollectionUnsupported = true;
+          return readAllContacts(transport);
+        }
+        throw e;
+      }
+      if (syncToken != null) {
+        applyChanges(transport, changes.entries(), collectionPath);
+      } else if (readContactsByBirthdayQuery(transport) == null) {
+        // the initial synchronization reports all members, the stored vCards of the others are outdated
+        cardStore.retain(applyChanges(transport, changes.entries(), collectionPath));
+      }
+      cardStore.save(changes.syncToken());
+    } while (changes == null || changes.isTruncated());
+    return cardStore.getContacts();
+  }
+
+  /**
+   * Reads the contacts by the addressbook-query REPORT, which lets the server filter the vCards
+   * without a birthday. vCards reported without data are fetched separately. The {@link CardStore}
+   * is replaced by the result, vCards with an unchanged ETag aren't parsed again.
+   *
+   * @return the contacts keyed by the decoded path of the href, or null if the REPORT is disabled or
+   *     isn't supported by the server
+   */
+  private @Nullable Map<String, Contact> readContactsByBirthdayQuery(DavTransport transport)
+      throws URISyntaxException, IOException, ParserException {
+    if (!davConf.birthdayQuery() || birthdayQueryUnsupported) {
+      return null;
+    }
+    List<DavEntry> entries;
+    try {
+      entries = transport.report(davConf.cardUrl(), 1, DavReport.addressbookQuery("BDAY")).entries();
+    } catch (SardineException e) {
+      if (!DavReport.isUnsupported(e)) {
+        throw e;
+      }
+      log.warn("addressbook-query isn't supported by the server (status: {}), reading all contacts.",
+          e.getStatusCode());
+      birthdayQueryUnsupported = true;
+      return null;
+    }
+    log.info("dav resources with birthday found by addressbook-query: {}", entries.size());
+    List<CardRef> cardRefs = new ArrayList<>(entries.size());
+    Map<String, DavEntry> entriesByPath = new HashMap<>();
+    for (DavEntry entry : entries) {
+      CardRef cardRef = CardRef.of(entry);
+      if (!cardRef.path().endsWith("/") && entry.status() == 200) {
+        cardRefs.add(cardRef);
+        entriesByPath.put(cardRef.path(), entry);
+      }
+    }
+    Map<String, CardStore.Entry> fetched = new HashMap<>();
+    addEntries(transport, cardRefs, entriesByPath, fetched);
+    Map<String, Contact> contacts = store(cardRefs, fetched);
+    cardStore.retain(cardRefs.stream().map(CardRef::path).toList());
+    return contacts;
+  }
+
+  /**
+   * Applies the changes reported by the sync-collection REPORT to the {@link CardStore}.
+   *
+   * @return the decoded paths of the reported vCards which still exist
+   */
+  private List<String> applyChanges(DavTransport transport, List<DavEntry> entries, String collectionPath)
+      throws URISyntaxException, IOException, ParserException {
+    List<CardRef> changed = new ArrayList<>();
+    int removed = 0;
+    for (DavEntry entry : entries) {
+      String path = entry.path();
+      if (path.endsWith("/") || path.equals(collectionPath)) {
+        continue;
+      }
+      if (entry.status() == 404) {
+        cardStore.remove(path);
+        removed++;
+      } else if (entry.status() == 200) {
+        changed.add(CardRef.of(entry));
       }
-      log.info("Contacts with birthday found: {}", contacts.size());
-      return contacts;
-    } catch (Exception e) {
-      throw new IllegalArgumentException(e);
     }
+    log.info("Changed contacts since the last synchronization: {}, removed: {}", changed.size(), removed);
+    readContacts(transport, changed);
+    return changed.stream().map(CardRef::path).toList();
   }
 
-  private void readContactFromDav(Sardine sardine, URI href, List<Contact> contacts, String resourceName)
-      throws IOException, ParserException {
-    try (InputStream vCardStream = sardine.get(href.toString())) {
-      Contact contact = CardUtil.buildContact(vCardStream, href);
-      contacts.add(contact);
+  /**
+   * Reads the contacts with birthday of the given vCards and puts them to the {@link CardStore}.
+   * vCards whose ETag matches the stored one are taken from the store without fetching them.
+   *
+   * @return the contacts, keyed by the decoded path of the href, in the order of the vCards
+   */
+  private Map<String, Contact> readContacts(DavTransport transport, List<CardRef> cardRefs)
+      throws URISyntaxException, IOException, ParserException {
+    Map<String, CardStore.Entry> entries = new HashMap<>();
+    List<CardRef> outdated = new ArrayList<>();
+    for (CardRef cardRef : cardRefs) {
+      CardStore.Entry stored = cardStore.get(cardRef.path());
+      if (stored != null && stored.hasEtag(cardRef.etag())) {
+        entries.put(cardRef.path(), stored);
+      } else {
+        outdated.add(cardRef);
+      }
+    }
+    log.info("Contacts with unchanged ETag: {}, to fetch: {}", entries.size(), outdated.size());
+    if (davConf.multigetBatchSize() > 0) {
+      fetchEntriesByMultiget(transport, outdated, entries);
+    } else {
+      fetchEntriesOneByOne(transport, outdated, entries);
+    }
+    return store(cardRefs, entries);
+  }
+
+  /**
+   * Puts the entries of the vCards to the {@link CardStore}.
+   *
+   * @return the contacts, keyed by the decoded path of the href, in the order of the vCards
+   */
+  private Map<String, Contact> store(List<CardRef> cardRefs, Map<String, CardStore.Entry> entries)
+      throws IOException {
+    Map<String, Contact> contacts = new LinkedHashMap<>();
+    for (CardRef cardRef : cardRefs) {
+      CardStore.Entry entry = entries.get(cardRef.path());
+      if (entry == null) {
+        continue;
+      }
+      cardStore.put(cardRef.path(), entry);
+      if (entry.contact() != null) {
+        contacts.put(cardRef.path(), entry.contact());
+      }
+    }
+    return contacts;
+  }
+
+  private void fetchEntriesOneByOne(DavTransport transport, List<CardRef> cardRefs, Map<String, CardStore.Entry> entries)
+      throws URISyntaxException, IOException, ParserException {
+    List<CardStore.Entry> results = fetchEntries(transport, cardRefs);
+    for (int i = 0; i < cardRefs.size(); i++) {
+      entries.put(cardRefs.get(i).path(), results.get(i));
+    }
+  }
+
+  /**
+   * Fetches and parses the vCards by GET. If the fetch parallelism is greater than 1, the vCards are
+   * fetched by a {@link BoundedExecutor}, or asynchronously if the transport doesn't block threads.
+   *
+   * @return the entries in the order of the vCards
+   */
+  private List<CardStore.Entry> fetchEntries(DavTransport transport, List<CardRef> cardRefs)
+      throws URISyntaxException, IOException, ParserException {
+    int parallelism = Math.min(davConf.fetchParallelism(), cardRefs.size());
+    if (parallelism <= 1) {
+      List<CardStore.Entry> entries = new ArrayList<>(cardRefs.size());
+      for (CardRef cardRef : cardRefs) {
+        entries.add(readEntryFromDav(transport, cardRef));
+      }
+      return entries;
+    }
+    if (transport.isNonBlocking()) {
+      return fetchEntriesAsync(transport, cardRefs, parallelism);
+    }
+
+    log.debug("Fetching {} contacts with a parallelism of {}.", cardRefs.size(), parallelism);
+    List<Callable<CardStore.Entry>> tasks = cardRefs.stream()
+        .<Callable<CardStore.Entry>>map(cardRef -> () -> readEntryFromDav(transport, cardRef))
+        .toList();
+    try (BoundedExecutor executor = new BoundedExecutor(parallelism, "card-fetch")) {
+      return executor.invokeAll(tasks);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException ioe) {
+        throw ioe;
+      }
+      if (cause instanceof ParserException pe) {
+        throw pe;
+      }
+      if (cause instanceof URISyntaxException use) {
+        throw use;
+      }
+      if (cause instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new IOException(cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching contacts.");
+    }
+  }
+
+  /**
+   * Fetches the vCards asynchronously, not more than the given number at the same time. The
+   * responses are parsed by the calling thread in the order of the vCards, so the threads of the
+   * transport are only busy with the transfer. The next vCard is requested only after the oldest
+   * response was parsed, so not more than the given number of responses are held at a time.
+   *
+   * @return the entries in the order of the vCards
+   */
+  private List<CardStore.Entry> fetchEntriesAsync(DavTransport transport, List<CardRef> cardRefs, int parallelism)
+      throws URISyntaxException, IOException, ParserException {
+    log.debug("Fetching {} contacts asynchronously, {} at the same time.", cardRefs.size(), parallelism);
+    Deque<CompletableFuture<InputStream>> pending = new ArrayDeque<>(parallelism);
+    List<CardStore.Entry> entries = new ArrayList<>(cardRefs.size());
+    try {
+      for (CardRef cardRef : cardRefs) {
+        if (pending.size() == parallelism) {
+          entries.add(readEntry(pending.removeFirst(), cardRefs.get(entries.size())));
+        }
+        Map<String, String> headers = conditionalHeaders(cardStore.get(cardRef.path()), cardRef);
+        pending.addLast(transport.getAsync(toUri(cardRef).toString(), headers));
+      }
+      while (!pending.isEmpty()) {
+        entries.add(readEntry(pending.removeFirst(), cardRefs.get(entries.size())));
+      }
+      return entries;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching contacts.");
+    } finally {
+      pending.forEach(response -> response.cancel(true));
+    }
+  }
+
+  /**
+   * Waits for the response of the vCard and parses it.
+   */
+  private CardStore.Entry readEntry(CompletableFuture<InputStream> response, CardRef cardRef)
+      throws InterruptedException, URISyntaxException, IOException, ParserException {
+    try (InputStream cardStream = response.get()) {
+      log.info("Processing contact: {}", cardRef.name());
+      return new CardStore.Entry(cardRef.etag(), parseContact(cardStream, cardRef));
+    } catch (ExecutionException e) {
+      return unchangedEntry(cardRef, e.getCause());
+    }
+  }
+
+  /**
+   * Retrieves the stored entry of a vCard whose conditional GET failed with 304, otherwise the cause
+   * of the failure is thrown.
+   */
+  private CardStore.Entry unchangedEntry(CardRef cardRef, Throwable cause) throws IOException {
+    CardStore.Entry stored = cardStore.get(cardRef.path());
+    if (!conditionalHeaders(stored, cardRef).isEmpty()
+        && cause instanceof SardineException se && se.getStatusCode() == 304) {
+      log.debug("Contact {} is unchanged.", cardRef.name());
+      return stored;
+    }
+    if (cause instanceof IOException ioe) {
+      throw ioe;
+    }
+    if (cause instanceof RuntimeException re) {
+      throw re;
+    }
+    throw new IOException(cause);
+  }
+
+  /**
+   * Fetches the vCards in batches by the addressbook-multiget REPORT. If the server doesn't support
+   * the REPORT, the remaining vCards are fetched one by one. vCards missing in a multiget response
+   * are fetched separately, too.
+   */
+  private void fetchEntriesByMultiget(DavTransport transport, List<CardRef> cardRefs,
+      Map<String, CardStore.Entry> entries) throws URISyntaxException, IOException, ParserException {
+    int batchSize = davConf.multigetBatchSize();
+    for (int from = 0; from < cardRefs.size(); from += batchSize) {
+      List<CardRef> batch = cardRefs.subList(from, Math.min(from + batchSize, cardRefs.size()));
+      log.info("Fetching contacts {}-{} of {} by addressbook-multiget.", from + 1, from + batch.size(),
+          cardRefs.size());
+      List<DavEntry> davEntries;
+      try {
+        List<String> hrefs = batch.stream().map(CardRef::href).toList();
+        davEntries = transport.report(davConf.cardUrl(), 1, DavReport.addressbookMultiget(hrefs)).entries();
+      } catch (SardineException e) {
+        if (!DavReport.isUnsupported(e)) {
+          throw e;
+        }
+        log.warn("addressbook-multiget isn't supported by the server (status: {}), fetching contacts one by one.",
+            e.getStatusCode());
+        fetchEntriesOneByOne(transport, cardRefs.subList(from, cardRefs.size()), entries);
+        return;
+      }
+
+      Map<String, DavEntry> entriesByPath = new HashMap<>();
+      davEntries.forEach(entry -> entriesByPath.put(entry.path(), entry));
+      addEntries(transport, batch, entriesByPath, entries);
+    }
+  }
+
+  /**
+   * Adds the entries of the vCards. The vCard data is taken from the entries of a REPORT response,
+   * but isn't parsed again if the ETag matches the stored one. vCards missing in the response are
+   * fetched separately.
+   */
+  private void addEntries(DavTransport transport, List<CardRef> cardRefs, Map<String, DavEntry> entriesByPath,
+      Map<String, CardStore.Entry> entries) throws URISyntaxException, IOException, ParserException {
+    List<CardRef> missing = new ArrayList<>();
+    for (CardRef cardRef : cardRefs) {
+      DavEntry entry = entriesByPath.get(cardRef.path());
+      if (entry == null || !entry.hasData()) {
+        log.debug("Contact {} is missing in the REPORT response, fetching it separately.", cardRef.name());
+        missing.add(cardRef);
+        continue;
+      }
+      String etag = entry.etag() != null ? entry.etag() : cardRef.etag();
+      CardStore.Entry stored = cardStore.get(cardRef.path());
+      if (stored != null && stored.hasEtag(etag)) {
+        entries.put(cardRef.path(), stored);
+      } else {
+        log.debug("Processing contact: {}", cardRef.name());
+        byte[] vcard = entry.data().getBytes(StandardCharsets.UTF_8);
+        entries.put(cardRef.path(), new CardStore.Entry(etag, parseContact(new ByteArrayInputStream(vcard), cardRef)));
+      }
+    }
+    fetchEntriesOneByOne(transport, missing, entries);
+  }
+
+  /**
+   * Fetches the vCard by GET. If the vCard is stored and its current ETag is unknown, the GET is
+   * conditional, so an unchanged vCard isn't transferred again.
+   */
+  private CardStore.Entry readEntryFromDav(DavTransport transport, CardRef cardRef)
+      throws URISyntaxException, IOException, ParserException {
+    CardStore.Entry stored = cardStore.get(cardRef.path());
+    String url = toUri(cardRef).toString();
+    Map<String, String> conditionalHeaders = conditionalHeaders(stored, cardRef);
+    if (stored != null && !conditionalHeaders.isEmpty()) {
+      try (InputStream cardStream = transport.get(url, conditionalHeaders)) {
+        log.info("Processing contact: {}", cardRef.name());
+        return new CardStore.Entry(cardRef.etag(), parseContact(cardStream, cardRef));
+      } catch (SardineException e) {
+        if (e.getStatusCode() != 304) {
+          throw e;
+        }
+        log.debug("Contact {} is unchanged.", cardRef.name());
+        return stored;
+      }
+    }
+    log.info("Processing contact: {}", cardRef.name());
+    try (InputStream cardStream = transport.get(url)) {
+      return new CardStore.Entry(cardRef.etag(), parseContact(cardStream, cardRef));
+    }
+  }
+
+  /**
+   * Builds the precondition of a conditional GET, if the vCard is stored and its current ETag is
+   * unknown or the same.
+   *
+   * @return the header 'If-None-Match' with the stored ETag, or an empty map
+   */
+  private static Map<String, String> conditionalHeaders(CardStore.@Nullable Entry stored, CardRef cardRef) {
+    if (stored != null && stored.etag() != null && (cardRef.etag() == null || cardRef.etag().equals(stored.etag()))) {
+      return Map.of("If-None-Match", stored.etag());
+    }
+    return Map.of();
+  }
+
+  /**
+   * Parses the vCard. Errors of a single vCard are logged, so they don't affect the other ones.
+   *
+   * @return the contact, or null if the vCard has no birthday or isn't valid
+   */
+  private @Nullable Contact parseContact(InputStream cardStream, CardRef cardRef)
+      throws URISyntaxException, IOException, ParserException {
+    Timer.Sample sample = metrics.start();
+    try {
+      Contact contact = CardUtil.buildContact(cardStream, toUri(cardRef));
+      metrics.contactSeen(true);
+      return contact;
     } catch (MissingBirthdayException mbe) {
       log.debug(mbe.getMessage());
+      metrics.contactSeen(false);
     } catch (IllegalArgumentException e) {
-      log.warn("Error while processing contact {}: {}", resourceName, e.getMessage());
+      log.warn("Error while processing contact {}: {}", cardRef.name(), e.getMessage());
+      metrics.contactSeen(false);
+      metrics.failure("parse");
+    } finally {
+      metrics.stop(sample, SyncMetrics.Phase.PARSE);
+    }
+    return null;
+  }
+
+  private URI toUri(CardRef cardRef) throws URISyntaxException {
+    String href = cardRef.href();
+    return href.startsWith("http://") || href.startsWith("https://")
+        ? new URI(href) : new URI(davConf.getBaseUrl() + href);
+  }
+
+  /**
+   * A reference to a vCard of the address book.
+   *
+   * @param href The href of the vCard as sent by the server.
+   * @param path The decoded path of the href.
+   * @param name The name of the vCard used for logging.
+   * @param etag The ETag of the vCard as sent by the server, or null if unknown.
+   */
+  private record CardRef(String href, String path, String name, @Nullable String etag) {
+
+    static CardRef of(DavEntry entry) {
+      return new CardRef(entry.href(), entry.path(), entry.path(), entry.etag());
+    }
+
+    static CardRef of(DavResource davResource) {
+      String name = (davResource.getDisplayName() == null || davResource.getDisplayName().isEmpty())
+          ? davResource.toString() : davResource.getDisplayName();
+      return new CardRef(davResource.getHref().toString(), DavEntry.toPath(davResource.getHref().toString()), name,
+          davResource.getEtag());
     }
   }
 }
@@ -0,0 +1,260 @@
+package codes.thischwa.bcs.service;
+
+import codes.thischwa.bcs.Contact;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.temporal.TemporalAccessor;
+import java.util.Locale;
+import java.util.Set;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A streaming scanner which reads a vCard in one pass and picks out the properties required to
+ * build a {@link Contact}: N, FN and BDAY.
+ *
+ * <p>Folded lines are unfolded on the fly. All other properties, e.g. large embedded photos, are
+ * skipped character by character and never held in memory. The retained lines are collected, so
+ * the vCard can still be parsed by the full parser, if the scanner isn't sure about the result.
+ * This is the case for malformed input, encoded values or birthday formats other than the common
+ * ones.
+ *
+ * <p>An instance is meant for a single vCard and isn't thread-safe.
+ */
+final class CardScanner {
+
+  private static final Set<String> KEPT_PROPERTIES =
+      Set.of("BEGIN", "END", "VERSION", "UID", "N", "FN", "BDAY");
+
+  /**
+   * The maximum length of a property name including its group, longer names aren't filtered.
+   */
+  private static final int MAX_NAME_LENGTH = 64;
+
+  private final StringBuilder content = new StringBuilder(512);
+  private final StringBuilder name = new StringBuilder(MAX_NAME_LENGTH);
+  private final StringBuilder logicalLine = new StringBuilder(128);
+
+  private @Nullable String pendingProperty;
+  private boolean begun;
+  private boolean ended;
+  private boolean uncertain;
+
+  private @Nullable String nameValue;
+  private @Nullable String displayNameValue;
+  private @Nullable String birthdayValue;
+  private String birthdayParams = "";
+
+  /**
+   * Scans the first vCard of the reader.
+   *
+   * @param in the reader of the vCard data
+   * @return the vCard data without the skipped properties
+   * @throws IOException if an I/O error occurs while reading
+   */
+  String scan(Reader in) throws IOException {
+    boolean keep = true;
+    int c = in.read();
+    while (c != -1 && !ended) {
+      if (c == ' ' || c == '\t') {
+        // continuation of a folded line, the leading blank is dropped by unfolding
+        if (keep) {
+          content.append((char) c);
+        }
+        c = in.read();
+      } else {
+        completeProperty();
+        if (ended) {
+          break;
+        }
+        name.setLength(0);
+        while (c != -1 && c != ':' && c != ';' && c != '\r' && c != '\n' && name.length() < MAX_NAME_LENGTH) {
+          name.append((char) c);
+          c = in.read();
+        }
+        boolean isProperty = c == ':' || c == ';';
+        String propertyName = isProperty ? propertyName(name) : null;
+        keep = !isProperty || KEPT_PROPERTIES.contains(propertyName);
+        if (keep) {
+          content.append(name);
+          pendingProperty = propertyName;
+          if (!isProperty && !name.isEmpty()) {
+            uncertain = true;
+          }
+        }
+      }
+      while (c != -1 && c != '\n') {
+        if (keep) {
+          content.append((char) c);
+          if (pendingProperty != null && c != '\r') {
+            logicalLine.append((char) c);
+          }
+        }
+        c = in.read();
+      }
+      if (c == '\n') {
+        if (keep) {
+          content.append('\n');
+        }
+        c = in.read();
+      }
+    }
+    completeProperty();
+    return content.toString();
+  }
+
+  /**
+   * Builds the contact of the scanned vCard.
+   *
+   * @param identifier the identifier of the contact
+   * @return the contact, or null if the scanner isn't sure about the result and the vCard has to be
+   *     parsed by the full parser
+   * @throws MissingBirthdayException if the vCard doesn't contain a birthday
+   */
+  @Nullable Contact toContact(String identifier) throws MissingBirthdayException {
+    if (uncertain || !begun || !ended || nameValue == null) {
+      return null;
+    }
+    if (birthdayValue == null) {
+      throw new MissingBirthdayException("N:" + nameValue);
+    }
+    TemporalAccessor birthday = parseBirthday(birthdayValue, birthdayParams);
+    if (birthday == null) {
+      return null;
+    }
+    String[] names = splitName(nameValue);
+    String displayName = displayNameValue == null ? "" : displayNameValue.trim();
+    return new Contact(names[1], names[0], displayName, birthday, identifier);
+  }
+
+  /**
+   * Splits the value of N into the family and the given name. Missing fields are empty, escaped
+   * separators are respected and unescaped.
+   *
+   * @return the family name and the given name
+   */
+  static String[] splitName(String value) {
+    String[] names = {"", ""};
+    StringBuilder field = new StringBuilder(value.length());
+    int index = 0;
+    for (int i = 0; i < value.length() && index < names.length; i++) {
+      char c = value.charAt(i);
+      if (c == '\\' && i + 1 < value.length()) {
+        char next = value.charAt(++i);
+        field.append(next == ';' || next == ',' || next == '\\' ? next : "\\" + next);
+      } else if (c == ';') {
+        names[index++] = field.toString();
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    if (index < names.length) {
+      names[index] = field.toString();
+    }
+    return names;
+  }
+
+  private void completeProperty() {
+    if (pendingProperty == null) {
+      return;
+    }
+    String line = logicalLine.toString();
+    logicalLine.setLength(0);
+
+    int colon = line.indexOf(':');
+    if (colon < 0) {
+      pendingProperty = null;
+      uncertain = true;
+      return;
+    }
+    String params = line.substring(0, colon);
+    String value = line.substring(colon + 1);
+    // quoted parameter values may contain colons, the full parser has to deal with them
+    uncertain |= params.indexOf('"') >= 0;
+    String property = pendingProperty;
+    pendingProperty = null;
+    switch (property) {
+      case "BEGIN" -> {
+        uncertain |= begun || !"VCARD".equalsIgnoreCase(value.trim());
+        begun = true;
+      }
+      case "END" -> ended = begun;
+      case "N" -> {
+        if (nameValue == null) {
+          nameValue = value;
+          uncertain |= isEncoded(params);
+        }
+      }
+      case "FN" -> {
+        if (displayNameValue == null) {
+          displayNameValue = value;
+          uncertain |= isEncoded(params);
+        }
+      }
+      case "BDAY" -> {
+        if (birthdayValue == null) {
+          birthdayValue = value;
+          birthdayParams = params;
+        }
+      }
+      default -> {
+        // kept for the full parser only
+      }
+    }
+  }
+
+  private static boolean isEncoded(String params) {
+    return params.toUpperCase(Locale.ROOT).contains("ENCODING");
+  }
+
+  /**
+   * Parses the common birthday formats: '--MMDD' as text, 'yyyyMMdd' and 'yyyy-MM-dd' as date. The
+   * value type 'TEXT' is case-sensitive like in ical4j-vcard, so other spellings are left to the full
+   * parser, which rejects them.
+   *
+   * @return the birthday, or null if the format isn't supported by the scanner
+   */
+  private static @Nullable TemporalAccessor parseBirthday(String value, String params) {
+    String upperParams = params.toUpperCase(Locale.ROOT);
+    try {
+      if (params.contains("VALUE=TEXT")) {
+        int[] monthDay = TemporalUtil.parseMonthDay(value);
+        return monthDay == null ? null : MonthDay.of(monthDay[0], monthDay[1]);
+      }
+      if (upperParams.contains("VALUE=") && !upperParams.contains("VALUE=DATE")) {
+        return null;
+      }
+      if (value.length() == 8 && isDigits(value, 0, 8)) {
+        return LocalDate.of(Integer.parseInt(value, 0, 4, 10), Integer.parseInt(value, 4, 6, 10),
+            Integer.parseInt(value, 6, 8, 10));
+      }
+      if (value.length() == 10 && value.charAt(4) == '-' && value.charAt(7) == '-'
+          && isDigits(value, 0, 4) && isDigits(value, 5, 7) && isDigits(value, 8, 10)) {
+        return LocalDate.of(Integer.parseInt(value, 0, 4, 10), Integer.parseInt(value, 5, 7, 10),
+            Integer.parseInt(value, 8, 10, 10));
+      }
+    } catch (DateTimeException e) {
+      // invalid dates are left to the full parser
+    }
+    return null;
+  }
+
+  private static boolean isDigits(String value, int from, int to) {
+    for (int i = from; i < to; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String propertyName(CharSequence name) {
+    String value = name.toString();
+    int groupEnd = value.lastIndexOf('.');
+    return (groupEnd < 0 ? value : value.substring(groupEnd + 1)).toUpperCase(Locale.ROOT);
+  }
+}
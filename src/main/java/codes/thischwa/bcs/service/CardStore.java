@@ -0,0 +1,264 @@
+package codes.thischwa.bcs.service;
+
+import codes.thischwa.bcs.Contact;
+import codes.thischwa.bcs.conf.BcsConf;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Local store of the vCards read from the address book, keyed by the path of their href. For each
+ * vCard, the ETag and the contact with birthday are stored. vCards without a (valid) birthday are
+ * stored without a contact, so they don't have to be fetched again as long as their ETag doesn't
+ * change. Together with the sync token of the address book, the store allows an incremental
+ * synchronization by the sync-collection REPORT (RFC 6578).
+ *
+ * <p>If the property `bcs.state-dir` is set, the store is persisted to the file
+ * {@value #FILE_NAME} inside this directory. Otherwise, the store is kept in memory only.
+ */
+@Component
+@Slf4j
+public class CardStore {
+
+  static final String FILE_NAME = "card-store.tsv";
+
+  /**
+   * The version of the file format and of the stored contacts. It must be increased if the way
+   * contacts are extracted from vCards changes, so outdated stores are discarded.
+   */
+  static final String VERSION = "2";
+
+  private static final String TYPE_VERSION = "version";
+  private static final String TYPE_SYNC_TOKEN = "sync-token";
+  private static final String TYPE_CARD = "card";
+
+  /**
+   * A stored vCard.
+   *
+   * @param etag    The ETag of the vCard, or null if unknown.
+   * @param contact The contact with birthday, or null if the vCard has no (valid) birthday.
+   */
+  public record Entry(@Nullable String etag, @Nullable Contact contact) {
+
+    /**
+     * Checks whether the given ETag is the same as the stored one. Weak ETags are never the same,
+     * because they don't guarantee an unchanged content.
+     *
+     * @param otherEtag the ETag to compare, may be null
+     * @return true if both ETags are strong and equal, false otherwise
+     */
+    public boolean hasEtag(@Nullable String otherEtag) {
+      return etag != null && otherEtag != null && !etag.startsWith("W/") && etag.equals(otherEtag);
+    }
+  }
+
+  private final @Nullable Path file;
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+  private @Nullable String syncToken;
+
+  private boolean loaded;
+
+  /**
+   * Constructs a new CardStore.
+   *
+   * @param conf The configuration object containing the directory of the state files.
+   */
+  public CardStore(BcsConf conf) {
+    this.file = StringUtils.hasText(conf.stateDir()) ? Path.of(conf.stateDir()).resolve(FILE_NAME) : null;
+  }
+
+  /**
+   * Retrieves the sync token of the last synchronization.
+   *
+   * @return the sync token, or null if there wasn't any synchronization yet
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized @Nullable String getSyncToken() throws IOException {
+    load();
+    return syncToken;
+  }
+
+  /**
+   * Retrieves the stored vCard of the given href.
+   *
+   * @param path the decoded path of the href of the vCard
+   * @return the stored vCard, or null if it isn't stored
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized @Nullable Entry get(String path) throws IOException {
+    load();
+    return entries.get(path);
+  }
+
+  /**
+   * Retrieves all stored contacts with birthday in the order they were added.
+   *
+   * @return the contacts
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized List<Contact> getContacts() throws IOException {
+    load();
+    return entries.values().stream().map(Entry::contact).filter(Objects::nonNull).toList();
+  }
+
+  /**
+   * Adds or replaces the vCard of the given href.
+   *
+   * @param path  the decoded path of the href of the vCard
+   * @param entry the ETag and the contact read from the vCard
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized void put(String path, Entry entry) throws IOException {
+    load();
+    entries.put(path, entry);
+  }
+
+  /**
+   * Removes the vCard of the given href.
+   *
+   * @param path the decoded path of the href of the vCard
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized void remove(String path) throws IOException {
+    load();
+    entries.remove(path);
+  }
+
+  /**
+   * Removes all vCards except the given ones, e.g. after the complete address book was read.
+   *
+   * @param paths the decoded paths of the hrefs of the vCards to keep
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized void retain(Collection<String> paths) throws IOException {
+    load();
+    entries.keySet().retainAll(new HashSet<>(paths));
+  }
+
+  /**
+   * Removes the sync token, e.g. if it was rejected by the server. The vCards are kept, so unchanged
+   * ones needn't be fetched again.
+   *
+   * @throws IOException if the persisted store can't be read
+   */
+  public synchronized void resetSyncToken() throws IOException {
+    load();
+    syncToken = null;
+  }
+
+  /**
+   * Removes all vCards and the sync token, so the next synchronization starts from scratch.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    syncToken = null;
+    loaded = true;
+  }
+
+  /**
+   * Sets the sync token of the current synchronization and persists the store if a state directory
+   * is configured.
+   *
+   * @param newSyncToken the sync token returned by the server, or null if the address book was read
+   *                     without a sync-collection REPORT
+   * @throws IOException if the store can't be written
+   */
+  public synchronized void save(@Nullable String newSyncToken) throws IOException {
+    load();
+    this.syncToken = newSyncToken;
+    if (file == null) {
+      return;
+    }
+    List<@Nullable String[]> records = new ArrayList<>(entries.size() + 2);
+    records.add(new String[] {TYPE_VERSION, VERSION});
+    if (syncToken != null) {
+      records.add(new String[] {TYPE_SYNC_TOKEN, syncToken});
+    }
+    entries.forEach((path, entry) -> records.add(toRecord(path, entry)));
+    StateFile.write(file, "BCS card store", records);
+    log.debug("Saved {} vCards to {}", entries.size(), file);
+  }
+
+  private void load() throws IOException {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    if (file == null) {
+      return;
+    }
+    Map<String, Entry> loadedEntries = new LinkedHashMap<>();
+    String[] loadedSyncToken = new String[1];
+    boolean[] validVersion = new boolean[1];
+    boolean exists = StateFile.read(file, fields -> {
+      if (TYPE_VERSION.equals(fields[0]) && fields.length == 2) {
+        validVersion[0] = VERSION.equals(fields[1]);
+      } else if (TYPE_SYNC_TOKEN.equals(fields[0]) && fields.length == 2) {
+        loadedSyncToken[0] = fields[1];
+      } else if (TYPE_CARD.equals(fields[0]) && (fields.length == 3 || fields.length == 8)) {
+        loadedEntries.put(fields[1], fromRecord(fields));
+      } else {
+        log.warn("Ignoring invalid record in {}: {}", file, fields[0]);
+      }
+    });
+    if (!exists) {
+      return;
+    }
+    if (!validVersion[0]) {
+      log.info("Discarding {}, it was written by another version.", file);
+      return;
+    }
+    entries.putAll(loadedEntries);
+    syncToken = loadedSyncToken[0];
+    log.debug("Loaded {} vCards from {}", entries.size(), file);
+  }
+
+  private static @Nullable String[] toRecord(String path, Entry entry) {
+    Contact contact = entry.contact();
+    if (contact == null) {
+      return new @Nullable String[] {TYPE_CARD, path, entry.etag()};
+    }
+    return new @Nullable String[] {TYPE_CARD, path, entry.etag(), contact.identifier(), contact.firstName(),
+        contact.lastName(), contact.displayName(), formatBirthday(contact.birthday())};
+  }
+
+  private static Entry fromRecord(@Nullable String[] fields) {
+    if (fields.length == 3) {
+      return new Entry(fields[2], null);
+    }
+    Contact contact = new Contact(fields[4], fields[5], fields[6], parseBirthday(fields[7]), fields[3]);
+    return new Entry(fields[2], contact);
+  }
+
+  static @Nullable String formatBirthday(@Nullable TemporalAccessor birthday) {
+    if (birthday == null) {
+      return null;
+    }
+    if (birthday instanceof MonthDay || birthday instanceof LocalDate) {
+      return birthday.toString();
+    }
+    throw new IllegalArgumentException("Unsupported birthday: " + birthday);
+  }
+
+  static @Nullable TemporalAccessor parseBirthday(@Nullable String birthday) {
+    if (birthday == null) {
+      return null;
+    }
+    return birthday.startsWith("--") ? MonthDay.parse(birthday) : LocalDate.parse(birthday);
+  }
+}
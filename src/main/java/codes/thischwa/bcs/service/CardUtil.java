@@ -1,21 +1,23 @@
 package codes.thischwa.bcs.service;
 
 import codes.thischwa.bcs.Contact;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.temporal.Temporal;
 import java.time.temporal.TemporalAccessor;
+import java.util.List;
 import java.util.Optional;
 import net.fortuna.ical4j.data.ParserException;
 import net.fortuna.ical4j.model.PropertyList;
 import net.fortuna.ical4j.vcard.VCard;
-import net.fortuna.ical4j.vcard.VCardBuilder;
 import net.fortuna.ical4j.vcard.property.BDay;
 import net.fortuna.ical4j.vcard.property.Fn;
 import net.fortuna.ical4j.vcard.property.N;
-import org.apache.commons.io.IOUtils;
 
 /**
  * Utility class for converting VCard objects into Contact objects.
@@ -26,6 +28,12 @@ import org.apache.commons.io.IOUtils;
  */
 public class CardUtil {
 
+  /**
+   * The vCard properties required to build a {@link Contact}. Only these properties are requested
+   * from the server, if possible.
+   */
+  static final List<String> CONTACT_PROPERTIES = List.of("VERSION", "UID", "N", "FN", "BDAY");
+
   private CardUtil() {
   }
 
@@ -82,8 +90,10 @@ public class CardUtil {
   /**
    * Constructs a Contact object from the provided VCard data stream and a unique identifier.
    *
-   * <p>This method reads the VCard data from the input stream, parses it into a VCard object,
-   * and then converts it into a Contact object using the provided identifier.
+   * <p>This method reads the VCard data from the input stream by the {@link CardScanner}, which
+   * picks out the required properties in one pass and skips all others, e.g. large embedded photos.
+   * If the scanner isn't sure about the result, the retained VCard data is parsed into a VCard
+   * object, which is converted into a Contact object using the provided identifier.
    *
    * @param inCard An InputStream containing VCard data.
    *                    The stream must contain a valid VCard format.
@@ -95,10 +105,15 @@ public class CardUtil {
    */
   public static Contact buildContact(InputStream inCard, String identifier)
       throws IOException, ParserException, MissingBirthdayException {
-    byte[] vcfContent = IOUtils.toByteArray(inCard);
-    VCardBuilder cardBuilder =
-        new VCardBuilder(new ByteArrayInputStream(vcfContent));
-    VCard card = cardBuilder.build();
+    CardScanner scanner = new CardScanner();
+    String vcfContent = scanner.scan(new BufferedReader(new InputStreamReader(inCard, StandardCharsets.UTF_8)));
+    Contact contact = scanner.toContact(identifier);
+    return (contact != null) ? contact : buildContactByParser(vcfContent, identifier);
+  }
+
+  static Contact buildContactByParser(String vcfContent, String identifier)
+      throws IOException, ParserException, MissingBirthdayException {
+    VCard card = ParserPool.buildCard(new StringReader(vcfContent));
     return convert(card, identifier);
   }
 }
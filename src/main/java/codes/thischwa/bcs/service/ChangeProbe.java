@@ -0,0 +1,203 @@
+package codes.thischwa.bcs.service;
+
+import codes.thischwa.bcs.conf.BcsConf;
+import codes.thischwa.bcs.conf.DavConf;
+import com.github.sardine.DavResource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Detects whether a synchronization can be skipped, because neither the address book nor the
+ * birthday calendar nor the configuration of the events changed since the last successful run.
+ *
+ * <p>The address book and the calendar are probed by a PROPFIND request of depth 0 each for the
+ * 'CS:getctag' and the 'DAV:sync-token', which change whenever a member of the collection changes.
+ * If the server provides neither of them, each run synchronizes completely. The tag of the calendar
+ * is recorded after the events were written, so the own changes don't trigger the next run.
+ *
+ * <p>If the property `bcs.state-dir` is set, the tags are persisted to the file
+ * {@value #FILE_NAME} inside this directory. Otherwise, they are kept in memory only.
+ */
+@Component
+@Slf4j
+public class ChangeProbe {
+
+  static final String FILE_NAME = "change-probe.tsv";
+
+  /**
+   * The version of the file format. It must be increased if the format changes, so outdated tags
+   * are discarded.
+   */
+  static final String VERSION = "1";
+
+  private static final String TYPE_VERSION = "version";
+  private static final String TYPE_TAGS = "tags";
+
+  /**
+   * The state of the address book, the calendar and the configuration.
+   *
+   * @param cardTag           The ctag or sync token of the address book, or null if unknown.
+   * @param calTag            The ctag or sync token of the calendar, or null if unknown.
+   * @param configFingerprint The fingerprint of the configuration of the events.
+   */
+  public record Tags(@Nullable String cardTag, @Nullable String calTag, String configFingerprint) {
+
+    /**
+     * Checks whether both collections provide a tag, otherwise changes can't be detected.
+     *
+     * @return true if the tags of the address book and the calendar are known
+     */
+    public boolean isComplete() {
+      return cardTag != null && calTag != null;
+    }
+  }
+
+  private final DavConf davConf;
+  private final SardineInitializer sardineInitializer;
+  private final @Nullable Path file;
+
+  private @Nullable Tags lastTags;
+
+  private boolean loaded;
+
+  /**
+   * Constructs a new ChangeProbe.
+   *
+   * @param conf               The configuration object containing the directory of the state files.
+   * @param davConf            The configuration object containing the URLs of the address book and
+   *                           the calendar.
+   * @param sardineInitializer The initializer of the {@link DavTransport}.
+   */
+  public ChangeProbe(BcsConf conf, DavConf davConf, SardineInitializer sardineInitializer) {
+    this.davConf = davConf;
+    this.sardineInitializer = sardineInitializer;
+    this.file = StringUtils.hasText(conf.stateDir()) ? Path.of(conf.stateDir()).resolve(FILE_NAME) : null;
+  }
+
+  /**
+   * Reads the current tags of the address book and the calendar.
+   *
+   * @param configFingerprint the fingerprint of the current configuration of the events
+   * @return the current tags, or null if the probe is disabled or failed
+   */
+  public @Nullable Tags probe(String configFingerprint) {
+    if (!davConf.changeProbe()) {
+      return null;
+    }
+    DavTransport transport = sardineInitializer.getTransport();
+    try {
+      Tags tags = new Tags(readTag(transport, davConf.cardUrl()), readTag(transport, davConf.calUrl()),
+          configFingerprint);
+      log.debug("Probed tags: {}", tags);
+      return tags;
+    } catch (IOException e) {
+      log.warn("Failed to probe the tags of the address book and the calendar: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Checks whether nothing changed since the last successful synchronization.
+   *
+   * @param tags the current tags, may be null
+   * @return true if the tags are complete and equal to the recorded ones, false otherwise
+   * @throws IOException if the persisted tags can't be read
+   */
+  public synchronized boolean isUnchanged(@Nullable Tags tags) throws IOException {
+    load();
+    return tags != null && tags.isComplete() && tags.equals(lastTags);
+  }
+
+  /**
+   * Records the tags of a successful synchronization. The tag of the calendar is read again, because
+   * it changed if events were written. If it can't be read, the recorded tags are removed, so the
+   * next run synchronizes completely.
+   *
+   * @param tags the tags probed before the synchronization, may be null
+   * @throws IOException if the tags can't be written
+   */
+  public synchronized void record(@Nullable Tags tags) throws IOException {
+    load();
+    Tags newTags = null;
+    if (tags != null && tags.cardTag() != null) {
+      try {
+        newTags = new Tags(tags.cardTag(), readTag(sardineInitializer.getTransport(), davConf.calUrl()),
+            tags.configFingerprint());
+      } catch (IOException e) {
+        log.warn("Failed to read the tag of the calendar: {}", e.getMessage());
+      }
+    }
+    lastTags = newTags != null && newTags.isComplete() ? newTags : null;
+    save();
+  }
+
+  private void save() throws IOException {
+    if (file == null) {
+      return;
+    }
+    List<@Nullable String[]> records = new ArrayList<>(2);
+    records.add(new String[] {TYPE_VERSION, VERSION});
+    if (lastTags != null) {
+      records.add(new @Nullable String[] {TYPE_TAGS, lastTags.cardTag(), lastTags.calTag(),
+          lastTags.configFingerprint()});
+    }
+    StateFile.write(file, "BCS change probe", records);
+    log.debug("Saved the tags to {}", file);
+  }
+
+  private void load() throws IOException {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    if (file == null) {
+      return;
+    }
+    Tags[] loadedTags = new Tags[1];
+    boolean[] validVersion = new boolean[1];
+    boolean exists = StateFile.read(file, fields -> {
+      if (TYPE_VERSION.equals(fields[0]) && fields.length == 2) {
+        validVersion[0] = VERSION.equals(fields[1]);
+      } else if (TYPE_TAGS.equals(fields[0]) && fields.length == 4 && fields[3] != null) {
+        loadedTags[0] = new Tags(fields[1], fields[2], fields[3]);
+      } else {
+        log.warn("Ignoring invalid record in {}: {}", file, fields[0]);
+      }
+    });
+    if (!exists) {
+      return;
+    }
+    if (!validVersion[0]) {
+      log.info("Discarding {}, it was written by another version.", file);
+      return;
+    }
+    lastTags = loadedTags[0];
+  }
+
+  /**
+   * Reads the tag of the collection. The ctag is preferred, because it's provided by more servers.
+   *
+   * @return the tag, or null if the server provides neither a ctag nor a sync token
+   */
+  static @Nullable String readTag(DavTransport transport, String url) throws IOException {
+    List<DavResource> resources = transport.propfind(url, 0, DavSardine.TAG_PROPERTIES);
+    if (resources.isEmpty()) {
+      return null;
+    }
+    Map<QName, String> props = resources.get(0).getCustomPropsNS();
+    String ctag = props.get(DavSardine.GETCTAG);
+    if (StringUtils.hasText(ctag)) {
+      return ctag;
+    }
+    String syncToken = props.get(DavSardine.SYNC_TOKEN);
+    return StringUtils.hasText(syncToken) ? syncToken : null;
+  }
+}
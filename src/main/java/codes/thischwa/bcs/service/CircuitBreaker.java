@@ -0,0 +1,93 @@
+package codes.thischwa.bcs.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Remembers that the DAV server is down, so it isn't probed again and again while it recovers.
+ *
+ * <p>The breaker is closed as long as the server is reachable. If a probe fails, it opens for the
+ * configured duration, and all requests are rejected. Afterward, it's half-open: a single probe
+ * is allowed, which closes the breaker if it succeeds or opens it again if it fails.
+ */
+final class CircuitBreaker {
+
+  /**
+   * The states of the breaker.
+   */
+  enum State {
+    /**
+     * The server is reachable.
+     */
+    CLOSED,
+    /**
+     * The server is down, requests are rejected.
+     */
+    OPEN,
+    /**
+     * The open duration elapsed, a single probe is allowed.
+     */
+    HALF_OPEN
+  }
+
+  private final Clock clock;
+  private final Duration openDuration;
+
+  private State state = State.CLOSED;
+  private @Nullable Instant openUntil;
+
+  /**
+   * Constructs a new CircuitBreaker.
+   *
+   * @param clock        the clock, e.g. {@link Clock#systemUTC()}
+   * @param openDuration the time the breaker stays open after a failure
+   */
+  CircuitBreaker(Clock clock, Duration openDuration) {
+    this.clock = clock;
+    this.openDuration = openDuration;
+  }
+
+  /**
+   * Checks whether a request is allowed. If the open duration elapsed, the breaker changes to
+   * half-open.
+   *
+   * @return false if the breaker is open, true otherwise
+   */
+  synchronized boolean allowRequest() {
+    if (state == State.OPEN && openUntil != null && !clock.instant().isBefore(openUntil)) {
+      state = State.HALF_OPEN;
+    }
+    return state != State.OPEN;
+  }
+
+  /**
+   * Closes the breaker after a successful request.
+   */
+  synchronized void recordSuccess() {
+    state = State.CLOSED;
+    openUntil = null;
+  }
+
+  /**
+   * Opens the breaker after a failed request.
+   */
+  synchronized void recordFailure() {
+    state = State.OPEN;
+    openUntil = clock.instant().plus(openDuration);
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * Retrieves the end of the open duration.
+   *
+   * @return the time until the breaker is open, or null if it isn't open
+   */
+  synchronized @Nullable Instant getOpenUntil() {
+    return state == State.OPEN ? openUntil : null;
+  }
+}
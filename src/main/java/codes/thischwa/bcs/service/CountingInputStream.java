@@ -0,0 +1,68 @@
+package codes.thischwa.bcs.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Counts the bytes read and reports them once the stream is closed, e.g. to
+ * {@link SyncMetrics#bytesReceived(long)}.
+ */
+final class CountingInputStream extends FilterInputStream {
+
+  private final LongConsumer onClose;
+  private long count;
+  private boolean closed;
+
+  /**
+   * Constructs a new CountingInputStream.
+   *
+   * @param in      the stream to count
+   * @param onClose receives the number of bytes read when the stream is closed
+   */
+  CountingInputStream(InputStream in, LongConsumer onClose) {
+    super(in);
+    this.onClose = onClose;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0) {
+      count++;
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int n = super.read(b, off, len);
+    if (n > 0) {
+      count += n;
+    }
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(n);
+    count += skipped;
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    // a reset would count the bytes twice
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      onClose.accept(count);
+    }
+    super.close();
+  }
+}
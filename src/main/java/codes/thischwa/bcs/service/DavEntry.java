@@ -0,0 +1,44 @@
+package codes.thischwa.bcs.service;
+
+import java.net.URI;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Represents a single response element of a WebDAV multistatus returned by a REPORT request.
+ *
+ * @param href   The href of the resource as sent by the server.
+ * @param status The HTTP status code of the resource, e.g. 200 or 404.
+ * @param etag   The entity tag of the resource, or null if not provided.
+ * @param data   The content of the requested data element (e.g. the vCard of an
+ *               {@code address-data} element), or null if not provided.
+ */
+public record DavEntry(String href, int status, @Nullable String etag, @Nullable String data) {
+
+  /**
+   * Retrieves the decoded path of the href. Servers may respond with absolute URLs or with
+   * differently encoded paths than requested, so the path is used to match responses with requests.
+   *
+   * @return The decoded path of the href, or the raw href if it isn't a valid URI.
+   */
+  public String path() {
+    return toPath(href);
+  }
+
+  /**
+   * Checks whether the entry was delivered successfully and contains data.
+   *
+   * @return true if the status is 200 and the data isn't null, false otherwise.
+   */
+  public boolean hasData() {
+    return status == 200 && data != null;
+  }
+
+  static String toPath(String href) {
+    try {
+      String path = URI.create(href).getPath();
+      return path == null ? href : path;
+    } catch (IllegalArgumentException e) {
+      return href;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package codes.thischwa.bcs.service;
+
+import com.github.sardine.impl.SardineException;
+import java.io.Serial;
+import javax.xml.namespace.QName;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A {@link SardineException} of a response with a DAV:error body (RFC 4918, section 16). The body
+ * names the precondition or postcondition which failed, e.g. 'valid-sync-token' if the server
+ * rejects the sync token of a sync-collection report.
+ */
+public class DavException extends SardineException {
+
+  @Serial
+  private static final long serialVersionUID = 1L;
+
+  private final transient @Nullable QName condition;
+
+  /**
+   * Constructs a new DavException.
+   *
+   * @param msg            the message
+   * @param statusCode     the status code of the response
+   * @param responsePhrase the reason phrase of the response
+   * @param condition      the first element of the DAV:error body, or null if there isn't any
+   */
+  public DavException(String msg, int statusCode, String responsePhrase, @Nullable QName condition) {
+    super(msg, statusCode, responsePhrase);
+    this.condition = condition;
+  }
+
+  /**
+   * Retrieves the condition which failed.
+   *
+   * @return the first element of the DAV:error body, or null if there isn't any
+   */
+  public @Nullable QName getCondition() {
+    return condition;
+  }
+
+  /**
+   * Checks whether the exception names the given condition.
+   *
+   * @param e         the exception thrown by the request
+   * @param condition the condition, e.g. DAV:valid-sync-token
+   * @return true if the response body names the condition, false otherwise
+   */
+  static boolean hasCondition(SardineException e, QName condition) {
+    return e instanceof DavException davException && condition.equals(davException.getCondition());
+  }
+}
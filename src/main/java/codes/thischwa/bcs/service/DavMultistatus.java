@@ -0,0 +1,24 @@
+package codes.thischwa.bcs.service;
+
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Represents the multistatus response of a REPORT request.
+ *
+ * @param entries   The response elements of the multistatus.
+ * @param syncToken The sync token of a sync-collection REPORT (RFC 6578), or null if not provided.
+ */
+public record DavMultistatus(List<DavEntry> entries, @Nullable String syncToken) {
+
+  /**
+   * Checks whether the server truncated the result of a sync-collection REPORT. In this case, the
+   * request URI is reported with the status 507 and the client has to repeat the request with the
+   * new sync token to get the remaining changes.
+   *
+   * @return true if the result is truncated, false otherwise.
+   */
+  public boolean isTruncated() {
+    return entries.stream().anyMatch(entry -> entry.status() == 507);
+  }
+}
@@ -0,0 +1,285 @@
+package codes.thischwa.bcs.service;
+
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.model.Multistatus;
+import com.github.sardine.model.Prop;
+import com.github.sardine.model.Propstat;
+import com.github.sardine.model.Response;
+import com.github.sardine.report.SardineReport;
+import jakarta.xml.bind.JAXBElement;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A WebDAV REPORT request with a pre-rendered XML body. The multistatus response is mapped to a
+ * {@link DavMultistatus} object.
+ *
+ * <p>Sardine only ships a few JAXB-based reports. The CardDAV and CalDAV reports used by BCS are
+ * simple enough to be rendered as plain XML, therefore {@link #toXml()} is overridden. The
+ * {@link #toJaxb()} representation is the DOM element of the rendered body, which JAXB marshals as
+ * any type.
+ */
+public class DavReport extends SardineReport<DavMultistatus> {
+
+  static final String NS_DAV = "DAV:";
+  static final String NS_CARDDAV = "urn:ietf:params:xml:ns:carddav";
+  static final String NS_CALDAV = "urn:ietf:params:xml:ns:caldav";
+
+  static final String ADDRESS_DATA = "address-data";
+  static final String CALENDAR_DATA = "calendar-data";
+
+  /**
+   * The address-data element which requests only the vCard properties required for a contact
+   * (RFC 6352, section 10.4.2). Servers ignoring it return the complete vCard.
+   */
+  private static final String PARTIAL_ADDRESS_DATA = CardUtil.CONTACT_PROPERTIES.stream()
+      .map(name -> "<C:prop name=\"" + name + "\"/>")
+      .collect(Collectors.joining("", "<C:" + ADDRESS_DATA + ">", "</C:" + ADDRESS_DATA + ">"));
+
+  /**
+   * HTTP status codes which indicate that a server doesn't support a requested report.
+   */
+  private static final Set<Integer> UNSUPPORTED_STATUS = Set.of(405, 415, 501);
+
+  /**
+   * The precondition of a report the resource doesn't support (RFC 3253, section 3.6).
+   */
+  static final QName SUPPORTED_REPORT = new QName(NS_DAV, "supported-report");
+
+  /**
+   * The precondition of a sync-collection report with an invalid sync token (RFC 6578, section 3.2).
+   */
+  static final QName VALID_SYNC_TOKEN = new QName(NS_DAV, "valid-sync-token");
+
+  private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+
+  private final String body;
+  private final @Nullable String dataElement;
+
+  DavReport(String body, @Nullable String dataElement) {
+    this.body = body;
+    this.dataElement = dataElement;
+  }
+
+  /**
+   * Builds a CardDAV addressbook-multiget report (RFC 6352, section 8.7) which requests the ETag and
+   * the vCard data of the given hrefs. Only the properties required for a contact are requested.
+   *
+   * @param hrefs the hrefs of the vCards to fetch
+   * @return the report
+   */
+  public static DavReport addressbookMultiget(Collection<String> hrefs) {
+    StringBuilder xml = new StringBuilder(256 + hrefs.size() * 96);
+    xml.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>")
+        .append("<C:addressbook-multiget xmlns:D=\"").append(NS_DAV)
+        .append("\" xmlns:C=\"").append(NS_CARDDAV).append("\">")
+        .append("<D:prop><D:getetag/>").append(PARTIAL_ADDRESS_DATA).append("</D:prop>");
+    hrefs.forEach(href -> xml.append("<D:href>").append(escapeXml(href)).append("</D:href>"));
+    xml.append("</C:addressbook-multiget>");
+    return new DavReport(xml.toString(), ADDRESS_DATA);
+  }
+
+  /**
+   * Builds a CalDAV calendar-multiget report (RFC 4791, section 7.9) which requests the ETag and the
+   * iCalendar data of the given hrefs.
+   *
+   * @param hrefs the hrefs of the calendar objects to fetch
+   * @return the report
+   */
+  public static DavReport calendarMultiget(Collection<String> hrefs) {
+    StringBuilder xml = new StringBuilder(256 + hrefs.size() * 96);
+    xml.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>")
+        .append("<C:calendar-multiget xmlns:D=\"").append(NS_DAV)
+        .append("\" xmlns:C=\"").append(NS_CALDAV).append("\">")
+        .append("<D:prop><D:getetag/><C:").append(CALENDAR_DATA).append("/></D:prop>");
+    hrefs.forEach(href -> xml.append("<D:href>").append(escapeXml(href)).append("</D:href>"));
+    xml.append("</C:calendar-multiget>");
+    return new DavReport(xml.toString(), CALENDAR_DATA);
+  }
+
+  /**
+   * Builds a CardDAV addressbook-query report (RFC 6352, section 8.6) which requests the ETag and the
+   * vCard data of all vCards containing the given property. Only the properties required for a
+   * contact are requested. The report must be sent with depth 1.
+   *
+   * @param propertyName the name of the vCard property which must be defined, e.g. 'BDAY'
+   * @return the report
+   */
+  public static DavReport addressbookQuery(String propertyName) {
+    String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+        + "<C:addressbook-query xmlns:D=\"" + NS_DAV + "\" xmlns:C=\"" + NS_CARDDAV + "\">"
+        + "<D:prop><D:getetag/>" + PARTIAL_ADDRESS_DATA + "</D:prop>"
+        + "<C:filter><C:prop-filter name=\"" + escapeXml(propertyName) + "\"/></C:filter>"
+        + "</C:addressbook-query>";
+    return new DavReport(xml, ADDRESS_DATA);
+  }
+
+  /**
+   * Builds a WebDAV sync-collection report (RFC 6578) which requests the ETags of the members
+   * changed since the given sync token. Without a sync token, all members are reported. The report
+   * must be sent with depth 0.
+   *
+   * @param syncToken the sync token of the last synchronization, or null for an initial one
+   * @return the report
+   */
+  public static DavReport syncCollection(@Nullable String syncToken) {
+    String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+        + "<D:sync-collection xmlns:D=\"" + NS_DAV + "\">"
+        + (syncToken == null ? "<D:sync-token/>" : "<D:sync-token>" + escapeXml(syncToken) + "</D:sync-token>")
+        + "<D:sync-level>1</D:sync-level>"
+        + "<D:prop><D:getetag/></D:prop>"
+        + "</D:sync-collection>";
+    return new DavReport(xml, null);
+  }
+
+  /**
+   * Checks whether the given exception indicates that the server rejected the sync token of a
+   * sync-collection report, which is signaled by the precondition 'valid-sync-token'. Other errors,
+   * e.g. a missing permission, don't reset the sync token.
+   *
+   * @param e the exception thrown by the report request
+   * @return true if the sync token is invalid, false otherwise
+   */
+  public static boolean isInvalidSyncToken(SardineException e) {
+    return DavException.hasCondition(e, VALID_SYNC_TOKEN);
+  }
+
+  /**
+   * Checks whether the given exception indicates that the server doesn't support a report: the
+   * method or the media type isn't supported, or the precondition 'supported-report' failed. Other
+   * client errors, e.g. a missing permission, aren't regarded as unsupported, so they aren't hidden
+   * by a fallback.
+   *
+   * @param e the exception thrown by the report request
+   * @return true if the report isn't supported, false otherwise
+   */
+  public static boolean isUnsupported(SardineException e) {
+    return UNSUPPORTED_STATUS.contains(e.getStatusCode()) || DavException.hasCondition(e, SUPPORTED_REPORT);
+  }
+
+  @Override
+  public String toXml() {
+    return body;
+  }
+
+  /**
+   * Parses the rendered body into a DOM element. It's wrapped in a {@link JAXBElement} of the same
+   * name, because JAXB marshals a DOM element only as content of any type.
+   *
+   * @return the root element of the report body
+   */
+  @Override
+  public Object toJaxb() {
+    try {
+      Element root = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder()
+          .parse(new InputSource(new StringReader(body)))
+          .getDocumentElement();
+      return new JAXBElement<>(new QName(root.getNamespaceURI(), root.getLocalName(), root.getPrefix()),
+          Object.class, root);
+    } catch (ParserConfigurationException | SAXException | IOException e) {
+      throw new IllegalStateException("The body of the report isn't valid XML: " + e.getMessage(), e);
+    }
+  }
+
+  private static DocumentBuilderFactory createDocumentBuilderFactory() {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    factory.setExpandEntityReferences(false);
+    try {
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    } catch (ParserConfigurationException e) {
+      throw new IllegalStateException(e);
+    }
+    return factory;
+  }
+
+  @Override
+  public DavMultistatus fromMultistatus(Multistatus multistatus) {
+    List<DavEntry> entries = new ArrayList<>(multistatus.getResponse().size());
+    for (Response response : multistatus.getResponse()) {
+      if (response.getHref().isEmpty()) {
+        continue;
+      }
+      String href = response.getHref().get(0);
+      if (response.getStatus() != null) {
+        entries.add(new DavEntry(href, parseStatus(response.getStatus()), null, null));
+        continue;
+      }
+      entries.add(toEntry(href, response.getPropstat()));
+    }
+    return new DavMultistatus(entries, multistatus.getSyncToken());
+  }
+
+  private DavEntry toEntry(String href, List<Propstat> propstats) {
+    int status = 404;
+    String etag = null;
+    String data = null;
+    for (Propstat propstat : propstats) {
+      int propStatus = parseStatus(propstat.getStatus());
+      if (propStatus != 200 || propstat.getProp() == null) {
+        continue;
+      }
+      status = propStatus;
+      Prop prop = propstat.getProp();
+      if (prop.getGetetag() != null && !prop.getGetetag().getContent().isEmpty()) {
+        etag = prop.getGetetag().getContent().get(0);
+      }
+      for (Element element : prop.getAny()) {
+        if (dataElement != null && dataElement.equals(element.getLocalName())) {
+          data = element.getTextContent();
+        }
+      }
+    }
+    return new DavEntry(href, status, etag, data);
+  }
+
+  /**
+   * Parses the status code of an HTTP status line, e.g. 'HTTP/1.1 200 OK'.
+   *
+   * @param statusLine the status line
+   * @return the status code, or 200 if the status line is null or can't be parsed
+   */
+  static int parseStatus(@Nullable String statusLine) {
+    if (statusLine == null) {
+      return 200;
+    }
+    String[] parts = statusLine.trim().split(" ");
+    if (parts.length < 2) {
+      return 200;
+    }
+    try {
+      return Integer.parseInt(parts[1]);
+    } catch (NumberFormatException e) {
+      return 200;
+    }
+  }
+
+  static String escapeXml(String value) {
+    StringBuilder escaped = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '&' -> escaped.append("&amp;");
+        case '<' -> escaped.append("&lt;");
+        case '>' -> escaped.append("&gt;");
+        case '"' -> escaped.append("&quot;");
+        case '\'' -> escaped.append("&apos;");
+        default -> escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+}
@@ -0,0 +1,489 @@
+package codes.thischwa.bcs.service;
+
+import com.github.sardine.DavResource;
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.impl.SardineImpl;
+import com.github.sardine.impl.handler.ValidatingResponseHandler;
+import com.github.sardine.impl.methods.HttpPropFind;
+import com.github.sardine.impl.methods.HttpReport;
+import com.github.sardine.model.Multistatus;
+import com.github.sardine.report.SardineReport;
+import com.github.sardine.util.SardineUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicHeader;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A {@link SardineImpl} which sends narrow PROPFIND requests and parses the multistatus response
+ * with a streaming StAX reader.
+ *
+ * <p>Sardine always requests a fixed set of properties for {@link #propfind(String, int, Set)},
+ * and the response is unmarshalled completely by JAXB. For large collections, the response is
+ * several megabytes, even though BCS only needs the resource type, the content type and the ETag
+ * of the members. Therefore, this implementation requests only the given properties and picks
+ * them out of the response while reading it.
+ */
+@Slf4j
+public class DavSardine extends SardineImpl {
+
+  /**
+   * The properties required to list the members of a collection.
+   */
+  public static final Set<QName> LIST_PROPERTIES = Set.of(
+      new QName(DavReport.NS_DAV, "resourcetype"),
+      new QName(DavReport.NS_DAV, "getcontenttype"),
+      new QName(DavReport.NS_DAV, "getetag"));
+
+  /**
+   * The ctag of a collection, a proprietary extension of the Calendar Server.
+   */
+  public static final QName GETCTAG = new QName("http://calendarserver.org/ns/", "getctag");
+
+  /**
+   * The sync token of a collection (RFC 6578).
+   */
+  public static final QName SYNC_TOKEN = new QName(DavReport.NS_DAV, "sync-token");
+
+  /**
+   * The properties of a collection which change whenever one of its members changes.
+   */
+  public static final Set<QName> TAG_PROPERTIES = Set.of(GETCTAG, SYNC_TOKEN);
+
+  private static final QName RESPONSE = new QName(DavReport.NS_DAV, "response");
+
+  private static final QName COLLECTION = new QName(DavReport.NS_DAV, "collection");
+
+  private static final QName ERROR = new QName(DavReport.NS_DAV, "error");
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+  private final RequestCounter requestCounter;
+
+  /**
+   * Constructs a new DavSardine.
+   *
+   * @param builder  the builder of the HTTP client
+   * @param username the username for the authentication
+   * @param password the password for the authentication
+   */
+  public DavSardine(HttpClientBuilder builder, String username, String password) {
+    this(builder, username, password, new RequestCounter());
+  }
+
+  /**
+   * Constructs a new DavSardine, which counts the bytes of the PROPFIND and REPORT responses.
+   *
+   * @param builder        the builder of the HTTP client
+   * @param username       the username for the authentication
+   * @param password       the password for the authentication
+   * @param requestCounter the counter of the response bodies
+   */
+  DavSardine(HttpClientBuilder builder, String username, String password, RequestCounter requestCounter) {
+    super(builder, username, password);
+    this.requestCounter = requestCounter;
+    // Sardine executes each request with a child context of the shared one. An auth cache in the
+    // shared context keeps the scheme of a successful authentication, e.g. the Digest nonce, for
+    // the following requests, otherwise each request would be challenged again.
+    if (context.getAuthCache() == null) {
+      context.setAuthCache(new BasicAuthCache());
+    }
+  }
+
+  /**
+   * Requests exactly the given properties of the resource and its members. Besides the resource type,
+   * the content type and the ETag, the text of other properties is available by
+   * {@link DavResource#getCustomPropsNS()}.
+   *
+   * @param url   the URL of the resource
+   * @param depth the depth of the PROPFIND request
+   * @param props the properties to request, e.g. {@link #LIST_PROPERTIES}
+   * @return the resources with status 200
+   * @throws IOException if the request fails or the response can't be parsed
+   */
+  @Override
+  public List<DavResource> propfind(String url, int depth, Set<QName> props) throws IOException {
+    HttpPropFind request = new HttpPropFind(url);
+    request.setDepth(depth < 0 ? "infinity" : Integer.toString(depth));
+    request.setEntity(new ByteArrayEntity(toXml(props).getBytes(StandardCharsets.UTF_8),
+        ContentType.create("text/xml", StandardCharsets.UTF_8)));
+    return execute(request, new ValidatingResponseHandler<>() {
+      @Override
+      public List<DavResource> handleResponse(HttpResponse response) throws IOException {
+        validateResponse(response);
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+          return Collections.emptyList();
+        }
+        try (InputStream in = requestCounter.countBody(entity.getContent())) {
+          return parse(in);
+        }
+      }
+    });
+  }
+
+  /**
+   * Sends the REPORT request. Unlike Sardine, the body of an error response is read, so the failed
+   * precondition is available by {@link DavException#getCondition()}, e.g. if the server rejects the
+   * sync token.
+   *
+   * @param url    the URL of the collection
+   * @param depth  the depth of the REPORT request
+   * @param report the report
+   * @return the result of the report
+   * @throws IOException if the request fails or the response can't be parsed
+   */
+  @Override
+  public <T> T report(String url, int depth, SardineReport<T> report) throws IOException {
+    HttpReport request = new HttpReport(url);
+    request.setDepth(depth < 0 ? "infinity" : Integer.toString(depth));
+    request.setEntity(new StringEntity(report.toXml(), ContentType.create("text/xml", StandardCharsets.UTF_8)));
+    Multistatus multistatus = execute(request, response -> {
+      StatusLine statusLine = response.getStatusLine();
+      int status = statusLine.getStatusCode();
+      HttpEntity entity = response.getEntity();
+      if (status < 200 || status >= 300) {
+        QName condition = null;
+        if (entity != null) {
+          try (InputStream in = requestCounter.countBody(entity.getContent())) {
+            condition = parseCondition(in);
+          }
+        }
+        throw new DavException("Unexpected response", status, statusLine.getReasonPhrase(), condition);
+      }
+      if (entity == null) {
+        throw new SardineException("No entity found in response", status, statusLine.getReasonPhrase());
+      }
+      try (InputStream in = requestCounter.countBody(entity.getContent())) {
+        return SardineUtil.unmarshal(in);
+      }
+    });
+    return report.fromMultistatus(multistatus);
+  }
+
+  /**
+   * Uploads the stream with the given headers. The content of a {@link ByteArrayInputStream} is sent
+   * with its length, because some servers reject chunked uploads.
+   *
+   * @param url        the URL of the resource
+   * @param dataStream the content to upload
+   * @param headers    the headers of the request, e.g. preconditions like 'If-Match'
+   * @throws IOException if the request fails
+   */
+  @Override
+  public void put(String url, InputStream dataStream, List<Header> headers) throws IOException {
+    if (dataStream instanceof ByteArrayInputStream bytes) {
+      put(url, new InputStreamEntity(bytes, bytes.available()), headers);
+    } else {
+      super.put(url, dataStream, headers);
+    }
+  }
+
+  /**
+   * Uploads the content with its length and the given headers. Unlike the put methods of Sardine,
+   * the ETag of the response is returned, so the next update can be sent with 'If-Match'.
+   *
+   * @param url     the URL of the resource
+   * @param content the content to upload
+   * @param headers the headers of the request, e.g. preconditions like 'If-Match'
+   * @return the ETag of the response, or null if the server doesn't return it
+   * @throws IOException if the request fails
+   */
+  public @Nullable String putForEtag(String url, byte[] content, Map<String, String> headers) throws IOException {
+    List<Header> requestHeaders = new ArrayList<>(headers.size());
+    headers.forEach((name, value) -> requestHeaders.add(new BasicHeader(name, value)));
+    return put(url, new ByteArrayEntity(content), requestHeaders, new ValidatingResponseHandler<>() {
+      @Override
+      public @Nullable String handleResponse(HttpResponse response) throws IOException {
+        validateResponse(response);
+        Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        return etag == null ? null : etag.getValue();
+      }
+    });
+  }
+
+  /**
+   * Renders the PROPFIND request body for the given properties.
+   *
+   * @param props the properties to request
+   * @return the XML body
+   */
+  static String toXml(Set<QName> props) {
+    StringBuilder xml = new StringBuilder(256);
+    xml.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>")
+        .append("<D:propfind xmlns:D=\"").append(DavReport.NS_DAV).append("\"><D:prop>");
+    for (QName prop : props) {
+      if (DavReport.NS_DAV.equals(prop.getNamespaceURI())) {
+        xml.append("<D:").append(prop.getLocalPart()).append("/>");
+      } else {
+        xml.append("<X:").append(prop.getLocalPart()).append(" xmlns:X=\"")
+            .append(DavReport.escapeXml(prop.getNamespaceURI())).append("\"/>");
+      }
+    }
+    xml.append("</D:prop></D:propfind>");
+    return xml.toString();
+  }
+
+  /**
+   * Parses a multistatus response of a PROPFIND request. Properties are only taken from a propstat
+   * with status 200, responses with another status are skipped.
+   *
+   * @param in the stream of the response body
+   * @return the resources
+   * @throws IOException if the response can't be parsed
+   */
+  static List<DavResource> parse(InputStream in) throws IOException {
+    List<DavResource> resources = new ArrayList<>();
+    XMLStreamReader reader = null;
+    try {
+      reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+      ResponseParser response = null;
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          QName name = reader.getName();
+          if (RESPONSE.equals(name)) {
+            response = new ResponseParser();
+          } else if (response != null) {
+            response.startElement(name, reader);
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT && response != null
+            && DavReport.NS_DAV.equals(reader.getNamespaceURI())) {
+          String name = reader.getLocalName();
+          if ("response".equals(name)) {
+            DavResource resource = response.toResource();
+            if (resource != null) {
+              resources.add(resource);
+            }
+            response = null;
+          } else {
+            response.endElement(name);
+          }
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Error while parsing the PROPFIND response: " + e.getMessage(), e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          log.trace("Error while closing the XML reader: {}", e.getMessage());
+        }
+      }
+    }
+    return resources;
+  }
+
+  /**
+   * Parses the DAV:error body of an error response (RFC 4918, section 16) and retrieves the
+   * condition which failed. Errors while parsing are ignored, because many servers respond with an
+   * HTML page instead.
+   *
+   * @param in the stream of the response body
+   * @return the first child element of DAV:error, or null if the body isn't a DAV:error
+   */
+  static @Nullable QName parseCondition(InputStream in) {
+    XMLStreamReader reader = null;
+    try {
+      reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+      int depth = 0;
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+          if (depth == 0 && !ERROR.equals(reader.getName())) {
+            return null;
+          }
+          if (depth == 1) {
+            return reader.getName();
+          }
+          depth++;
+        }
+      }
+    } catch (XMLStreamException e) {
+      log.debug("The body of the error response isn't a DAV:error: {}", e.getMessage());
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          log.trace("Error while closing the XML reader: {}", e.getMessage());
+        }
+      }
+    }
+    return null;
+  }
+
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  /**
+   * Collects the values of a single response element.
+   */
+  private static class ResponseParser {
+
+    private @Nullable String href;
+    private int status = 200;
+    private boolean inPropstat;
+    private int propstatStatus;
+    private @Nullable String etag;
+    private @Nullable String contentType;
+    private boolean collection;
+    private @Nullable String propstatEtag;
+    private @Nullable String propstatContentType;
+    private boolean propstatCollection;
+    private boolean inProp;
+    private final Map<QName, String> customProps = new HashMap<>();
+    private final Map<QName, String> propstatCustomProps = new HashMap<>();
+
+    void startElement(QName name, XMLStreamReader reader) throws XMLStreamException {
+      if (!DavReport.NS_DAV.equals(name.getNamespaceURI())) {
+        if (inProp) {
+          propstatCustomProps.put(name, readText(reader));
+        }
+        return;
+      }
+      switch (name.getLocalPart()) {
+        case "href" -> {
+          String text = reader.getElementText().trim();
+          if (href == null && !inPropstat) {
+            href = text;
+          }
+        }
+        case "propstat" -> {
+          inPropstat = true;
+          propstatStatus = 200;
+          propstatEtag = null;
+          propstatContentType = null;
+          propstatCollection = false;
+          propstatCustomProps.clear();
+        }
+        case "prop" -> inProp = inPropstat;
+        case "status" -> {
+          int parsed = DavReport.parseStatus(reader.getElementText());
+          if (inPropstat) {
+            propstatStatus = parsed;
+          } else {
+            status = parsed;
+          }
+        }
+        case "getetag" -> propstatEtag = emptyToNull(reader.getElementText());
+        case "getcontenttype" -> propstatContentType = emptyToNull(reader.getElementText());
+        case "resourcetype" -> propstatCollection = readCollection(reader);
+        default -> {
+          if (inProp) {
+            propstatCustomProps.put(name, readText(reader));
+          }
+        }
+      }
+    }
+
+    void endElement(String name) {
+      if ("prop".equals(name)) {
+        inProp = false;
+      } else if ("propstat".equals(name)) {
+        inPropstat = false;
+        if (propstatStatus == 200) {
+          etag = propstatEtag != null ? propstatEtag : etag;
+          contentType = propstatContentType != null ? propstatContentType : contentType;
+          collection |= propstatCollection;
+          customProps.putAll(propstatCustomProps);
+        }
+      }
+    }
+
+    @Nullable DavResource toResource() throws XMLStreamException {
+      if (href == null || status != 200) {
+        return null;
+      }
+      String type = collection ? DavResource.HTTPD_UNIX_DIRECTORY_CONTENT_TYPE
+          : (contentType != null ? contentType : DavResource.DEFAULT_CONTENT_TYPE);
+      try {
+        return new ListedResource(href, type, etag, customProps);
+      } catch (URISyntaxException e) {
+        throw new XMLStreamException("Invalid href: " + href, e);
+      }
+    }
+
+    private static boolean readCollection(XMLStreamReader reader) throws XMLStreamException {
+      boolean isCollection = false;
+      int depth = 1;
+      while (depth > 0) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          isCollection |= depth == 1 && COLLECTION.equals(reader.getName());
+          depth++;
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
+      return isCollection;
+    }
+
+    /**
+     * Reads the text of the current element, the text of child elements is included.
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+      StringBuilder text = new StringBuilder();
+      int depth = 1;
+      while (depth > 0) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+          text.append(reader.getText());
+        }
+      }
+      return text.toString().trim();
+    }
+
+    private static @Nullable String emptyToNull(String value) {
+      String trimmed = value.trim();
+      return trimmed.isEmpty() ? null : trimmed;
+    }
+  }
+
+  /**
+   * A resource with the properties of a narrow PROPFIND request.
+   */
+  private static class ListedResource extends DavResource {
+
+    ListedResource(String href, String contentType, @Nullable String etag, Map<QName, String> customProps)
+        throws URISyntaxException {
+      super(href, null, null, contentType, DavResource.DEFAULT_CONTENT_LENGTH, etag, null, null,
+          Collections.emptyList(), null, Collections.emptyList(), Map.copyOf(customProps));
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package codes.thischwa.bcs.service;
+
+import com.github.sardine.DavResource;
+import com.github.sardine.impl.SardineException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import javax.xml.namespace.QName;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The WebDAV operations used by BCS. The transport is selected by the property `dav.transport`,
+ * see {@link SardineDavTransport} and {@link JdkDavTransport}.
+ *
+ * <p>The interface isn't independent of Sardine: it shares Sardine's {@link DavResource} and
+ * {@link SardineException}, and the {@link JdkDavTransport} parses the responses by Sardine's
+ * JAXB model, too. Only the HTTP client differs. All implementations report an unexpected HTTP
+ * status by a {@link SardineException}, so the handlers check the status code the same way for
+ * each transport.
+ */
+public interface DavTransport {
+
+  /**
+   * Requests the given properties of the resource and its members by PROPFIND, see
+   * {@link DavSardine#propfind(String, int, Set)}.
+   *
+   * @param url   the URL of the resource
+   * @param depth the depth of the PROPFIND request
+   * @param props the properties to request, e.g. {@link DavSardine#LIST_PROPERTIES}
+   * @return the resources with status 200
+   * @throws IOException if the request fails or the response can't be parsed
+   */
+  List<DavResource> propfind(String url, int depth, Set<QName> props) throws IOException;
+
+  /**
+   * Sends the REPORT request.
+   *
+   * @param url    the URL of the collection
+   * @param depth  the depth of the REPORT request
+   * @param report the report
+   * @return the multistatus response
+   * @throws IOException if the request fails or the response can't be parsed
+   */
+  DavMultistatus report(String url, int depth, DavReport report) throws IOException;
+
+  /**
+   * Fetches the resource by GET.
+   *
+   * @param url the URL of the resource
+   * @return the stream of the content, it must be closed by the caller
+   * @throws IOException if the request fails
+   */
+  InputStream get(String url) throws IOException;
+
+  /**
+   * Fetches the resource by GET with additional headers, e.g. the precondition 'If-None-Match'.
+   *
+   * @param url     the URL of the resource
+   * @param headers the additional headers
+   * @return the stream of the content, it must be closed by the caller
+   * @throws IOException if the request fails, e.g. with the status 304 if a precondition applies
+   */
+  InputStream get(String url, Map<String, String> headers) throws IOException;
+
+  /**
+   * Fetches the resource by GET without blocking the calling thread. The content is read completely
+   * before the future completes. By default, the request is sent synchronously.
+   *
+   * @param url     the URL of the resource
+   * @param headers the additional headers
+   * @return the future of the content, it fails with the exception of {@link #get(String, Map)}
+   */
+  default CompletableFuture<InputStream> getAsync(String url, Map<String, String> headers) {
+    try {
+      return CompletableFuture.completedFuture(get(url, headers));
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Checks whether {@link #getAsync(String, Map)} sends the requests without blocking a thread, so
+   * many requests can be sent at the same time without a pool of threads.
+   *
+   * @return true if the requests are sent asynchronously, false otherwise
+   */
+  default boolean isNonBlocking() {
+    return false;
+  }
+
+  /**
+   * Uploads the content by PUT. The content is sent with its length.
+   *
+   * @param url     the URL of the resource
+   * @param content the content to upload
+   * @param headers the headers of the request, e.g. the content type or preconditions like 'If-Match'
+   * @return the ETag of the response, or null if the server doesn't return it
+   * @throws IOException if the request fails
+   */
+  @Nullable String put(String url, byte[] content, Map<String, String> headers) throws IOException;
+
+  /**
+   * Deletes the resource.
+   *
+   * @param url the URL of the resource
+   * @throws IOException if the request fails
+   */
+  void delete(String url) throws IOException;
+
+  /**
+   * Checks whether the resource exists by HEAD.
+   *
+   * @param url the URL of the resource
+   * @return true if the resource exists, false if the server responds with 404
+   * @throws IOException if the request fails
+   */
+  boolean exists(String url) throws IOException;
+
+  /**
+   * Releases the resources of the transport, e.g. its threads. By default, nothing is released.
+   *
+   * @throws IOException if the resources can't be released
+   */
+  default void shutdown() throws IOException {
+  }
+}
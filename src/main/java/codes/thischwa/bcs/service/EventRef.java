@@ -0,0 +1,19 @@
+package codes.thischwa.bcs.service;
+
+import java.time.temporal.Temporal;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A compact reference to an existing birthday event of the calendar. It holds only the data
+ * required to decide whether the event is up to date, the complete event isn't kept.
+ *
+ * @param uid     The UID of the event, which is the identifier of the contact.
+ * @param dtStart The start date of the event, or null if the event has none.
+ * @param href    The decoded path of the href of the event.
+ * @param etag    The ETag of the event, or null if unknown.
+ * @param hash    The fingerprint of the inputs the event was built from, or null if the event has
+ *                none, e.g. because it was written by an older version.
+ */
+public record EventRef(String uid, @Nullable Temporal dtStart, String href, @Nullable String etag,
+                       @Nullable String hash) {
+}
@@ -0,0 +1,175 @@
+package codes.thischwa.bcs.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.temporal.Temporal;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A streaming scanner which reads an iCalendar object line by line and picks out the UID, the
+ * DTSTART and the fingerprint ({@value CalUtil#FINGERPRINT_PROPERTY}) of its event, without
+ * building the complete ical4j {@link net.fortuna.ical4j.model.Calendar}.
+ *
+ * <p>The scanner only handles the calendar objects written by BCS: a single VEVENT, optionally with
+ * nested components like VALARM, and an all-day DTSTART. For anything else, e.g. additional
+ * components, escaped values or date-times, the scanner isn't sure about the result and the
+ * calendar object has to be parsed by the full parser.
+ *
+ * <p>An instance is meant for a single calendar object and isn't thread-safe.
+ */
+final class EventScanner {
+
+  private static final String VCALENDAR = "VCALENDAR";
+  private static final String VEVENT = "VEVENT";
+
+  private final Deque<String> components = new ArrayDeque<>();
+
+  private boolean uncertain;
+  private boolean eventFound;
+  private boolean ended;
+  private @Nullable String uid;
+  private @Nullable String dtStartValue;
+  private String dtStartParams = "";
+  private @Nullable String hash;
+
+  /**
+   * Scans the first calendar object of the reader.
+   *
+   * @param in the reader of the iCalendar data
+   * @throws IOException if an I/O error occurs while reading
+   */
+  void scan(Reader in) throws IOException {
+    BufferedReader reader = (in instanceof BufferedReader br) ? br : new BufferedReader(in);
+    StringBuilder logicalLine = new StringBuilder(128);
+    String line = reader.readLine();
+    while (line != null && !ended && !uncertain) {
+      if (!line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+        // continuation of a folded line, the leading blank is dropped by unfolding
+        logicalLine.append(line, 1, line.length());
+      } else {
+        processLine(logicalLine);
+        logicalLine.setLength(0);
+        logicalLine.append(line);
+      }
+      line = reader.readLine();
+    }
+    processLine(logicalLine);
+  }
+
+  /**
+   * Builds the reference of the scanned event.
+   *
+   * @param href the decoded path of the href of the event
+   * @param etag the ETag of the event, may be null
+   * @return the reference, or null if the scanner isn't sure about the result and the calendar
+   *     object has to be parsed by the full parser
+   */
+  @Nullable EventRef toEventRef(String href, @Nullable String etag) {
+    if (uncertain || !ended || !eventFound || uid == null || dtStartValue == null) {
+      return null;
+    }
+    Temporal dtStart = parseDate(dtStartValue, dtStartParams);
+    return dtStart == null ? null : new EventRef(uid, dtStart, href, etag, hash);
+  }
+
+  private void processLine(CharSequence logicalLine) {
+    if (logicalLine.isEmpty() || ended || uncertain) {
+      return;
+    }
+    String line = logicalLine.toString();
+    int colon = line.indexOf(':');
+    int semicolon = line.indexOf(';');
+    if (colon < 0) {
+      uncertain = true;
+      return;
+    }
+    int nameEnd = (semicolon >= 0 && semicolon < colon) ? semicolon : colon;
+    String name = line.substring(0, nameEnd).toUpperCase(Locale.ROOT);
+    String params = line.substring(nameEnd, colon);
+    String value = line.substring(colon + 1);
+    // quoted parameter values may contain colons, the full parser has to deal with them
+    if (params.indexOf('"') >= 0) {
+      uncertain = true;
+      return;
+    }
+    switch (name) {
+      case "BEGIN" -> begin(value.trim().toUpperCase(Locale.ROOT));
+      case "END" -> end(value.trim().toUpperCase(Locale.ROOT));
+      case "UID" -> {
+        if (isInEvent()) {
+          uncertain |= uid != null || value.indexOf('\\') >= 0;
+          uid = value;
+        }
+      }
+      case "DTSTART" -> {
+        if (isInEvent()) {
+          uncertain |= dtStartValue != null;
+          dtStartValue = value;
+          dtStartParams = params;
+        }
+      }
+      case CalUtil.FINGERPRINT_PROPERTY -> {
+        if (isInEvent()) {
+          uncertain |= hash != null;
+          hash = value;
+        }
+      }
+      default -> {
+        // not required
+      }
+    }
+  }
+
+  private void begin(String component) {
+    if (components.isEmpty()) {
+      uncertain |= !VCALENDAR.equals(component);
+    } else if (components.size() == 1) {
+      // the full parser expects exactly one component, which must be an event
+      uncertain |= eventFound || !VEVENT.equals(component);
+      eventFound = true;
+    }
+    components.push(component);
+  }
+
+  private void end(String component) {
+    if (components.isEmpty() || !components.pop().equals(component)) {
+      uncertain = true;
+      return;
+    }
+    ended = components.isEmpty();
+  }
+
+  private boolean isInEvent() {
+    return components.size() == 2 && VEVENT.equals(components.peek());
+  }
+
+  /**
+   * Parses an all-day date 'yyyyMMdd' with the parameter 'VALUE=DATE'.
+   *
+   * @return the date, or null if the format isn't supported by the scanner
+   */
+  private static @Nullable Temporal parseDate(String value, String params) {
+    if (!";VALUE=DATE".equalsIgnoreCase(params) || value.length() != 8) {
+      return null;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return null;
+      }
+    }
+    try {
+      return LocalDate.of(Integer.parseInt(value, 0, 4, 10), Integer.parseInt(value, 4, 6, 10),
+          Integer.parseInt(value, 6, 8, 10));
+    } catch (DateTimeException e) {
+      // invalid dates are left to the full parser
+      return null;
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package codes.thischwa.bcs.service;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Writes the iCalendar object of a birthday event directly as UTF-8 bytes.
+ *
+ * <p>The birthday events always have the same shape, so building an ical4j object tree only to
+ * serialize it is unnecessary. Only the content is the same as ical4j produces for the event: the
+ * properties are in the same order and TEXT values are escaped the same way. Unlike ical4j, the
+ * lines are folded after 75 octets (RFC 5545, section 3.1) without splitting a UTF-8 sequence, so
+ * the output differs from ical4j's for long lines until it's unfolded.
+ */
+public final class IcsWriter {
+
+  /**
+   * The maximum length of a line in octets, excluding the line break.
+   */
+  static final int MAX_LINE_OCTETS = 75;
+
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+  private static final DateTimeFormatter DATE_TIME_FORMAT =
+      DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+  /**
+   * The content of a birthday event.
+   *
+   * @param uid         The UID of the event, the identifier of the contact.
+   * @param start       The date of the annually repeated all-day event.
+   * @param summary     The summary of the event and the alarm.
+   * @param description The description of the event and the alarm.
+   * @param category    The category of the event.
+   * @param alarm       The trigger of the alarm relative to the start, or null for no alarm.
+   * @param fingerprint The fingerprint of the inputs of the event.
+   */
+  public record BirthdayEvent(String uid, LocalDate start, String summary, String description, String category,
+                              @Nullable Duration alarm, String fingerprint) {
+  }
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+  private int lineLength;
+
+  private IcsWriter() {
+  }
+
+  /**
+   * Writes the iCalendar object with the birthday event.
+   *
+   * @param prodId  the identifier of the product which created the object
+   * @param event   the birthday event
+   * @param dtStamp the time the object was created
+   * @return the UTF-8 bytes of the iCalendar object
+   */
+  public static byte[] write(String prodId, BirthdayEvent event, Instant dtStamp) {
+    IcsWriter writer = new IcsWriter();
+    writer.line("BEGIN", "VCALENDAR");
+    writer.textLine("PRODID", prodId);
+    writer.line("VERSION", "2.0");
+    writer.line("CALSCALE", "GREGORIAN");
+    writer.line("BEGIN", "VEVENT");
+    writer.line("DTSTAMP", DATE_TIME_FORMAT.format(dtStamp));
+    writer.line("DTSTART;VALUE=DATE", DATE_FORMAT.format(event.start()));
+    writer.line("DURATION", "P1D");
+    writer.textLine("SUMMARY", event.summary());
+    writer.textLine("UID", event.uid());
+    writer.line("RRULE", "FREQ=YEARLY");
+    // a single category, commas are list separators and aren't escaped
+    writer.name("CATEGORIES");
+    writer.text(event.category(), false);
+    writer.endLine();
+    writer.line("TRANSP", "TRANSPARENT");
+    writer.textLine("DESCRIPTION", event.description());
+    writer.line("STATUS", "CONFIRMED");
+    writer.textLine(CalUtil.FINGERPRINT_PROPERTY, event.fingerprint());
+    if (event.alarm() != null) {
+      writer.line("BEGIN", "VALARM");
+      writer.line("TRIGGER", formatDuration(event.alarm()));
+      writer.line("ACTION", "DISPLAY");
+      writer.textLine("DESCRIPTION", event.description());
+      writer.textLine("SUMMARY", event.summary());
+      writer.line("END", "VALARM");
+    }
+    writer.line("END", "VEVENT");
+    writer.line("END", "VCALENDAR");
+    return writer.out.toByteArray();
+  }
+
+  /**
+   * Formats the duration like ical4j, e.g. '-P1D' or '-PT12H'.
+   *
+   * @param duration the duration
+   * @return the value of the DURATION
+   */
+  static String formatDuration(Duration duration) {
+    if (duration.isZero()) {
+      return "PT0S";
+    }
+    StringBuilder value = new StringBuilder(16);
+    if (duration.isNegative()) {
+      value.append('-');
+    }
+    Duration abs = duration.abs();
+    value.append('P');
+    if (abs.toDays() > 0) {
+      value.append(abs.toDays()).append('D');
+    }
+    if (abs.toHoursPart() > 0 || abs.toMinutesPart() > 0 || abs.toSecondsPart() > 0) {
+      value.append('T');
+      if (abs.toHoursPart() > 0) {
+        value.append(abs.toHoursPart()).append('H');
+      }
+      if (abs.toMinutesPart() > 0) {
+        value.append(abs.toMinutesPart()).append('M');
+      }
+      if (abs.toSecondsPart() > 0) {
+        value.append(abs.toSecondsPart()).append('S');
+      }
+    }
+    return value.toString();
+  }
+
+  private void line(String name, String value) {
+    name(name);
+    ascii(value);
+    endLine();
+  }
+
+  private void textLine(String name, String value) {
+    name(name);
+    text(value, true);
+    endLine();
+  }
+
+  private void name(String name) {
+    ascii(name);
+    codePoint(':');
+  }
+
+  private void endLine() {
+    out.write('\r');
+    out.write('\n');
+    lineLength = 0;
+  }
+
+  private void ascii(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      codePoint(value.charAt(i));
+    }
+  }
+
+  /**
+   * Writes an escaped TEXT value (RFC 5545, section 3.3.11). Each line break is written as '\n'.
+   */
+  private void text(String value, boolean escapeComma) {
+    int i = 0;
+    while (i < value.length()) {
+      int cp = value.codePointAt(i);
+      i += Character.charCount(cp);
+      switch (cp) {
+        case '\\', ';' -> {
+          codePoint('\\');
+          codePoint(cp);
+        }
+        case ',' -> {
+          if (escapeComma) {
+            codePoint('\\');
+          }
+          codePoint(cp);
+        }
+        case '\r' -> {
+          if (i < value.length() && value.charAt(i) == '\n') {
+            i++;
+          }
+          codePoint('\\');
+          codePoint('n');
+        }
+        case '\n' -> {
+          codePoint('\\');
+          codePoint('n');
+        }
+        default -> codePoint(cp);
+      }
+    }
+  }
+
+  private void codePoint(int cp) {
+    if (Character.isSurrogate((char) cp) && cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+      // an unpaired surrogate can't be encoded, like String#getBytes
+      cp = '?';
+    }
+    int length = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+    if (lineLength + length > MAX_LINE_OCTETS) {
+      // fold: the continuation line starts with a space, which is removed by unfolding
+      out.write('\r');
+      out.write('\n');
+      out.write(' ');
+      lineLength = 1;
+    }
+    switch (length) {
+      case 1 -> out.write(cp);
+      case 2 -> {
+        out.write(0xC0 | (cp >> 6));
+        out.write(0x80 | (cp & 0x3F));
+      }
+      case 3 -> {
+        out.write(0xE0 | (cp >> 12));
+        out.write(0x80 | ((cp >> 6) & 0x3F));
+        out.write(0x80 | (cp & 0x3F));
+      }
+      default -> {
+        out.write(0xF0 | (cp >> 18));
+        out.write(0x80 | ((cp >> 12) & 0x3F));
+        out.write(0x80 | ((cp >> 6) & 0x3F));
+        out.write(0x80 | (cp & 0x3F));
+      }
+    }
+    lineLength += length;
+  }
+}
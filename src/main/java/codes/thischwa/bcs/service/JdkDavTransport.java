@@ -0,0 +1,245 @@
+package codes.thischwa.bcs.service;
+
+import codes.thischwa.bcs.conf.DavConf;
+import com.github.sardine.DavResource;
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.model.Multistatus;
+import com.github.sardine.util.SardineUtil;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Authenticator;
+import java.net.PasswordAuthentication;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.namespace.QName;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The {@link DavTransport} on the {@link HttpClient} of the JDK. HTTP/2 is used if the server
+ * supports it, otherwise HTTP/1.1. With HTTP/2, all requests are multiplexed over one connection,
+ * and {@link #getAsync(String, Map)} doesn't block a thread while waiting for the response. So
+ * many vCards can be fetched at the same time with only the few threads of the client.
+ *
+ * <p>The JDK client supports Basic authentication only. If {@link DavConf.Http#preemptiveAuth()} is
+ * set, the credentials are sent with each request, otherwise the client answers the challenges.
+ * The settings of {@link DavConf.Http} which are specific to the connection pool of the Apache
+ * HttpClient don't apply.
+ */
+@Slf4j
+class JdkDavTransport implements DavTransport {
+
+  /**
+   * The number of threads of the client, which only process the responses.
+   */
+  static final int THREADS = 2;
+
+  private static final String XML_CONTENT_TYPE = "text/xml; charset=utf-8";
+
+  private static final AtomicInteger CLIENT_COUNTER = new AtomicInteger();
+
+  private final ExecutorService executor;
+  private final HttpClient client;
+  private final Duration requestTimeout;
+  private final @Nullable String authorization;
+  private final RequestCounter requestCounter;
+
+  /**
+   * Constructs a new JdkDavTransport.
+   *
+   * @param username       the username for the authentication
+   * @param password       the password for the authentication
+   * @param http           the settings of the HTTP connections
+   * @param requestCounter the counter of the round trips
+   */
+  JdkDavTransport(String username, String password, DavConf.Http http, RequestCounter requestCounter) {
+    this.requestCounter = requestCounter;
+    this.requestTimeout = Duration.ofSeconds(http.socketTimeoutInSeconds());
+    this.authorization = http.preemptiveAuth() ? "Basic " + Base64.getEncoder()
+        .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8)) : null;
+    String prefix = "dav-http-" + CLIENT_COUNTER.incrementAndGet() + "-";
+    AtomicInteger threadCounter = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+      Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    HttpClient.Builder builder = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .connectTimeout(Duration.ofSeconds(http.connectTimeoutInSeconds()))
+        .executor(executor);
+    if (authorization == null) {
+      // the client drops an own 'Authorization' header if an authenticator is set
+      builder.authenticator(new Authenticator() {
+        @Override
+        protected PasswordAuthentication getPasswordAuthentication() {
+          return new PasswordAuthentication(username, password.toCharArray());
+        }
+      });
+    }
+    this.client = builder.build();
+  }
+
+  @Override
+  public List<DavResource> propfind(String url, int depth, Set<QName> props) throws IOException {
+    HttpRequest request = request(url, Map.of("Depth", depth < 0 ? "infinity" : Integer.toString(depth)))
+        .method("PROPFIND", xml(DavSardine.toXml(props)))
+        .header("Content-Type", XML_CONTENT_TYPE)
+        .build();
+    try (InputStream in = requestCounter.countBody(send(request, HttpResponse.BodyHandlers.ofInputStream()).body())) {
+      return DavSardine.parse(in);
+    }
+  }
+
+  @Override
+  public DavMultistatus report(String url, int depth, DavReport report) throws IOException {
+    HttpRequest request = request(url, Map.of("Depth", Integer.toString(depth)))
+        .method("REPORT", xml(report.toXml()))
+        .header("Content-Type", XML_CONTENT_TYPE)
+        .build();
+    HttpResponse<InputStream> response = sendUnchecked(request, HttpResponse.BodyHandlers.ofInputStream());
+    requestCounter.countRequest();
+    try (InputStream in = requestCounter.countBody(response.body())) {
+      int status = response.statusCode();
+      if (status < 200 || status >= 300) {
+        // the body names the failed precondition, e.g. an invalid sync token
+        log.debug("REPORT {} failed with status {}", url, status);
+        throw new DavException("Unexpected response", status, reasonPhrase(status), DavSardine.parseCondition(in));
+      }
+      Multistatus multistatus = SardineUtil.unmarshal(in);
+      return report.fromMultistatus(multistatus);
+    }
+  }
+
+  @Override
+  public InputStream get(String url) throws IOException {
+    return get(url, Map.of());
+  }
+
+  @Override
+  public InputStream get(String url, Map<String, String> headers) throws IOException {
+    return send(request(url, headers).GET().build(), HttpResponse.BodyHandlers.ofInputStream()).body();
+  }
+
+  @Override
+  public CompletableFuture<InputStream> getAsync(String url, Map<String, String> headers) {
+    HttpRequest request;
+    try {
+      request = request(url, headers).GET().build();
+    } catch (IllegalArgumentException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+        .thenApply(response -> {
+          requestCounter.countRequest();
+          try {
+            return new ByteArrayInputStream(validate(response).body());
+          } catch (IOException e) {
+            throw new CompletionException(e);
+          }
+        });
+  }
+
+  @Override
+  public boolean isNonBlocking() {
+    return true;
+  }
+
+  @Override
+  public @Nullable String put(String url, byte[] content, Map<String, String> headers) throws IOException {
+    return send(request(url, headers).PUT(HttpRequest.BodyPublishers.ofByteArray(content)).build(),
+        HttpResponse.BodyHandlers.discarding()).headers().firstValue("ETag").orElse(null);
+  }
+
+  @Override
+  public void delete(String url) throws IOException {
+    send(request(url, Map.of()).DELETE().build(), HttpResponse.BodyHandlers.discarding());
+  }
+
+  @Override
+  public boolean exists(String url) throws IOException {
+    HttpRequest request = request(url, Map.of()).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+    HttpResponse<Void> response = sendUnchecked(request, HttpResponse.BodyHandlers.discarding());
+    requestCounter.countRequest();
+    if (response.statusCode() == 404) {
+      return false;
+    }
+    validate(response);
+    return true;
+  }
+
+  @Override
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private HttpRequest.Builder request(String url, Map<String, String> headers) {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(requestTimeout);
+    if (authorization != null) {
+      builder.header("Authorization", authorization);
+    }
+    headers.forEach(builder::header);
+    return builder;
+  }
+
+  private static HttpRequest.BodyPublisher xml(String body) {
+    return HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8);
+  }
+
+  private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+      throws IOException {
+    HttpResponse<T> response = sendUnchecked(request, handler);
+    requestCounter.countRequest();
+    return validate(response);
+  }
+
+  private <T> HttpResponse<T> sendUnchecked(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+      throws IOException {
+    try {
+      return client.send(request, handler);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for " + request.method() + " " + request.uri());
+    }
+  }
+
+  /**
+   * Checks whether the status of the response is 2xx, like the response handlers of Sardine.
+   *
+   * @throws SardineException if the status is unexpected, the body of the response is closed
+   */
+  private <T> HttpResponse<T> validate(HttpResponse<T> response) throws IOException {
+    int status = response.statusCode();
+    if (status >= 200 && status < 300) {
+      return response;
+    }
+    if (response.body() instanceof Closeable body) {
+      body.close();
+    }
+    log.debug("{} {} failed with status {}", response.request().method(), response.request().uri(), status);
+    throw new SardineException("Unexpected response", status, reasonPhrase(status));
+  }
+
+  private static String reasonPhrase(int status) {
+    return EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH);
+  }
+}
@@ -0,0 +1,112 @@
+package codes.thischwa.bcs.service;
+
+import com.github.sardine.DavResource;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import javax.xml.namespace.QName;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Records the duration of the requests of a {@link DavTransport} and the size of the transferred
+ * resources, see {@link SyncMetrics}. The duration of a GET is the time until the response is
+ * received, its size is recorded when the stream of the content is closed. The responses of
+ * PROPFIND and REPORT are parsed by the transport, so their size is recorded by its
+ * {@link RequestCounter}.
+ */
+final class MeteredDavTransport implements DavTransport {
+
+  private final DavTransport delegate;
+  private final SyncMetrics metrics;
+
+  MeteredDavTransport(DavTransport delegate, SyncMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public List<DavResource> propfind(String url, int depth, Set<QName> props) throws IOException {
+    Timer.Sample sample = metrics.start();
+    try {
+      return delegate.propfind(url, depth, props);
+    } finally {
+      metrics.stop(sample, SyncMetrics.Phase.LIST);
+    }
+  }
+
+  @Override
+  public DavMultistatus report(String url, int depth, DavReport report) throws IOException {
+    Timer.Sample sample = metrics.start();
+    try {
+      return delegate.report(url, depth, report);
+    } finally {
+      metrics.stop(sample, SyncMetrics.Phase.REPORT);
+    }
+  }
+
+  @Override
+  public InputStream get(String url) throws IOException {
+    return get(url, Map.of());
+  }
+
+  @Override
+  public InputStream get(String url, Map<String, String> headers) throws IOException {
+    Timer.Sample sample = metrics.start();
+    try {
+      return new CountingInputStream(headers.isEmpty() ? delegate.get(url) : delegate.get(url, headers),
+          metrics::bytesReceived);
+    } finally {
+      metrics.stop(sample, SyncMetrics.Phase.GET);
+    }
+  }
+
+  @Override
+  public CompletableFuture<InputStream> getAsync(String url, Map<String, String> headers) {
+    Timer.Sample sample = metrics.start();
+    return delegate.getAsync(url, headers)
+        .whenComplete((in, e) -> metrics.stop(sample, SyncMetrics.Phase.GET))
+        .thenApply(in -> new CountingInputStream(in, metrics::bytesReceived));
+  }
+
+  @Override
+  public boolean isNonBlocking() {
+    return delegate.isNonBlocking();
+  }
+
+  @Override
+  public @Nullable String put(String url, byte[] content, Map<String, String> headers) throws IOException {
+    Timer.Sample sample = metrics.start();
+    try {
+      String etag = delegate.put(url, content, headers);
+      metrics.bytesSent(content.length);
+      return etag;
+    } finally {
+      metrics.stop(sample, SyncMetrics.Phase.UPLOAD);
+    }
+  }
+
+  @Override
+  public void delete(String url) throws IOException {
+    Timer.Sample sample = metrics.start();
+    try {
+      delegate.delete(url);
+    } finally {
+      metrics.stop(sample, SyncMetrics.Phase.DELETE);
+    }
+  }
+
+  @Override
+  public boolean exists(String url) throws IOException {
+    return delegate.exists(url);
+  }
+
+  @Override
+  public void shutdown() throws IOException {
+    delegate.shutdown();
+  }
+
+}
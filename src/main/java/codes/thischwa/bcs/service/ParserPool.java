@@ -0,0 +1,165 @@
+package codes.thischwa.bcs.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.data.CalendarParserFactory;
+import net.fortuna.ical4j.data.ContentHandlerContext;
+import net.fortuna.ical4j.data.DefaultComponentFactorySupplier;
+import net.fortuna.ical4j.data.DefaultParameterFactorySupplier;
+import net.fortuna.ical4j.data.DefaultPropertyFactorySupplier;
+import net.fortuna.ical4j.data.ParserException;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.ComponentFactory;
+import net.fortuna.ical4j.model.ParameterFactory;
+import net.fortuna.ical4j.model.PropertyFactory;
+import net.fortuna.ical4j.model.TimeZone;
+import net.fortuna.ical4j.model.TimeZoneRegistry;
+import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
+import net.fortuna.ical4j.vcard.VCard;
+import net.fortuna.ical4j.vcard.VCardBuilder;
+
+/**
+ * Provides the parsers of ical4j without setting them up for each resource.
+ *
+ * <p>A {@link CalendarBuilder} creates its parser, its content handler and a new
+ * {@link TimeZoneRegistry} when it's constructed. Here, the builders are pooled: a builder is
+ * borrowed by one thread for one calendar and returned afterward, so it's never used concurrently.
+ * A pool is used instead of a thread-local builder, because the virtual threads of the
+ * {@link BoundedExecutor} live for a single task only. All builders share one registry, so a time
+ * zone is loaded once and then reused by all calendars.
+ *
+ * <p>By default, ical4j instantiates all property and parameter factories for each property it
+ * parses. The factories are stateless, so they are instantiated once and shared by all builders.
+ * A {@link VCardBuilder} is bound to its reader and can't share them without the deprecated
+ * {@code GroupRegistry}, so it's created as usual. It's needed only for the vCards the
+ * {@link CardScanner} isn't sure about.
+ */
+final class ParserPool {
+
+  /**
+   * The maximum number of idle builders kept in the pool.
+   */
+  static final int MAX_IDLE = 16;
+
+  private static final TimeZoneRegistry TIME_ZONE_REGISTRY =
+      new SharedTimeZoneRegistry(TimeZoneRegistryFactory.getInstance().createRegistry());
+  private static final Queue<CalendarBuilder> IDLE_BUILDERS = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger IDLE_COUNT = new AtomicInteger();
+  private static final ContentHandlerContext CALENDAR_CONTEXT = newCalendarContext();
+
+  private ParserPool() {
+  }
+
+  /**
+   * Parses the iCalendar data by a pooled {@link CalendarBuilder}.
+   *
+   * @param in the stream of the iCalendar data, it isn't closed
+   * @return the calendar
+   * @throws IOException     if the stream can't be read
+   * @throws ParserException if the data isn't valid iCalendar data
+   */
+  static Calendar buildCalendar(InputStream in) throws IOException, ParserException {
+    CalendarBuilder builder = IDLE_BUILDERS.poll();
+    if (builder == null) {
+      builder = new CalendarBuilder(CalendarParserFactory.getInstance().get(), CALENDAR_CONTEXT, TIME_ZONE_REGISTRY);
+    } else {
+      IDLE_COUNT.decrementAndGet();
+    }
+    // a builder which failed isn't returned, its content handler may be left in an inconsistent state
+    Calendar calendar = builder.build(in);
+    if (IDLE_COUNT.incrementAndGet() <= MAX_IDLE) {
+      IDLE_BUILDERS.offer(builder);
+    } else {
+      IDLE_COUNT.decrementAndGet();
+    }
+    return calendar;
+  }
+
+  /**
+   * Parses the vCard data by a new {@link VCardBuilder}.
+   *
+   * @param reader the reader of the vCard data, it isn't closed
+   * @return the vCard
+   * @throws IOException     if the data can't be read
+   * @throws ParserException if the data isn't valid vCard data
+   */
+  static VCard buildCard(Reader reader) throws IOException, ParserException {
+    return new VCardBuilder(reader).build();
+  }
+
+  /**
+   * Retrieves the number of idle builders in the pool.
+   *
+   * @return the number of idle builders
+   */
+  static int getIdleCount() {
+    return IDLE_COUNT.get();
+  }
+
+  private static ContentHandlerContext newCalendarContext() {
+    List<ParameterFactory<?>> parameterFactories = List.copyOf(new DefaultParameterFactorySupplier().get());
+    List<PropertyFactory<?>> propertyFactories = List.copyOf(new DefaultPropertyFactorySupplier().get());
+    List<ComponentFactory<?>> componentFactories = List.copyOf(new DefaultComponentFactorySupplier().get());
+    return new ContentHandlerContext()
+        .withParameterFactorySupplier(() -> parameterFactories)
+        .withPropertyFactorySupplier(() -> propertyFactories)
+        .withComponentFactorySupplier(() -> componentFactories);
+  }
+
+  /**
+   * Makes a {@link TimeZoneRegistry} safe for concurrent use. The registry of ical4j loads the time
+   * zones into concurrent maps, but registers their ids in a plain map.
+   */
+  private static final class SharedTimeZoneRegistry implements TimeZoneRegistry {
+
+    private final TimeZoneRegistry delegate;
+
+    SharedTimeZoneRegistry(TimeZoneRegistry delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void register(TimeZone timezone) {
+      delegate.register(timezone);
+    }
+
+    @Override
+    public synchronized void register(TimeZone timezone, boolean update) {
+      delegate.register(timezone, update);
+    }
+
+    @Override
+    public synchronized void clear() {
+      delegate.clear();
+    }
+
+    @Override
+    public synchronized TimeZone getTimeZone(String id) {
+      return delegate.getTimeZone(id);
+    }
+
+    @Override
+    public synchronized Map<String, ZoneRules> getZoneRules() {
+      return delegate.getZoneRules();
+    }
+
+    @Override
+    public synchronized ZoneId getZoneId(String tzId) {
+      return delegate.getZoneId(tzId);
+    }
+
+    @Override
+    public synchronized String getTzId(String zoneId) {
+      return delegate.getTzId(zoneId);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package codes.thischwa.bcs.service;
+
+import java.util.concurrent.TimeUnit;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Limits the rate of requests to the DAV server. The permits are spaced evenly, so the requests
+ * don't arrive in bursts, even if they are sent by several threads.
+ */
+final class RateLimiter {
+
+  private final long intervalNanos;
+
+  private long nextPermit;
+
+  /**
+   * Constructs a new RateLimiter.
+   *
+   * @param requestsPerSecond the maximum number of requests per second, null or less than 1 for no
+   *                          limit
+   */
+  RateLimiter(@Nullable Integer requestsPerSecond) {
+    this.intervalNanos = (requestsPerSecond == null || requestsPerSecond < 1) ? 0
+        : TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+  }
+
+  /**
+   * Waits until the next request may be sent.
+   *
+   * @throws InterruptedException if the current thread was interrupted while waiting
+   */
+  void acquire() throws InterruptedException {
+    if (intervalNanos == 0) {
+      return;
+    }
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long permit = (nextPermit - now > 0) ? nextPermit : now;
+      nextPermit = permit + intervalNanos;
+      waitNanos = permit - now;
+    }
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+}
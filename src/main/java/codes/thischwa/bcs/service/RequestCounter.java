@@ -0,0 +1,118 @@
+package codes.thischwa.bcs.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.AuthenticationStrategy;
+import org.apache.http.impl.client.TargetAuthenticationStrategy;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * Counts the HTTP round trips to the DAV server and the ones answered with an authentication
+ * challenge (401). HttpClient answers a challenge internally by repeating the request, so the
+ * challenges are counted by the authentication strategy and the round trips by the request
+ * executor, which see each single exchange.
+ *
+ * <p>The multistatus bodies of PROPFIND and REPORT are parsed by the clients themselves, so their
+ * size is counted here, too, and reported to a listener, e.g. {@link SyncMetrics#bytesReceived(long)}.
+ */
+final class RequestCounter {
+
+  /**
+   * The counted round trips.
+   *
+   * @param requests       The number of round trips.
+   * @param authChallenges The number of round trips answered with an authentication challenge.
+   */
+  record Stats(int requests, int authChallenges) {
+  }
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger authChallenges = new AtomicInteger();
+  private final LongConsumer bodyBytes;
+
+  /**
+   * Constructs a new RequestCounter, which doesn't report the size of the bodies.
+   */
+  RequestCounter() {
+    this(bytes -> {});
+  }
+
+  /**
+   * Constructs a new RequestCounter.
+   *
+   * @param bodyBytes receives the size of each multistatus body counted by {@link #countBody}
+   */
+  RequestCounter(LongConsumer bodyBytes) {
+    this.bodyBytes = bodyBytes;
+  }
+
+  /**
+   * Creates a request executor which counts the round trips. Attempts which failed without a
+   * response, e.g. on a stale connection, aren't counted.
+   *
+   * @return the request executor
+   */
+  HttpRequestExecutor requestExecutor() {
+    return new HttpRequestExecutor() {
+      @Override
+      public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context)
+          throws IOException, HttpException {
+        HttpResponse response = super.execute(request, conn, context);
+        requests.incrementAndGet();
+        return response;
+      }
+    };
+  }
+
+  /**
+   * Creates an authentication strategy for the target host which counts the challenges.
+   *
+   * @return the authentication strategy
+   */
+  AuthenticationStrategy targetAuthenticationStrategy() {
+    return new TargetAuthenticationStrategy() {
+      @Override
+      public boolean isAuthenticationRequested(HttpHost authhost, HttpResponse response, HttpContext context) {
+        boolean requested = super.isAuthenticationRequested(authhost, response, context);
+        if (requested) {
+          authChallenges.incrementAndGet();
+        }
+        return requested;
+      }
+    };
+  }
+
+  /**
+   * Counts a round trip of a client which isn't built by {@link #requestExecutor()}.
+   */
+  void countRequest() {
+    requests.incrementAndGet();
+  }
+
+  /**
+   * Counts the bytes of a response body which is parsed by the client itself.
+   *
+   * @param in the stream of the body
+   * @return the stream, which reports the bytes read when it's closed
+   */
+  InputStream countBody(InputStream in) {
+    return new CountingInputStream(in, bodyBytes);
+  }
+
+  /**
+   * Retrieves the counted round trips and starts counting from zero.
+   *
+   * @return the round trips counted since the last call
+   */
+  Stats getAndReset() {
+    return new Stats(requests.getAndSet(0), authChallenges.getAndSet(0));
+  }
+}
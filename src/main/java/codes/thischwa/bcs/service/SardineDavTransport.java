@@ -0,0 +1,70 @@
+package codes.thischwa.bcs.service;
+
+import com.github.sardine.DavResource;
+import com.github.sardine.Sardine;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.namespace.QName;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The {@link DavTransport} on a {@link Sardine} client, which is backed by the blocking Apache
+ * HttpClient. It's the default transport. The client is shut down by the {@link SardineInitializer}.
+ */
+class SardineDavTransport implements DavTransport {
+
+  private final Sardine sardine;
+
+  /**
+   * Constructs a new SardineDavTransport.
+   *
+   * @param sardine the client, usually a {@link DavSardine}
+   */
+  SardineDavTransport(Sardine sardine) {
+    this.sardine = sardine;
+  }
+
+  @Override
+  public List<DavResource> propfind(String url, int depth, Set<QName> props) throws IOException {
+    return sardine.propfind(url, depth, props);
+  }
+
+  @Override
+  public DavMultistatus report(String url, int depth, DavReport report) throws IOException {
+    return sardine.report(url, depth, report);
+  }
+
+  @Override
+  public InputStream get(String url) throws IOException {
+    return sardine.get(url);
+  }
+
+  @Override
+  public InputStream get(String url, Map<String, String> headers) throws IOException {
+    return sardine.get(url, headers);
+  }
+
+  @Override
+  public @Nullable String put(String url, byte[] content, Map<String, String> headers) throws IOException {
+    if (sardine instanceof DavSardine davSardine) {
+      return davSardine.putForEtag(url, content, headers);
+    }
+    // a plain Sardine doesn't expose the headers of the response
+    sardine.put(url, new ByteArrayInputStream(content), headers);
+    return null;
+  }
+
+  @Override
+  public void delete(String url) throws IOException {
+    sardine.delete(url);
+  }
+
+  @Override
+  public boolean exists(String url) throws IOException {
+    return sardine.exists(url);
+  }
+}
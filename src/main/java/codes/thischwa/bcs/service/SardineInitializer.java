@@ -2,19 +2,28 @@ package codes.thischwa.bcs.service;
 
 import codes.thischwa.bcs.conf.DavConf;
 import com.github.sardine.Sardine;
-import com.github.sardine.impl.SardineImpl;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.time.Clock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolException;
 import org.apache.http.client.CircularRedirectException;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultRedirectStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HttpContext;
-import org.springframework.context.annotation.Scope;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
 
 /**
@@ -23,25 +32,40 @@ import org.springframework.stereotype.Component;
  * in the DavConf configuration and provides functionalities for verifying access to
  * the base URL of the DAV server.
  *
- * <p>The class is designed as a Spring component with the prototype scope, creating a new instance
- * for every usage.
+ * <p>The class is designed as a singleton Spring component, so all handlers share one client and
+ * its pool of connections. The client is shut down with the application context.
+ *
+ * <p>The handlers send their requests by the {@link DavTransport} selected by `dav.transport`. The
+ * Sardine client is always available, e.g. for tests preparing the DAV server.
  *
  * <p>Features include:
  * <ul>
- * <li>Initialization of a custom Sardine client with a limited redirect strategy.
- * <li>Verification of access to the base URL with retry logic.
+ * <li>Initialization of a custom Sardine client with a configurable connection pool, timeouts and
+ * keep-alive, see {@link DavConf.Http}.
+ * <li>A limited redirect strategy.
+ * <li>Selection of the {@link DavTransport}, see {@link DavConf.Transport}. Its requests are
+ * recorded by the {@link SyncMetrics}.
+ * <li>Verification of access to the base URL with exponential backoff and a circuit breaker.
  * </ul>
  */
 @Component
-@Scope("prototype")
 @Slf4j
-public class SardineInitializer {
+public class SardineInitializer implements DisposableBean {
 
   @Getter
   private final Sardine sardine;
 
+  @Getter
+  private final DavTransport transport;
+
   private final DavConf davConf;
 
+  private final RequestCounter requestCounter;
+
+  private final CircuitBreaker circuitBreaker;
+
+  private boolean baseUrlAccessible;
+
   /**
    * Constructs a new SardineInitializer with the given DAV configuration.
    *
@@ -49,64 +73,209 @@ public class SardineInitializer {
    * from the DavConf instance for DAV integration.
    *
    * @param davConf The DAV configuration object containing user credentials and other settings.
+   * @param metrics The metrics recording the requests of the transport.
    */
-  public SardineInitializer(DavConf davConf) {
+  public SardineInitializer(DavConf davConf, SyncMetrics metrics) {
     this.davConf = davConf;
-    this.sardine = CustomFactory.begin(davConf.user(), davConf.password());
+    this.requestCounter = new RequestCounter(metrics::bytesReceived);
+    this.sardine = CustomFactory.begin(davConf.user(), davConf.password(), davConf.getHttp(),
+        Math.max(toInt(davConf.fetchParallelism()), toInt(davConf.writeParallelism())), requestCounter);
+    if (davConf.getHttp().preemptiveAuth()) {
+      enablePreemptiveAuthentication(sardine, davConf.getBaseUrl());
+    }
+    DavTransport davTransport = (davConf.getTransport() == DavConf.Transport.JDK)
+        ? new JdkDavTransport(davConf.user(), davConf.password(), davConf.getHttp(), requestCounter)
+        : new SardineDavTransport(sardine);
+    this.transport = new MeteredDavTransport(davTransport, metrics);
+    log.info("Transport for the requests to the dav server: {}", davConf.getTransport());
+    this.circuitBreaker = new CircuitBreaker(Clock.systemUTC(), davConf.getCircuitOpenDuration());
+  }
+
+  /**
+   * Retrieves the number of round trips to the DAV server since the last call, e.g. to log them
+   * after each run.
+   *
+   * @return the number of round trips and of authentication challenges
+   */
+  RequestCounter.Stats getAndResetRequestStats() {
+    return requestCounter.getAndReset();
+  }
+
+  /**
+   * Starts a new run: the result of the last reachability probe is discarded. If the DAV server is
+   * known to be down, the run should be skipped.
+   *
+   * @return false if the circuit breaker is open, true otherwise
+   */
+  public synchronized boolean beginRun() {
+    baseUrlAccessible = false;
+    if (circuitBreaker.allowRequest()) {
+      return true;
+    }
+    log.warn("{} is regarded as down until {}.", davConf.getBaseUrl(), circuitBreaker.getOpenUntil());
+    return false;
   }
 
   /**
    * Checks whether the base URL configured in the DAV configuration is accessible.
    *
-   * <p>The method attempts to verify access to the base URL by making requests using the Sardine client.
-   * It uses the retry mechanism defined in the configuration, with a specified number of retries
-   * and delays between attempts. If the base URL is accessible, the method returns true. If all
-   * retries fail or the thread is interrupted, the method returns false.
+   * <p>A successful check is valid until the next {@link #beginRun()}, so the handlers of a run
+   * don't probe the server again. Otherwise, the method attempts to verify access to the base URL by
+   * making requests using the transport, up to the configured number of retries. The delay between
+   * the attempts doubles with each retry and is randomized by a jitter. If all attempts fail, the
+   * {@link CircuitBreaker} opens, and no further attempt is made until the configured time has
+   * elapsed. Then, a single attempt decides whether the server is accessible again.
    *
    * @return true if the base URL is accessible within the defined retry attempts, false otherwise.
    */
-  public boolean canAccessBaseUrl() {
-    for (int i = 0; i < davConf.maxRetries(); i++) {
+  public synchronized boolean canAccessBaseUrl() {
+    if (baseUrlAccessible) {
+      return true;
+    }
+    if (!circuitBreaker.allowRequest()) {
+      log.warn("{} is regarded as down until {}.", davConf.getBaseUrl(), circuitBreaker.getOpenUntil());
+      return false;
+    }
+    int attempts = circuitBreaker.getState() == CircuitBreaker.State.HALF_OPEN ? 1 : davConf.maxRetries();
+    for (int i = 0; i < attempts; i++) {
       try {
-        if (sardine.exists(davConf.getBaseUrl())) {
+        if (transport.exists(davConf.getBaseUrl())) {
+          circuitBreaker.recordSuccess();
+          baseUrlAccessible = true;
           return true;
         }
       } catch (IOException e) {
         log.warn("Error while checking access to {} (trails: {}/{}): {}", davConf.getBaseUrl(),
-            i + 1, davConf.maxRetries(), e.getMessage());
+            i + 1, attempts, e.getMessage());
       }
-      try {
-        Thread.sleep(davConf.getRetryDelayInMillis());
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-        return false;
+      if (i + 1 < attempts) {
+        try {
+          Thread.sleep(backoffDelay(i, davConf.getRetryDelayInMillis(), davConf.getMaxRetryDelayInMillis()));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
       }
     }
+    circuitBreaker.recordFailure();
+    log.error("{} isn't accessible, it's regarded as down until {}.", davConf.getBaseUrl(),
+        circuitBreaker.getOpenUntil());
     return false;
   }
 
-  private static class CustomFactory {
-    static Sardine begin(String username, String password) {
-      HttpClientBuilder builder = HttpClientBuilder.create();
+  /**
+   * Calculates the delay before the next attempt. The delay doubles with each attempt up to the
+   * maximum, the second half of it is random.
+   *
+   * @param attempt   the number of the failed attempt, starting with 0
+   * @param baseDelay the delay after the first attempt in milliseconds
+   * @param maxDelay  the maximum delay in milliseconds
+   * @return the delay in milliseconds, between the half and the whole of the exponential delay
+   */
+  static long backoffDelay(int attempt, long baseDelay, long maxDelay) {
+    long delay = Math.min(maxDelay, baseDelay << Math.min(attempt, 30));
+    if (delay <= 0) {
+      return Math.max(0, Math.min(baseDelay, maxDelay));
+    }
+    long half = delay / 2;
+    return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+  }
+
+  /**
+   * Shuts down the clients and closes the pooled connections.
+   *
+   * @throws IOException if a client can't be closed
+   */
+  @Override
+  public void destroy() throws IOException {
+    transport.shutdown();
+    sardine.shutdown();
+  }
+
+  private static void enablePreemptiveAuthentication(Sardine sardine, String baseUrl) {
+    try {
+      sardine.enablePreemptiveAuthentication(URI.create(baseUrl).toURL());
+    } catch (IllegalArgumentException | MalformedURLException e) {
+      log.warn("Preemptive authentication can't be enabled for {}: {}", baseUrl, e.getMessage());
+    }
+  }
+
+  private static int toInt(@Nullable Integer value) {
+    return value == null ? 0 : value;
+  }
+
+  static class CustomFactory {
+
+    private CustomFactory() {
+    }
+
+    static Sardine begin(String username, String password, DavConf.Http http, int parallelism,
+        RequestCounter requestCounter) {
+      // Allow at least as many connections per route as vCards are fetched or events are written in parallel
+      int maxPerRoute = Math.max(http.maxConnectionsPerRoute(), parallelism);
+      PoolingHttpClientConnectionManager connectionManager =
+          new PoolingHttpClientConnectionManager(http.connectionTtlInSeconds(), TimeUnit.SECONDS);
+      connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+      connectionManager.setMaxTotal(Math.max(http.maxConnections(), maxPerRoute));
+      connectionManager.setValidateAfterInactivity((int) TimeUnit.SECONDS.toMillis(
+          http.validateAfterInactivityInSeconds()));
+
+      HttpClientBuilder builder = HttpClientBuilder.create()
+          .setConnectionManager(connectionManager)
+          .setDefaultRequestConfig(RequestConfig.custom()
+              .setConnectTimeout((int) TimeUnit.SECONDS.toMillis(http.connectTimeoutInSeconds()))
+              .setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(http.connectTimeoutInSeconds()))
+              .setSocketTimeout((int) TimeUnit.SECONDS.toMillis(http.socketTimeoutInSeconds()))
+              .setCookieSpec(CookieSpecs.STANDARD)
+              .build())
+          .setRequestExecutor(requestCounter.requestExecutor())
+          .setTargetAuthenticationStrategy(requestCounter.targetAuthenticationStrategy())
+          .setKeepAliveStrategy(new BoundedKeepAliveStrategy(TimeUnit.SECONDS.toMillis(http.keepAliveInSeconds())))
+          .evictExpiredConnections()
+          .evictIdleConnections(http.idleTimeoutInSeconds(), TimeUnit.SECONDS);
 
       // Set a custom redirect strategy with limited redirects
       builder.setRedirectStrategy(new LimitedRedirectStrategy());
 
-      return new SardineImpl(builder, username, password);
+      return new DavSardine(builder, username, password, requestCounter);
+    }
+
+    /**
+     * Keeps a connection alive as long as the server announces by the 'Keep-Alive' header, but not
+     * longer than the configured time. Without the header, the configured time is used.
+     */
+    private static class BoundedKeepAliveStrategy extends DefaultConnectionKeepAliveStrategy {
+      private final long maxKeepAliveMillis;
+
+      BoundedKeepAliveStrategy(long maxKeepAliveMillis) {
+        this.maxKeepAliveMillis = maxKeepAliveMillis;
+      }
+
+      @Override
+      public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long duration = super.getKeepAliveDuration(response, context);
+        return (duration > 0 && duration < maxKeepAliveMillis) ? duration : maxKeepAliveMillis;
+      }
     }
 
-    private static class LimitedRedirectStrategy extends DefaultRedirectStrategy {
-      private static final int MAX_REDIRECTS = 3;
-      private final ThreadLocal<Integer> redirectCount = ThreadLocal.withInitial(() -> 0);
+    /**
+     * Limits the number of redirects of a request. The counter is kept in the {@link HttpContext} of
+     * the request, Sardine executes each request with its own child context. So concurrent requests
+     * don't share the counter, and it starts from zero for each request.
+     */
+    static class LimitedRedirectStrategy extends DefaultRedirectStrategy {
+      static final int MAX_REDIRECTS = 3;
+      static final String REDIRECT_COUNT = "bcs.redirect-count";
 
       @Override
-      public HttpUriRequest getRedirect(HttpRequest request, HttpResponse response, HttpContext context) throws ProtocolException {
-        int count = redirectCount.get();
+      public HttpUriRequest getRedirect(HttpRequest request, HttpResponse response, HttpContext context)
+          throws ProtocolException {
+        Object attribute = context.getAttribute(REDIRECT_COUNT);
+        int count = (attribute instanceof Integer value) ? value : 0;
         if (count >= MAX_REDIRECTS) {
-          redirectCount.set(0);
           throw new CircularRedirectException("Maximum redirects (" + MAX_REDIRECTS + ") exceeded");
         }
-        redirectCount.set(count + 1);
+        context.setAttribute(REDIRECT_COUNT, count + 1);
         return super.getRedirect(request, response, context);
       }
     }
@@ -0,0 +1,148 @@
+package codes.thischwa.bcs.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Utility class for reading and writing the local state files of BCS.
+ *
+ * <p>A state file consists of tab-separated records, one per line. Lines starting with '#' are
+ * comments. Backslashes, tabs and line breaks inside the fields are escaped, a null field is
+ * written as '\0'. A state file is
+ * written to a temporary file first, which is synced to disk and moved atomically onto the target
+ * file. So a crash leaves either the old or the new state, but never a partially written one.
+ */
+public final class StateFile {
+
+  private static final char SEPARATOR = '\t';
+  private static final String NULL_FIELD = "\\0";
+
+  private StateFile() {
+  }
+
+  /**
+   * Reads all records of a state file.
+   *
+   * @param file     the state file
+   * @param consumer the consumer which receives the fields of each record
+   * @return true if the file exists and was read, false if it doesn't exist
+   * @throws IOException if an I/O error occurs while reading the file
+   */
+  public static boolean read(Path file, Consumer<@Nullable String[]> consumer) throws IOException {
+    if (!Files.exists(file)) {
+      return false;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty() || line.charAt(0) == '#') {
+          continue;
+        }
+        consumer.accept(split(line));
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the records atomically to the state file. Missing parent directories are created.
+   *
+   * @param file    the state file
+   * @param header  a comment written as the first line
+   * @param records the records to write
+   * @throws IOException if an I/O error occurs while writing the file
+   */
+  public static void write(Path file, String header, Iterable<@Nullable String[]> records) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING)) {
+        Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+        writer.write("# " + header + "\n");
+        for (@Nullable String[] fields : records) {
+          writer.write(join(fields));
+          writer.write('\n');
+        }
+        writer.flush();
+        channel.force(true);
+      }
+      try {
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  static String join(@Nullable String[] fields) {
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        line.append(SEPARATOR);
+      }
+      if (fields[i] == null) {
+        line.append(NULL_FIELD);
+      } else {
+        escape(fields[i], line);
+      }
+    }
+    return line.toString();
+  }
+
+  static @Nullable String[] split(String line) {
+    List<@Nullable String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean nullField = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == SEPARATOR) {
+        fields.add(nullField ? null : field.toString());
+        field.setLength(0);
+        nullField = false;
+      } else if (c == '\\' && i + 1 < line.length()) {
+        char next = line.charAt(++i);
+        switch (next) {
+          case 't' -> field.append('\t');
+          case 'n' -> field.append('\n');
+          case 'r' -> field.append('\r');
+          case '0' -> nullField = true;
+          default -> field.append(next);
+        }
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(nullField ? null : field.toString());
+    return fields.toArray(new String[0]);
+  }
+
+  private static void escape(String value, StringBuilder target) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\\' -> target.append("\\\\");
+        case '\t' -> target.append("\\t");
+        case '\n' -> target.append("\\n");
+        case '\r' -> target.append("\\r");
+        default -> target.append(c);
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package codes.thischwa.bcs.service;
+
+import codes.thischwa.bcs.Contact;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiPredicate;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Compares the contacts with the existing birthday events and builds the {@link SyncPlan}. Both
+ * sides are sorted by their UID, which is the identifier of the contact, and merged in one pass,
+ * so no hash table over both sides is required.
+ *
+ * <p>The identifier is the UID of the event, so only the first of the contacts with the same
+ * identifier is synced. Otherwise, each contact would create the same event, and all but the
+ * first creation would fail with a conflict in every run.
+ */
+@Slf4j
+final class SyncDiff {
+
+  private static final Comparator<Contact> CONTACT_ORDER =
+      Comparator.comparing(Contact::identifier, Comparator.nullsFirst(Comparator.naturalOrder()));
+  private static final Comparator<EventRef> EVENT_ORDER = Comparator.comparing(EventRef::uid);
+
+  private final BiPredicate<Contact, EventRef> changed;
+
+  /**
+   * Constructs a new SyncDiff.
+   *
+   * @param changed checks whether the existing event of a contact is outdated
+   */
+  SyncDiff(BiPredicate<Contact, EventRef> changed) {
+    this.changed = changed;
+  }
+
+  /**
+   * Builds the plan to bring the events in line with the contacts.
+   *
+   * @param contacts the contacts with a birthday
+   * @param events   the existing birthday events
+   * @return the plan
+   */
+  SyncPlan diff(Collection<Contact> contacts, Collection<EventRef> events) {
+    List<Contact> sortedContacts = new ArrayList<>(contacts);
+    // the sort is stable, so the first of the contacts with the same identifier stays the first
+    sortedContacts.sort(CONTACT_ORDER);
+    List<EventRef> sortedEvents = new ArrayList<>(events);
+    sortedEvents.sort(EVENT_ORDER);
+    return merge(sortedContacts.iterator(), sortedEvents.iterator());
+  }
+
+  /**
+   * Merges the contacts and the events, both sorted by their UID. Of the contacts with the same
+   * identifier, only the first one is merged.
+   */
+  SyncPlan merge(Iterator<Contact> contacts, Iterator<EventRef> events) {
+    List<Contact> creates = new ArrayList<>();
+    List<SyncPlan.Update> updates = new ArrayList<>();
+    List<EventRef> deletes = new ArrayList<>();
+    Contact contact = contacts.hasNext() ? contacts.next() : null;
+    EventRef event = events.hasNext() ? events.next() : null;
+    Contact previous = null;
+    while (contact != null || event != null) {
+      if (contact != null && previous != null && contact.identifier() != null
+          && contact.identifier().equals(previous.identifier())) {
+        log.warn("Contact {} is skipped, it has the same identifier as {}: {}", contact.getFullName(),
+            previous.getFullName(), contact.identifier());
+        contact = contacts.hasNext() ? contacts.next() : null;
+        continue;
+      }
+      int order = contact == null ? 1 : event == null ? -1 : compare(contact.identifier(), event.uid());
+      if (order < 0) {
+        creates.add(contact);
+        previous = contact;
+        contact = contacts.hasNext() ? contacts.next() : null;
+      } else if (order > 0) {
+        deletes.add(event);
+        event = events.hasNext() ? events.next() : null;
+      } else {
+        if (changed.test(contact, event)) {
+          updates.add(new SyncPlan.Update(contact, event));
+        }
+        previous = contact;
+        contact = contacts.hasNext() ? contacts.next() : null;
+        event = events.hasNext() ? events.next() : null;
+      }
+    }
+    return new SyncPlan(creates, updates, deletes);
+  }
+
+  private static int compare(@Nullable String identifier, String uid) {
+    return identifier == null ? -1 : identifier.compareTo(uid);
+  }
+}
@@ -0,0 +1,281 @@
+package codes.thischwa.bcs.service;
+
+import codes.thischwa.bcs.conf.BcsConf;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records the metrics of the synchronization by Micrometer.
+ *
+ * <p>The meters are:
+ * <ul>
+ * <li>`bcs.sync.phase`: the duration of the phases, tagged by `phase`, see {@link Phase}.
+ * <li>`bcs.contacts.seen` and `bcs.contacts.birthday`: the vCards read from the server and those
+ * of them with a birthday.
+ * <li>`bcs.events`: the birthday events written, tagged by `operation` (created, updated, deleted).
+ * <li>`bcs.failures`: the failures, tagged by `type`, e.g. 'upload' or 'sync'.
+ * <li>`bcs.transfer.bytes`: the size of the response bodies of GET, PROPFIND and REPORT and of the
+ * resources uploaded by PUT, tagged by `direction` (received, sent).
+ * <li>`bcs.sync.last.success`: the time of the last successful run in seconds since the epoch.
+ * </ul>
+ *
+ * <p>The application isn't a web application, so the metrics are exported to Prometheus by a
+ * lightweight HTTP server of the JDK, which serves `/metrics` on the port `bcs.metrics-port`. If the
+ * port isn't set, the metrics are recorded in memory only.
+ */
+@Service
+@Slf4j
+public class SyncMetrics implements DisposableBean {
+
+  static final String METRICS_PATH = "/metrics";
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  /**
+   * The timed phases of the synchronization.
+   */
+  enum Phase {
+    /** The PROPFIND listing a collection. */
+    LIST,
+    /** A REPORT, e.g. sync-collection or calendar-multiget. */
+    REPORT,
+    /** The GET of a single resource. */
+    GET,
+    /** The parsing of a vCard. */
+    PARSE,
+    /** The comparison of the contacts with the existing events. */
+    DIFF,
+    /** The PUT of a birthday event. */
+    UPLOAD,
+    /** The DELETE of a birthday event. */
+    DELETE;
+
+    String tag() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  @Getter
+  private final MeterRegistry registry;
+  private final Map<Phase, Timer> timers = new EnumMap<>(Phase.class);
+  private final Counter contactsSeen;
+  private final Counter contactsWithBirthday;
+  private final Counter eventsCreated;
+  private final Counter eventsUpdated;
+  private final Counter eventsDeleted;
+  private final DistributionSummary bytesReceived;
+  private final DistributionSummary bytesSent;
+  private final AtomicLong lastSuccess = new AtomicLong();
+  private final Clock clock;
+  private @Nullable HttpServer server;
+
+  /**
+   * Constructs a new SyncMetrics. If `bcs.metrics-port` is set, the metrics are exported to
+   * Prometheus on this port.
+   *
+   * @param conf the configuration of BCS
+   * @throws IOException if the HTTP server can't be started
+   */
+  @Autowired
+  public SyncMetrics(BcsConf conf) throws IOException {
+    this(isExported(conf) ? new PrometheusMeterRegistry(PrometheusConfig.DEFAULT) : new SimpleMeterRegistry(),
+        Clock.systemUTC());
+    Integer port = conf.metricsPort();
+    if (port != null && registry instanceof PrometheusMeterRegistry prometheusRegistry) {
+      this.server = startServer(prometheusRegistry, port);
+      log.info("Metrics are exported on port {} at {}", port, METRICS_PATH);
+    }
+  }
+
+  /**
+   * Constructs a new SyncMetrics, which records into the given registry and doesn't export the
+   * metrics.
+   *
+   * @param registry the registry of the meters
+   * @param clock    the clock of the time of the last successful run
+   */
+  SyncMetrics(MeterRegistry registry, Clock clock) {
+    this.registry = registry;
+    this.clock = clock;
+    registerMeters();
+    contactsSeen = counter("bcs.contacts.seen");
+    contactsWithBirthday = counter("bcs.contacts.birthday");
+    eventsCreated = eventCounter("created");
+    eventsUpdated = eventCounter("updated");
+    eventsDeleted = eventCounter("deleted");
+    bytesReceived = transferSummary("received");
+    bytesSent = transferSummary("sent");
+  }
+
+  /**
+   * Creates a SyncMetrics recording in memory only, e.g. for tests.
+   *
+   * @return the new SyncMetrics
+   */
+  static SyncMetrics inMemory() {
+    return new SyncMetrics(new SimpleMeterRegistry(), Clock.systemUTC());
+  }
+
+  /**
+   * Starts to time a phase, the time is recorded by {@link #stop(Timer.Sample, Phase)}.
+   *
+   * @return the started sample
+   */
+  Timer.Sample start() {
+    return Timer.start(registry);
+  }
+
+  /**
+   * Records the time since the sample was started as duration of the phase.
+   *
+   * @param sample the sample started by {@link #start()}
+   * @param phase  the phase
+   */
+  void stop(Timer.Sample sample, Phase phase) {
+    sample.stop(timers.get(phase));
+  }
+
+  /**
+   * Counts a vCard read from the server.
+   *
+   * @param withBirthday true if the contact has a birthday
+   */
+  void contactSeen(boolean withBirthday) {
+    contactsSeen.increment();
+    if (withBirthday) {
+      contactsWithBirthday.increment();
+    }
+  }
+
+  /**
+   * Counts a birthday event written to the server.
+   *
+   * @param created true if the event is new, false if an existing event was replaced
+   */
+  void eventWritten(boolean created) {
+    (created ? eventsCreated : eventsUpdated).increment();
+  }
+
+  /**
+   * Counts a birthday event deleted from the server.
+   */
+  void eventDeleted() {
+    eventsDeleted.increment();
+  }
+
+  /**
+   * Counts a failure.
+   *
+   * @param type the type of the failure, e.g. 'upload'
+   */
+  void failure(String type) {
+    registry.counter("bcs.failures", "type", type).increment();
+  }
+
+  /**
+   * Records the size of a response body received from the server.
+   *
+   * @param bytes the number of bytes
+   */
+  void bytesReceived(long bytes) {
+    bytesReceived.record(bytes);
+  }
+
+  /**
+   * Records the size of a resource uploaded to the server.
+   *
+   * @param bytes the number of bytes
+   */
+  void bytesSent(long bytes) {
+    bytesSent.record(bytes);
+  }
+
+  /**
+   * Sets the time of the last successful run to now.
+   */
+  void syncSucceeded() {
+    lastSuccess.set(clock.instant().getEpochSecond());
+  }
+
+  /**
+   * Stops the HTTP server of the metrics, if it's running.
+   */
+  @Override
+  public void destroy() {
+    if (server != null) {
+      server.stop(0);
+    }
+    registry.close();
+  }
+
+  private static boolean isExported(BcsConf conf) {
+    Integer port = conf.metricsPort();
+    return port != null && port > 0;
+  }
+
+  private void registerMeters() {
+    for (Phase phase : Phase.values()) {
+      timers.put(phase, Timer.builder("bcs.sync.phase")
+          .description("The duration of a phase of the synchronization")
+          .tag("phase", phase.tag())
+          .register(registry));
+    }
+    Gauge.builder("bcs.sync.last.success", lastSuccess, AtomicLong::get)
+        .description("The time of the last successful run in seconds since the epoch")
+        .baseUnit("seconds")
+        .register(registry);
+  }
+
+  private Counter counter(String name) {
+    return registry.counter(name);
+  }
+
+  private Counter eventCounter(String operation) {
+    return registry.counter("bcs.events", "operation", operation);
+  }
+
+  private DistributionSummary transferSummary(String direction) {
+    return DistributionSummary.builder("bcs.transfer.bytes")
+        .description("The size of the resources transferred to or from the dav server")
+        .baseUnit("bytes")
+        .tag("direction", direction)
+        .register(registry);
+  }
+
+  private static HttpServer startServer(PrometheusMeterRegistry registry, int port) throws IOException {
+    HttpServer httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+    httpServer.createContext(METRICS_PATH, exchange -> {
+      try (exchange) {
+        byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+    });
+    httpServer.start();
+    return httpServer;
+  }
+}
@@ -0,0 +1,47 @@
+package codes.thischwa.bcs.service;
+
+import codes.thischwa.bcs.Contact;
+import java.util.List;
+
+/**
+ * The changes required to bring the birthday events in line with the contacts, as determined by
+ * {@link SyncDiff}. Only the changes are kept, the unchanged events aren't part of the plan.
+ *
+ * @param creates The contacts without a birthday event.
+ * @param updates The contacts whose birthday event is outdated, with their existing event.
+ * @param deletes The events without a contact.
+ */
+record SyncPlan(List<Contact> creates, List<Update> updates, List<EventRef> deletes) {
+
+  /**
+   * An outdated birthday event.
+   *
+   * @param contact       The contact of the event.
+   * @param existingEvent The existing event, which is replaced.
+   */
+  record Update(Contact contact, EventRef existingEvent) {
+  }
+
+  /**
+   * Retrieves the number of all changes.
+   *
+   * @return the number of creates, updates and deletes
+   */
+  int size() {
+    return creates.size() + updates.size() + deletes.size();
+  }
+
+  /**
+   * Checks whether the events are up to date.
+   *
+   * @return true if there is nothing to change, false otherwise
+   */
+  boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public String toString() {
+    return creates.size() + " to create, " + updates.size() + " to update, " + deletes.size() + " to delete";
+  }
+}
@@ -5,9 +5,8 @@ import java.time.LocalDateTime;
 import java.time.MonthDay;
 import java.time.temporal.Temporal;
 import java.time.temporal.TemporalAccessor;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import net.fortuna.ical4j.vcard.property.BDay;
+import org.jspecify.annotations.Nullable;
 
 /**
  * Utility class for handling various operations related to temporal objects
@@ -18,8 +17,6 @@ import net.fortuna.ical4j.vcard.property.BDay;
  */
 public final class TemporalUtil {
 
-  private static final Pattern MONTH_DAY_PATTERN = Pattern.compile("^--(0[1-9]|1[0-2])(0[1-9]|[12][0-9]|3[01])$");
-
   private TemporalUtil() {
   }
 
@@ -32,7 +29,7 @@ public final class TemporalUtil {
    *     otherwise false.
    */
   public static boolean isMonthDay(BDay<?> birthday) {
-    return !(birthday.getDate() instanceof LocalDate) && MONTH_DAY_PATTERN.matcher(birthday.getText()).matches();
+    return !(birthday.getDate() instanceof LocalDate) && parseMonthDay(birthday.getText()) != null;
   }
 
   /**
@@ -51,13 +48,40 @@ public final class TemporalUtil {
     if (birthDay.getText() == null) {
       throw new IllegalArgumentException("Birthday text is null.");
     }
-    Matcher matcher = MONTH_DAY_PATTERN.matcher(birthDay.getText());
-    if (!matcher.matches()) {
+    int[] monthDay = parseMonthDay(birthDay.getText());
+    if (monthDay == null) {
       throw new IllegalArgumentException("Not a month day: " + birthDay.getText());
     }
-    String month = matcher.group(1);
-    String day = matcher.group(2);
-    return MonthDay.of(Integer.parseInt(month), Integer.parseInt(day));
+    return MonthDay.of(monthDay[0], monthDay[1]);
+  }
+
+  /**
+   * Parses a month-day pattern, defined as "--MMDD", where MM is the month (01-12) and DD is the day
+   * (01-31). The text is checked character by character, so no regular expression is involved.
+   *
+   * @param text the text to parse, may be null.
+   * @return an array containing the month and the day, or null if the text doesn't match the
+   *     month-day pattern.
+   */
+  static int @Nullable [] parseMonthDay(@Nullable String text) {
+    if (text == null || text.length() != 6 || text.charAt(0) != '-' || text.charAt(1) != '-') {
+      return null;
+    }
+    int month = twoDigits(text, 2);
+    int day = twoDigits(text, 4);
+    if (month < 1 || month > 12 || day < 1 || day > 31) {
+      return null;
+    }
+    return new int[] {month, day};
+  }
+
+  private static int twoDigits(String text, int index) {
+    int tens = text.charAt(index) - '0';
+    int ones = text.charAt(index + 1) - '0';
+    if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+      return -1;
+    }
+    return tens * 10 + ones;
   }
 
   /**
@@ -109,8 +133,11 @@ public final class TemporalUtil {
    *     {@code BDay} object.
    */
   public static TemporalAccessor toTemporal(BDay<?> birthDay) {
-    if (isMonthDay(birthDay)) {
-      return toMonthDay(birthDay);
+    if (!(birthDay.getDate() instanceof LocalDate)) {
+      int[] monthDay = parseMonthDay(birthDay.getText());
+      if (monthDay != null) {
+        return MonthDay.of(monthDay[0], monthDay[1]);
+      }
     }
     return birthDay.getDate();
   }
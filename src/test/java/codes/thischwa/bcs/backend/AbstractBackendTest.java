@@ -144,7 +144,7 @@ public abstract class AbstractBackendTest {
     // 4) Run sync and verify 2 events
     log.info("Step 4: Running BirthdayCalGenerator.processBirthdayEvents 1st time and verifying 2 events");
     generator.processBirthdayEvents();
-    List<VEvent> eventsAfterFirstSync = listBirthdayEvents(sardine);
+    List<VEvent> eventsAfterFirstSync = listBirthdayEvents();
     assertEquals(2, eventsAfterFirstSync.size(), "Expected exactly 2 birthday events");
     // Test birthdays
     log.info("Verifying birthdays for Jane Doe and John Smith");
@@ -171,7 +171,7 @@ public abstract class AbstractBackendTest {
         janeWithBirthDay.displayName(), janeNewBday, janeWithBirthDay.identifier());
     putVCard(davConf.cardUrl() + janeWithBirthDay.identifier(), buildVCard(janeUpdated));
     generator.processBirthdayEvents();
-    List<VEvent> eventsAfterChange = listBirthdayEvents(sardine);
+    List<VEvent> eventsAfterChange = listBirthdayEvents();
     assertEquals(2, eventsAfterChange.size(), "Expected exactly 2 birthday events");
 
     // Check updated BDay
@@ -187,7 +187,7 @@ public abstract class AbstractBackendTest {
     sardine.delete(davConf.cardUrl() + johnWithBirthday.identifier() + ".vcf");
     generator.processBirthdayEvents();
 
-    List<VEvent> eventsAfterDeletion = listBirthdayEvents(sardine);
+    List<VEvent> eventsAfterDeletion = listBirthdayEvents();
     assertEquals(1, eventsAfterDeletion.size(), "Expected exactly 1 birthday event");
     boolean johnEventStillExists =
         eventsAfterDeletion.stream().anyMatch(e -> e.getSummary().getValue().contains("John"));
@@ -310,8 +310,8 @@ public abstract class AbstractBackendTest {
     }
   }
 
-  private List<VEvent> listBirthdayEvents(Sardine sardine) throws IOException {
-    Map<VEvent, URL> eventUrls = CalUtil.collectBirthdayEvents(sardine, davConf.calUrl());
+  private List<VEvent> listBirthdayEvents() throws IOException {
+    Map<VEvent, URL> eventUrls = CalUtil.collectBirthdayEvents(sardineInitializer.getTransport(), davConf.calUrl());
     log.debug("Found {} birthday events.", eventUrls.size());
     return new ArrayList<>(eventUrls.keySet());
   }
@@ -28,6 +28,16 @@ class DavConfTest extends AbstractTest {
     assertEquals(5, davConf.maxRetries());
   }
 
+  @Test
+  void testHttpDefaults() {
+    assertEquals(DavConf.Http.DEFAULT, davConf.getHttp());
+  }
+
+  @Test
+  void testTransportDefault() {
+    assertEquals(DavConf.Transport.SARDINE, davConf.getTransport());
+  }
+
   @Test
   void testGetBaseUrl() {
     String expectedBaseUrl = "https://dav.my-domain.org";
@@ -8,6 +8,7 @@ import codes.thischwa.bcs.Contact;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.MonthDay;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -37,6 +38,27 @@ class EventConfTest extends AbstractTest {
     assertEquals(Duration.ofDays(-1), eventConf.getAlarmDuration());
   }
 
+  @Test
+  void testTemplates() {
+    EventConf conf = new EventConf("~display-name~ (~first-name~~last-name~) ~first-name~", "~birthday~~birthday~ ~ no-placeholder~",
+        "yyyy", "MM", "1h");
+    Contact p = new Contact("First", "Last", "Display", LocalDate.of(1980, 12, 1));
+
+    assertEquals("Display (FirstLast) First", conf.generateSummary(p));
+    assertEquals("19801980 ~ no-placeholder~", conf.generateDescription(p));
+    assertEquals(List.of("~display-name~ (~first-name~~last-name~) ~first-name~",
+        "~birthday~~birthday~ ~ no-placeholder~", "yyyy", "MM", "1h"), conf.getSettings());
+  }
+
+  @Test
+  void testMissingName() {
+    EventConf conf = new EventConf("[~first-name~|~last-name~]", "[~display-name~] ~birthday~", "yyyy", "MM", "1h");
+    Contact contact = new Contact(null, null, null, LocalDate.of(1980, 12, 1));
+
+    assertEquals("[|]", conf.generateSummary(contact));
+    assertEquals("[] 1980", conf.generateDescription(contact));
+  }
+
   @Test
   void testInvalidDuration() {
     assertThrows(IllegalArgumentException.class,
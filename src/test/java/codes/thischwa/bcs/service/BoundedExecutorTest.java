@@ -0,0 +1,56 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BoundedExecutorTest {
+
+  @Test
+  void testInvokeAll_KeepsOrderAndBoundsParallelism() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<Callable<Integer>> tasks = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      int value = i;
+      tasks.add(() -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        Thread.sleep(5L * (20 - value) % 7);
+        running.decrementAndGet();
+        return value;
+      });
+    }
+
+    List<Integer> results;
+    try (BoundedExecutor executor = new BoundedExecutor(3, "test")) {
+      results = executor.invokeAll(tasks);
+    }
+
+    assertEquals(20, results.size());
+    for (int i = 0; i < 20; i++) {
+      assertEquals(i, results.get(i));
+    }
+    assertTrue(maxRunning.get() <= 3, "max running: " + maxRunning.get());
+  }
+
+  @Test
+  void testInvokeAll_Failure() {
+    List<Callable<String>> tasks = List.of(() -> "ok", () -> {
+      throw new IOException("failed");
+    });
+
+    try (BoundedExecutor executor = new BoundedExecutor(2, "test")) {
+      ExecutionException e = assertThrows(ExecutionException.class, () -> executor.invokeAll(tasks));
+      assertInstanceOf(IOException.class, e.getCause());
+    }
+  }
+}
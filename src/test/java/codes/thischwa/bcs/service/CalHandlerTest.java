@@ -1,10 +1,15 @@
 package codes.thischwa.bcs.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -17,11 +22,18 @@ import codes.thischwa.bcs.conf.DavConf;
 import codes.thischwa.bcs.conf.EventConf;
 import com.github.sardine.DavResource;
 import com.github.sardine.Sardine;
+import com.github.sardine.impl.SardineException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.MonthDay;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -32,6 +44,7 @@ class CalHandlerTest {
   private DavConf davConf;
   private SardineInitializer sardineInitializer;
   private Sardine sardine;
+  private CalStore calStore;
   private CalHandler calHandler;
 
   @BeforeEach
@@ -44,13 +57,14 @@ class CalHandlerTest {
 
     when(davConf.getBaseUrl()).thenReturn("https://example.com");
     when(davConf.calUrl()).thenReturn("https://example.com/calendars/birthday/");
-    when(sardineInitializer.getSardine()).thenReturn(sardine);
+    when(sardineInitializer.getTransport()).thenReturn(new SardineDavTransport(sardine));
     when(bcsConf.getProdId()).thenReturn("//Test//BCS//EN");
     when(bcsConf.calendarCategory()).thenReturn("BIRTHDAY");
     when(eventConf.generateSummary(any())).thenReturn("Birthday: Test");
     when(eventConf.generateDescription(any())).thenReturn("Birthday event");
 
-    calHandler = new CalHandler(bcsConf, eventConf, davConf, sardineInitializer);
+    calStore = new CalStore(bcsConf);
+    calHandler = new CalHandler(bcsConf, eventConf, davConf, sardineInitializer, calStore, SyncMetrics.inMemory());
   }
 
   @Test
@@ -77,7 +91,7 @@ class CalHandlerTest {
     when(resource.getContentType()).thenReturn("text/calendar");
     when(resource.getHref()).thenReturn(new URI("/calendars/birthday/uuid-1.ics"));
 
-    when(sardine.list("https://example.com/calendars/birthday/")).thenReturn(List.of(resource));
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
 
     String icsContent = """
         BEGIN:VCALENDAR
@@ -88,32 +102,33 @@ class CalHandlerTest {
         DTSTART;VALUE=DATE:20240415
         SUMMARY:Birthday: John Doe
         RRULE:FREQ=YEARLY
+        X-BCS-HASH:%s
         END:VEVENT
         END:VCALENDAR
         """;
 
-    when(sardine.get(anyString())).thenReturn(new ByteArrayInputStream(icsContent.getBytes()));
-
     Contact contact = new Contact("John", "Doe", "John Doe", MonthDay.of(4, 15), "uuid-1");
     List<Contact> contacts = List.of(contact);
+    String fingerprint = calHandler.fingerprint(contact);
+    when(sardine.get(anyString())).thenReturn(new ByteArrayInputStream(icsContent.formatted(fingerprint).getBytes()));
 
     calHandler.syncEventsWithBirthdayChanges(contacts);
 
-    verify(sardine, never()).put(anyString(), any(byte[].class), anyString());
+    verify(sardine, never()).put(anyString(), any(InputStream.class), anyMap());
   }
 
   @Test
   void testSyncEventsWithBirthdayChanges_AddNewEvent() throws Exception {
     when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
-    when(sardine.list("https://example.com/calendars/birthday/")).thenReturn(List.of());
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of());
 
     Contact contact = new Contact("Jane", "Smith", "Jane Smith", MonthDay.of(5, 20), "uuid-2");
     List<Contact> contacts = List.of(contact);
 
     calHandler.syncEventsWithBirthdayChanges(contacts);
 
-    verify(sardine).put(eq("https://example.com/calendars/birthday/uuid-2.ics"),
-        any(byte[].class), eq("text/calendar"));
+    verify(sardine).put(eq("https://example.com/calendars/birthday/uuid-2.ics"), any(InputStream.class),
+        eq(Map.of("Content-Type", "text/calendar", "If-None-Match", "*")));
   }
 
   @Test
@@ -124,8 +139,9 @@ class CalHandlerTest {
     when(resource.isDirectory()).thenReturn(false);
     when(resource.getContentType()).thenReturn("text/calendar");
     when(resource.getHref()).thenReturn(new URI("/calendars/birthday/uuid-1.ics"));
+    when(resource.getEtag()).thenReturn("\"etag-1\"");
 
-    when(sardine.list("https://example.com/calendars/birthday/")).thenReturn(List.of(resource));
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
 
     String icsContent = """
         BEGIN:VCALENDAR
@@ -147,9 +163,9 @@ class CalHandlerTest {
 
     calHandler.syncEventsWithBirthdayChanges(contacts);
 
-    verify(sardine).delete("https://example.com/calendars/birthday/uuid-1.ics");
-    verify(sardine).put(eq("https://example.com/calendars/birthday/uuid-1.ics"),
-        any(byte[].class), eq("text/calendar"));
+    verify(sardine, never()).delete(anyString());
+    verify(sardine).put(eq("https://example.com/calendars/birthday/uuid-1.ics"), any(InputStream.class),
+        eq(Map.of("Content-Type", "text/calendar", "If-Match", "\"etag-1\"")));
   }
 
   @Test
@@ -161,7 +177,7 @@ class CalHandlerTest {
     when(resource.getContentType()).thenReturn("text/calendar");
     when(resource.getHref()).thenReturn(new URI("/calendars/birthday/uuid-old.ics"));
 
-    when(sardine.list("https://example.com/calendars/birthday/")).thenReturn(List.of(resource));
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
 
     String icsContent = """
         BEGIN:VCALENDAR
@@ -184,14 +200,14 @@ class CalHandlerTest {
     calHandler.syncEventsWithBirthdayChanges(contacts);
 
     verify(sardine).delete("https://example.com/calendars/birthday/uuid-old.ics");
-    verify(sardine).put(eq("https://example.com/calendars/birthday/uuid-new.ics"),
-        any(byte[].class), eq("text/calendar"));
+    verify(sardine).put(eq("https://example.com/calendars/birthday/uuid-new.ics"), any(InputStream.class),
+        eq(Map.of("Content-Type", "text/calendar", "If-None-Match", "*")));
   }
 
   @Test
   void testSyncEventsWithBirthdayChanges_NullIdentifier() throws Exception {
     when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
-    when(sardine.list("https://example.com/calendars/birthday/")).thenReturn(List.of());
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of());
 
     Contact contact = new Contact("No", "Id", "No Id", MonthDay.of(5, 20), null);
     List<Contact> contacts = List.of(contact);
@@ -203,7 +219,7 @@ class CalHandlerTest {
   @Test
   void testSyncEventsWithBirthdayChanges_MultipleContacts() throws Exception {
     when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
-    when(sardine.list("https://example.com/calendars/birthday/")).thenReturn(List.of());
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of());
 
     Contact contact1 = new Contact("John", "Doe", "John Doe", MonthDay.of(4, 15), "uuid-1");
     Contact contact2 = new Contact("Jane", "Smith", "Jane Smith", MonthDay.of(5, 20), "uuid-2");
@@ -212,13 +228,13 @@ class CalHandlerTest {
 
     calHandler.syncEventsWithBirthdayChanges(contacts);
 
-    verify(sardine, times(3)).put(anyString(), any(byte[].class), eq("text/calendar"));
+    verify(sardine, times(3)).put(anyString(), any(InputStream.class), anyMap());
   }
 
   @Test
   void testSyncEventsWithBirthdayChanges_IOException() throws Exception {
     when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
-    when(sardine.list("https://example.com/calendars/birthday/"))
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES))
         .thenThrow(new IOException("Connection failed"));
 
     Contact contact = new Contact("Test", "User", "Test User", MonthDay.of(3, 15), "uuid-1");
@@ -227,4 +243,172 @@ class CalHandlerTest {
     assertThrows(IOException.class, () ->
         calHandler.syncEventsWithBirthdayChanges(contacts));
   }
+
+  @Test
+  void testSyncEventsWithBirthdayChanges_ParallelWithFailures() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.writeParallelism()).thenReturn(4);
+    DavResource outdated = mock(DavResource.class);
+    when(outdated.getContentType()).thenReturn("text/calendar");
+    when(outdated.getHref()).thenReturn(new URI("/calendars/birthday/uuid-old.ics"));
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES))
+        .thenReturn(List.of(outdated));
+    when(sardine.get(anyString())).thenReturn(new ByteArrayInputStream("""
+        BEGIN:VCALENDAR
+        BEGIN:VEVENT
+        UID:uuid-old
+        DTSTART;VALUE=DATE:20240101
+        END:VEVENT
+        END:VCALENDAR
+        """.getBytes()));
+    doThrow(new IOException("Connection reset")).when(sardine)
+        .put(eq("https://example.com/calendars/birthday/uuid-3.ics"), any(InputStream.class), anyMap());
+    doThrow(new SardineException("forbidden", 403, "Forbidden")).when(sardine)
+        .delete("https://example.com/calendars/birthday/uuid-old.ics");
+
+    List<Contact> contacts = new ArrayList<>();
+    for (int i = 1; i <= 6; i++) {
+      contacts.add(new Contact("First" + i, "Last" + i, "Display" + i, MonthDay.of(4, i), "uuid-" + i));
+    }
+
+    IOException exception = assertThrows(IOException.class, () -> calHandler.syncEventsWithBirthdayChanges(contacts));
+
+    assertEquals("Failed to write 2 birthday events.", exception.getMessage());
+    verify(sardine, times(6)).put(anyString(), any(InputStream.class), anyMap());
+  }
+
+  @Test
+  void testSyncEventsWithBirthdayChanges_PreconditionFailed() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of());
+
+    String eventUrl = "https://example.com/calendars/birthday/uuid-2.ics";
+    doThrow(new SardineException("precondition failed", 412, "Precondition Failed"))
+        .when(sardine).put(eq(eventUrl), any(InputStream.class),
+            eq(Map.of("Content-Type", "text/calendar", "If-None-Match", "*")));
+
+    Contact contact = new Contact("Jane", "Smith", "Jane Smith", MonthDay.of(5, 20), "uuid-2");
+    IOException e = assertThrows(IOException.class, () -> calHandler.syncEventsWithBirthdayChanges(List.of(contact)));
+    assertEquals("Failed to write 1 birthday events.", e.getMessage());
+
+    // the concurrent change isn't overwritten, but left for the next reconciliation
+    verify(sardine, times(1)).put(anyString(), any(InputStream.class), anyMap());
+    verify(sardine, never()).propfind(eq(eventUrl), anyInt(), any());
+    assertTrue(calStore.isReconciliationDue(Instant.now(), Duration.ofDays(1)));
+  }
+
+  @Test
+  void testSyncEventsWithBirthdayChanges_ChangedTemplate() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+
+    DavResource resource = mock(DavResource.class);
+    when(resource.getContentType()).thenReturn("text/calendar");
+    when(resource.getHref()).thenReturn(new URI("/calendars/birthday/uuid-1.ics"));
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES))
+        .thenReturn(List.of(resource));
+
+    Contact contact = new Contact("John", "Doe", "John Doe", MonthDay.of(4, 15), "uuid-1");
+    String icsContent = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID://Test//BCS//EN
+        BEGIN:VEVENT
+        UID:uuid-1
+        DTSTART;VALUE=DATE:20240415
+        SUMMARY:Birthday: Test
+        X-BCS-HASH:%s
+        END:VEVENT
+        END:VCALENDAR
+        """.formatted(calHandler.fingerprint(contact));
+    when(sardine.get(anyString())).thenReturn(new ByteArrayInputStream(icsContent.getBytes()));
+    when(eventConf.generateSummary(any())).thenReturn("Happy birthday: Test");
+
+    calHandler.syncEventsWithBirthdayChanges(List.of(contact));
+
+    verify(sardine).put(eq("https://example.com/calendars/birthday/uuid-1.ics"), any(InputStream.class), anyMap());
+  }
+
+  @Test
+  void testSyncEventsWithBirthdayChanges_CalStore() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(bcsConf.reconcileIntervalInHours()).thenReturn(24);
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES))
+        .thenReturn(List.of());
+
+    Contact contact1 = new Contact("John", "Doe", "John Doe", MonthDay.of(4, 15), "uuid-1");
+    Contact contact2 = new Contact("Jane", "Smith", "Jane Smith", MonthDay.of(5, 20), "uuid-2");
+    calHandler.syncEventsWithBirthdayChanges(List.of(contact1, contact2));
+    verify(sardine, times(2)).put(anyString(), any(InputStream.class), anyMap());
+
+    // the second run takes the written events from the store instead of reading the calendar
+    calHandler.syncEventsWithBirthdayChanges(List.of(contact1));
+
+    verify(sardine, times(1)).propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES);
+    verify(sardine).delete("https://example.com/calendars/birthday/uuid-2.ics");
+    verify(sardine, times(2)).put(anyString(), any(InputStream.class), anyMap());
+  }
+
+  @Test
+  void testSyncEventsWithBirthdayChanges_StoresEtag() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(bcsConf.reconcileIntervalInHours()).thenReturn(24);
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES))
+        .thenReturn(List.of());
+    String eventUrl = "https://example.com/calendars/birthday/uuid-1.ics";
+    DavResource written = mock(DavResource.class);
+    when(written.getEtag()).thenReturn("\"etag-1\"");
+    when(sardine.propfind(eq(eventUrl), eq(0), any())).thenReturn(List.of(written));
+
+    calHandler.syncEventsWithBirthdayChanges(
+        List.of(new Contact("John", "Doe", "John Doe", MonthDay.of(4, 15), "uuid-1")));
+    // the plain Sardine doesn't return the ETag of the PUT, so it's fetched afterward
+    verify(sardine).propfind(eq(eventUrl), eq(0), any());
+    assertEquals("\"etag-1\"", calStore.getEvents().get("uuid-1").etag());
+
+    // the next update is conditional on the stored ETag
+    calHandler.syncEventsWithBirthdayChanges(
+        List.of(new Contact("John", "Doe", "John Doe", MonthDay.of(4, 16), "uuid-1")));
+    verify(sardine).put(eq(eventUrl), any(InputStream.class),
+        eq(Map.of("Content-Type", "text/calendar", "If-Match", "\"etag-1\"")));
+  }
+
+  @Test
+  void testSyncEventsWithBirthdayChanges_WritesAndDeletes() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    List<DavResource> outdated = new ArrayList<>();
+    for (int i = 1; i <= 3; i++) {
+      DavResource resource = mock(DavResource.class);
+      when(resource.getContentType()).thenReturn("text/calendar");
+      when(resource.getHref()).thenReturn(new URI("/calendars/birthday/uuid-old-" + i + ".ics"));
+      outdated.add(resource);
+    }
+    when(sardine.propfind("https://example.com/calendars/birthday/", 1, DavSardine.LIST_PROPERTIES))
+        .thenReturn(outdated);
+    when(sardine.get(anyString())).thenAnswer(invocation -> {
+      String url = invocation.getArgument(0);
+      String uid = url.substring(url.lastIndexOf('/') + 1, url.length() - ".ics".length());
+      return new ByteArrayInputStream("""
+          BEGIN:VCALENDAR
+          BEGIN:VEVENT
+          UID:%s
+          DTSTART;VALUE=DATE:20240101
+          END:VEVENT
+          END:VCALENDAR
+          """.formatted(uid).getBytes());
+    });
+    AtomicInteger puts = new AtomicInteger();
+    doAnswer(invocation -> puts.incrementAndGet()).when(sardine)
+        .put(anyString(), any(InputStream.class), anyMap());
+
+    List<Contact> contacts = new ArrayList<>();
+    for (int i = 5; i >= 1; i--) {
+      contacts.add(new Contact("First" + i, "Last" + i, "Display" + i, MonthDay.of(4, i), "uuid-" + i));
+    }
+
+    calHandler.syncEventsWithBirthdayChanges(contacts);
+
+    assertEquals(5, puts.get());
+    verify(sardine, times(3)).delete(anyString());
+    verify(sardine).delete("https://example.com/calendars/birthday/uuid-old-2.ics");
+  }
 }
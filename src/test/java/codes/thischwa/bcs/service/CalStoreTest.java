@@ -0,0 +1,100 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import codes.thischwa.bcs.conf.BcsConf;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CalStoreTest {
+
+  private static final Instant NOW = Instant.parse("2026-03-01T04:30:00Z");
+
+  @TempDir
+  Path stateDir;
+
+  private CalStore newCalStore() {
+    BcsConf conf = mock(BcsConf.class);
+    when(conf.stateDir()).thenReturn(stateDir.toString());
+    return new CalStore(conf);
+  }
+
+  @Test
+  void testSaveAndLoad() throws Exception {
+    CalStore calStore = newCalStore();
+    EventRef john = new EventRef("uuid-1", LocalDate.of(2024, 4, 15), "/cal/uuid-1.ics", "\"1\"", "hash-1");
+    EventRef jane = new EventRef("uuid-2", LocalDateTime.of(2024, 5, 20, 10, 0), "/cal/uuid-2.ics", null, null);
+    calStore.reconcile(Map.of("uuid-1", john, "uuid-2", jane), NOW);
+    calStore.put(new EventRef("uuid-3", LocalDate.of(2024, 6, 10), "/cal/uuid-3.ics", "\"3\"", "hash-3"));
+    calStore.save();
+    assertTrue(Files.exists(stateDir.resolve(CalStore.FILE_NAME)));
+
+    CalStore loaded = newCalStore();
+    Map<String, EventRef> events = loaded.getEvents();
+    assertEquals(3, events.size());
+    assertEquals(john, events.get("uuid-1"));
+    // only all-day start dates are stored
+    assertNull(events.get("uuid-2").dtStart());
+    assertEquals("hash-3", events.get("uuid-3").hash());
+    assertEquals("\"3\"", events.get("uuid-3").etag());
+    assertFalse(loaded.isReconciliationDue(NOW.plusSeconds(60), Duration.ofHours(24)));
+  }
+
+  @Test
+  void testIsReconciliationDue() throws Exception {
+    CalStore calStore = new CalStore(mock(BcsConf.class));
+    assertTrue(calStore.isReconciliationDue(NOW, Duration.ofHours(24)));
+
+    calStore.reconcile(Map.of(), NOW);
+
+    assertFalse(calStore.isReconciliationDue(NOW.plus(Duration.ofHours(23)), Duration.ofHours(24)));
+    assertTrue(calStore.isReconciliationDue(NOW.plus(Duration.ofHours(24)), Duration.ofHours(24)));
+    assertTrue(calStore.isReconciliationDue(NOW, Duration.ZERO));
+    assertTrue(calStore.isReconciliationDue(NOW, null));
+  }
+
+  @Test
+  void testReconcile() throws Exception {
+    CalStore calStore = new CalStore(mock(BcsConf.class));
+    EventRef john = new EventRef("uuid-1", LocalDate.of(2024, 4, 15), "/cal/uuid-1.ics", null, "hash-1");
+    EventRef jane = new EventRef("uuid-2", LocalDate.of(2024, 5, 20), "/cal/uuid-2.ics", null, "hash-2");
+    calStore.put(john);
+    calStore.put(jane);
+
+    calStore.reconcile(Map.of("uuid-1", john), NOW);
+    assertEquals(Map.of("uuid-1", john), calStore.getEvents());
+
+    calStore.remove("uuid-1");
+    assertTrue(calStore.getEvents().isEmpty());
+  }
+
+  @Test
+  void testRequestReconciliation() throws Exception {
+    CalStore calStore = new CalStore(mock(BcsConf.class));
+    calStore.reconcile(Map.of(), NOW);
+    assertFalse(calStore.isReconciliationDue(NOW, Duration.ofHours(24)));
+
+    calStore.requestReconciliation();
+
+    assertTrue(calStore.isReconciliationDue(NOW, Duration.ofHours(24)));
+  }
+
+  @Test
+  void testOtherVersionIsDiscarded() throws Exception {
+    Files.writeString(stateDir.resolve(CalStore.FILE_NAME), "version\t0\nreconciled\t2026-03-01T04:30:00Z\n");
+
+    assertTrue(newCalStore().isReconciliationDue(NOW, Duration.ofHours(24)));
+  }
+}
@@ -2,22 +2,30 @@ package codes.thischwa.bcs.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import codes.thischwa.bcs.Contact;
 import com.github.sardine.DavResource;
 import com.github.sardine.Sardine;
+import com.github.sardine.impl.SardineException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.URI;
 import java.net.URL;
 import java.time.LocalDate;
 import java.time.MonthDay;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import net.fortuna.ical4j.model.component.VEvent;
@@ -127,7 +135,7 @@ class CalUtilTest {
     DavResource resource2 = mock(DavResource.class);
     when(resource2.isDirectory()).thenReturn(true);
 
-    when(sardine.list(calUrl)).thenReturn(List.of(resource1, resource2));
+    when(sardine.propfind(calUrl, 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource1, resource2));
 
     String icsContent = """
         BEGIN:VCALENDAR
@@ -142,7 +150,7 @@ class CalUtilTest {
         """;
     when(sardine.get(anyString())).thenReturn(new ByteArrayInputStream(icsContent.getBytes()));
 
-    Map<VEvent, URL> events = CalUtil.collectBirthdayEvents(sardine, calUrl);
+    Map<VEvent, URL> events = CalUtil.collectBirthdayEvents(new SardineDavTransport(sardine), calUrl);
 
     assertEquals(1, events.size());
     assertNotNull(events.keySet().iterator().next());
@@ -157,13 +165,134 @@ class CalUtilTest {
     when(resource1.isDirectory()).thenReturn(false);
     when(resource1.getContentType()).thenReturn("text/plain");
 
-    when(sardine.list(calUrl)).thenReturn(List.of(resource1));
+    when(sardine.propfind(calUrl, 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource1));
 
-    Map<VEvent, URL> events = CalUtil.collectBirthdayEvents(sardine, calUrl);
+    Map<VEvent, URL> events = CalUtil.collectBirthdayEvents(new SardineDavTransport(sardine), calUrl);
 
     assertEquals(0, events.size());
   }
 
+  @Test
+  void testCollectBirthdayEvents_Multiget() throws Exception {
+    Sardine sardine = mock(Sardine.class);
+    String calUrl = "https://example.com/calendars/user/birthday/";
+
+    DavResource resource1 = mock(DavResource.class);
+    when(resource1.getContentType()).thenReturn("text/calendar");
+    when(resource1.getHref()).thenReturn(new URI("/calendars/user/birthday/event1.ics"));
+    DavResource resource2 = mock(DavResource.class);
+    when(resource2.getContentType()).thenReturn("text/calendar; charset=utf-8");
+    when(resource2.getHref()).thenReturn(new URI("/calendars/user/birthday/event2.ics"));
+    when(sardine.propfind(calUrl, 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource1, resource2));
+
+    String icsContent = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID:-//Test//Test//EN
+        BEGIN:VEVENT
+        UID:%s
+        DTSTART;VALUE=DATE:20240415
+        SUMMARY:Birthday
+        END:VEVENT
+        END:VCALENDAR
+        """;
+    when(sardine.report(eq(calUrl), eq(1), any(DavReport.class))).thenReturn(new DavMultistatus(List.of(
+        new DavEntry("/calendars/user/birthday/event1.ics", 200, "\"1\"", icsContent.formatted("uid-1"))), null));
+    when(sardine.get("https://example.com/calendars/user/birthday/event2.ics"))
+        .thenReturn(new ByteArrayInputStream(icsContent.formatted("uid-2").getBytes()));
+
+    Map<VEvent, URL> events = CalUtil.collectBirthdayEvents(new SardineDavTransport(sardine), calUrl, 10);
+
+    assertEquals(2, events.size());
+    List<String> uids = events.keySet().stream().map(CalUtil::extractContactsUuidFromEvent).sorted().toList();
+    assertEquals(List.of("uid-1", "uid-2"), uids);
+    verify(sardine, never()).get("https://example.com/calendars/user/birthday/event1.ics");
+  }
+
+  @Test
+  void testCollectBirthdayEvents_MultigetUnsupported() throws Exception {
+    Sardine sardine = mock(Sardine.class);
+    String calUrl = "https://example.com/calendars/user/birthday/";
+
+    DavResource resource = mock(DavResource.class);
+    when(resource.getContentType()).thenReturn("text/calendar");
+    when(resource.getHref()).thenReturn(new URI("/calendars/user/birthday/event1.ics"));
+    when(sardine.propfind(calUrl, 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
+    when(sardine.report(eq(calUrl), eq(1), any(DavReport.class)))
+        .thenThrow(new SardineException("not implemented", 501, "Not Implemented"));
+
+    String icsContent = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID:-//Test//Test//EN
+        BEGIN:VEVENT
+        UID:test-uid
+        DTSTART;VALUE=DATE:20240415
+        SUMMARY:Birthday
+        END:VEVENT
+        END:VCALENDAR
+        """;
+    when(sardine.get("https://example.com/calendars/user/birthday/event1.ics"))
+        .thenReturn(new ByteArrayInputStream(icsContent.getBytes()));
+
+    Map<VEvent, URL> events = CalUtil.collectBirthdayEvents(new SardineDavTransport(sardine), calUrl, 10);
+
+    assertEquals(1, events.size());
+    assertEquals("test-uid", CalUtil.extractContactsUuidFromEvent(events.keySet().iterator().next()));
+  }
+
+  @Test
+  void testCollectEventRefs() throws Exception {
+    Sardine sardine = mock(Sardine.class);
+    String calUrl = "https://example.com/calendars/user/birthday/";
+
+    DavResource resource1 = mock(DavResource.class);
+    when(resource1.getContentType()).thenReturn("text/calendar");
+    when(resource1.getHref()).thenReturn(new URI("/calendars/user/birthday/event1.ics"));
+    when(resource1.getEtag()).thenReturn("\"1\"");
+    DavResource resource2 = mock(DavResource.class);
+    when(resource2.getContentType()).thenReturn("text/calendar");
+    when(resource2.getHref()).thenReturn(new URI("/calendars/user/birthday/event2.ics"));
+    when(sardine.propfind(calUrl, 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource1, resource2));
+
+    String icsContent = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID:-//Test//Test//EN
+        BEGIN:VEVENT
+        UID:%s
+        DTSTART%s
+        SUMMARY:Birthday
+        END:VEVENT
+        END:VCALENDAR
+        """;
+    when(sardine.get("https://example.com/calendars/user/birthday/event1.ics"))
+        .thenReturn(new ByteArrayInputStream(icsContent.formatted("uid-1", ";VALUE=DATE:20240415").getBytes()));
+    // a date-time isn't handled by the scanner, the event is parsed completely
+    when(sardine.get("https://example.com/calendars/user/birthday/event2.ics"))
+        .thenReturn(new ByteArrayInputStream(icsContent.formatted("uid-2", ":20240516T100000Z").getBytes()));
+
+    Map<String, EventRef> eventRefs = CalUtil.collectEventRefs(new SardineDavTransport(sardine), calUrl, 0);
+
+    assertEquals(2, eventRefs.size());
+    assertEquals(new EventRef("uid-1", LocalDate.of(2024, 4, 15), "/calendars/user/birthday/event1.ics", "\"1\"",
+        null), eventRefs.get("uid-1"));
+    EventRef eventRef2 = eventRefs.get("uid-2");
+    assertEquals("/calendars/user/birthday/event2.ics", eventRef2.href());
+    assertNull(eventRef2.etag());
+    assertTrue(CalUtil.isBirthdayEquals(eventRef2, new Contact("Jane", "Doe", "Jane Doe", MonthDay.of(5, 16), "uid-2")));
+  }
+
+  @Test
+  void testFingerprint() {
+    String fingerprint = CalUtil.fingerprint(Arrays.asList("a", "b"));
+
+    assertEquals(64, fingerprint.length());
+    assertEquals(fingerprint, CalUtil.fingerprint(Arrays.asList("a", "b")));
+    assertNotEquals(fingerprint, CalUtil.fingerprint(Arrays.asList("ab", "")));
+    assertNotEquals(CalUtil.fingerprint(Arrays.asList("a", null)), CalUtil.fingerprint(Arrays.asList("a", "")));
+  }
+
   @Test
   void testConvert_ValidEvent() throws Exception {
     Sardine sardine = mock(Sardine.class);
@@ -182,7 +311,7 @@ class CalUtilTest {
         """;
     when(sardine.get(eventUrl.toString())).thenReturn(new ByteArrayInputStream(icsContent.getBytes()));
 
-    VEvent event = CalUtil.convert(sardine, eventUrl);
+    VEvent event = CalUtil.convert(new SardineDavTransport(sardine), eventUrl);
 
     assertNotNull(event);
     assertEquals("test-uid", CalUtil.extractContactsUuidFromEvent(event));
@@ -195,7 +324,7 @@ class CalUtilTest {
 
     when(sardine.get(eventUrl.toString())).thenReturn(null);
 
-    VEvent event = CalUtil.convert(sardine, eventUrl);
+    VEvent event = CalUtil.convert(new SardineDavTransport(sardine), eventUrl);
 
     assertNull(event);
   }
@@ -224,7 +353,7 @@ class CalUtilTest {
     when(sardine.get(eventUrl.toString())).thenReturn(new ByteArrayInputStream(icsContent.getBytes()));
 
     assertThrows(IllegalArgumentException.class, () ->
-        CalUtil.convert(sardine, eventUrl));
+        CalUtil.convert(new SardineDavTransport(sardine), eventUrl));
   }
 
   @Test
@@ -236,7 +365,7 @@ class CalUtilTest {
     when(sardine.get(eventUrl.toString())).thenReturn(new ByteArrayInputStream(icsContent.getBytes()));
 
     assertThrows(IllegalArgumentException.class, () ->
-        CalUtil.convert(sardine, eventUrl));
+        CalUtil.convert(new SardineDavTransport(sardine), eventUrl));
   }
 
   @Test
@@ -247,7 +376,7 @@ class CalUtilTest {
     when(sardine.get(eventUrl.toString())).thenThrow(new IOException("Network error"));
 
     assertThrows(IllegalArgumentException.class, () ->
-        CalUtil.convert(sardine, eventUrl));
+        CalUtil.convert(new SardineDavTransport(sardine), eventUrl));
   }
 
   private VEvent parseEvent(String icsContent) {
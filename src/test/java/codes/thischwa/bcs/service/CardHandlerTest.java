@@ -3,18 +3,29 @@ package codes.thischwa.bcs.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import codes.thischwa.bcs.Contact;
+import codes.thischwa.bcs.conf.BcsConf;
 import codes.thischwa.bcs.conf.DavConf;
 import com.github.sardine.DavResource;
 import com.github.sardine.Sardine;
+import com.github.sardine.impl.SardineException;
 import java.io.ByteArrayInputStream;
 import java.net.URI;
+import java.time.MonthDay;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -33,9 +44,9 @@ class CardHandlerTest {
 
     when(davConf.getBaseUrl()).thenReturn("https://example.com");
     when(davConf.cardUrl()).thenReturn("https://example.com/contacts/");
-    when(sardineInitializer.getSardine()).thenReturn(sardine);
+    when(sardineInitializer.getTransport()).thenReturn(new SardineDavTransport(sardine));
 
-    cardHandler = new CardHandler(davConf, sardineInitializer);
+    cardHandler = new CardHandler(davConf, sardineInitializer, new CardStore(mock(BcsConf.class)), SyncMetrics.inMemory());
   }
 
   @Test
@@ -52,7 +63,7 @@ class CardHandlerTest {
     when(resource2.getDisplayName()).thenReturn("Jane Smith");
     when(resource2.getHref()).thenReturn(new URI("/contacts/jane.vcf"));
 
-    when(sardine.list("https://example.com/contacts/")).thenReturn(List.of(resource1, resource2));
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource1, resource2));
 
     String vcfContent1 = """
         BEGIN:VCARD
@@ -98,7 +109,7 @@ class CardHandlerTest {
     when(resource2.getDisplayName()).thenReturn("No Birthday");
     when(resource2.getHref()).thenReturn(new URI("/contacts/nobd.vcf"));
 
-    when(sardine.list("https://example.com/contacts/")).thenReturn(List.of(resource1, resource2));
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource1, resource2));
 
     String vcfContent1 = """
         BEGIN:VCARD
@@ -140,7 +151,7 @@ class CardHandlerTest {
     when(resource2.getDisplayName()).thenReturn("John Doe");
     when(resource2.getHref()).thenReturn(new URI("/contacts/john.vcf"));
 
-    when(sardine.list("https://example.com/contacts/")).thenReturn(List.of(resource1, resource2));
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource1, resource2));
 
     String vcfContent = """
         BEGIN:VCARD
@@ -179,7 +190,7 @@ class CardHandlerTest {
     when(resource.getDisplayName()).thenReturn(null);
     when(resource.getHref()).thenReturn(new URI("/contacts/test.vcf"));
 
-    when(sardine.list("https://example.com/contacts/")).thenReturn(List.of(resource));
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
 
     String vcfContent = """
         BEGIN:VCARD
@@ -196,4 +207,457 @@ class CardHandlerTest {
 
     assertEquals(1, contacts.size());
   }
+
+  @Test
+  void testReadContactsWithBirthday_Multiget() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.multigetBatchSize()).thenReturn(1);
+
+    DavResource resource1 = mock(DavResource.class);
+    when(resource1.isDirectory()).thenReturn(false);
+    when(resource1.getDisplayName()).thenReturn("John Doe");
+    when(resource1.getHref()).thenReturn(new URI("/contacts/john.vcf"));
+
+    DavResource resource2 = mock(DavResource.class);
+    when(resource2.isDirectory()).thenReturn(false);
+    when(resource2.getDisplayName()).thenReturn("Jane Smith");
+    when(resource2.getHref()).thenReturn(new URI("/contacts/jane.vcf"));
+
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource1, resource2));
+
+    String vcfContent1 = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+
+    String vcfContent2 = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:Jane Smith
+        N:Smith;Jane;;;
+        BDAY;VALUE=DATE:19900520
+        END:VCARD
+        """;
+
+    when(sardine.report(eq("https://example.com/contacts/"), eq(1), any(DavReport.class)))
+        .thenReturn(new DavMultistatus(List.of(new DavEntry("/contacts/john.vcf", 200, "\"1\"", vcfContent1)), null))
+        .thenReturn(new DavMultistatus(List.of(new DavEntry("/contacts/jane.vcf", 200, "\"2\"", vcfContent2)), null));
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(2, contacts.size());
+    assertEquals("John", contacts.get(0).firstName());
+    assertEquals("john", contacts.get(0).identifier());
+    assertEquals("Jane", contacts.get(1).firstName());
+    verify(sardine, never()).get(anyString());
+  }
+
+  @Test
+  void testReadContactsWithBirthday_MultigetMissingEntry() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.multigetBatchSize()).thenReturn(200);
+
+    DavResource resource = mock(DavResource.class);
+    when(resource.isDirectory()).thenReturn(false);
+    when(resource.getDisplayName()).thenReturn("John Doe");
+    when(resource.getHref()).thenReturn(new URI("/contacts/john.vcf"));
+
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
+    when(sardine.report(eq("https://example.com/contacts/"), eq(1), any(DavReport.class)))
+        .thenReturn(new DavMultistatus(List.of(new DavEntry("/contacts/john.vcf", 404, null, null)), null));
+
+    String vcfContent = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+    when(sardine.get("https://example.com/contacts/john.vcf"))
+        .thenReturn(new ByteArrayInputStream(vcfContent.getBytes()));
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(1, contacts.size());
+    verify(sardine).get("https://example.com/contacts/john.vcf");
+  }
+
+  @Test
+  void testReadContactsWithBirthday_MultigetUnsupported() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.multigetBatchSize()).thenReturn(200);
+
+    DavResource resource = mock(DavResource.class);
+    when(resource.isDirectory()).thenReturn(false);
+    when(resource.getDisplayName()).thenReturn("John Doe");
+    when(resource.getHref()).thenReturn(new URI("/contacts/john.vcf"));
+
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
+    when(sardine.report(eq("https://example.com/contacts/"), eq(1), any(DavReport.class)))
+        .thenThrow(new SardineException("not implemented", 501, "Not Implemented"));
+
+    String vcfContent = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+    when(sardine.get("https://example.com/contacts/john.vcf"))
+        .thenReturn(new ByteArrayInputStream(vcfContent.getBytes()));
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(1, contacts.size());
+    assertEquals("John", contacts.get(0).firstName());
+  }
+
+  @Test
+  void testReadContactsWithBirthday_Incremental() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.incrementalSync()).thenReturn(true);
+
+    String vcfJohn = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+    String vcfJane = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:Jane Smith
+        N:Smith;Jane;;;
+        BDAY;VALUE=DATE:19900520
+        END:VCARD
+        """;
+
+    when(sardine.report(eq("https://example.com/contacts/"), eq(0), any(DavReport.class)))
+        .thenReturn(new DavMultistatus(List.of(
+            new DavEntry("/contacts/", 200, null, null),
+            new DavEntry("/contacts/john.vcf", 200, "\"1\"", null),
+            new DavEntry("/contacts/jane.vcf", 200, "\"2\"", null)), "token-1"))
+        .thenReturn(new DavMultistatus(List.of(
+            new DavEntry("/contacts/john.vcf", 404, null, null)), "token-2"));
+    when(sardine.get("https://example.com/contacts/john.vcf"))
+        .thenReturn(new ByteArrayInputStream(vcfJohn.getBytes()));
+    when(sardine.get("https://example.com/contacts/jane.vcf"))
+        .thenReturn(new ByteArrayInputStream(vcfJane.getBytes()));
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+    assertEquals(2, contacts.size());
+    assertEquals("John", contacts.get(0).firstName());
+    assertEquals("Jane", contacts.get(1).firstName());
+
+    contacts = cardHandler.readContactsWithBirthday();
+    assertEquals(1, contacts.size());
+    assertEquals("Jane", contacts.get(0).firstName());
+    verify(sardine).get("https://example.com/contacts/jane.vcf");
+    verify(sardine, never()).propfind(anyString(), anyInt(), any());
+  }
+
+  @Test
+  void testReadContactsWithBirthday_IncrementalInvalidToken() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.incrementalSync()).thenReturn(true);
+
+    CardStore cardStore = new CardStore(mock(BcsConf.class));
+    cardStore.put("/contacts/old.vcf",
+        new CardStore.Entry("\"1\"", new Contact("Old", "Contact", "Old Contact", MonthDay.of(1, 1), "old")));
+    cardStore.save("expired");
+    cardHandler = new CardHandler(davConf, sardineInitializer, cardStore, SyncMetrics.inMemory());
+
+    String vcfContent = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+    when(sardine.report(eq("https://example.com/contacts/"), eq(0), any(DavReport.class)))
+        .thenThrow(new DavException("forbidden", 403, "Forbidden", DavReport.VALID_SYNC_TOKEN))
+        .thenReturn(new DavMultistatus(List.of(
+            new DavEntry("/contacts/john.vcf", 200, "\"1\"", null)), "token-1"));
+    when(sardine.get("https://example.com/contacts/john.vcf"))
+        .thenReturn(new ByteArrayInputStream(vcfContent.getBytes()));
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(1, contacts.size());
+    assertEquals("John", contacts.get(0).firstName());
+    assertEquals("token-1", cardStore.getSyncToken());
+  }
+
+  @Test
+  void testReadContactsWithBirthday_IncrementalUnsupported() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.incrementalSync()).thenReturn(true);
+
+    DavResource resource = mock(DavResource.class);
+    when(resource.isDirectory()).thenReturn(false);
+    when(resource.getDisplayName()).thenReturn("John Doe");
+    when(resource.getHref()).thenReturn(new URI("/contacts/john.vcf"));
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
+    when(sardine.report(eq("https://example.com/contacts/"), eq(0), any(DavReport.class)))
+        .thenThrow(new SardineException("not implemented", 501, "Not Implemented"));
+
+    String vcfContent = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+    when(sardine.get("https://example.com/contacts/john.vcf"))
+        .thenAnswer(invocation -> new ByteArrayInputStream(vcfContent.getBytes()));
+
+    assertEquals(1, cardHandler.readContactsWithBirthday().size());
+    assertEquals(1, cardHandler.readContactsWithBirthday().size());
+    verify(sardine).report(eq("https://example.com/contacts/"), eq(0), any(DavReport.class));
+  }
+
+  @Test
+  void testReadContactsWithBirthday_BirthdayQuery() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.birthdayQuery()).thenReturn(true);
+
+    String vcfContent = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+    when(sardine.report(eq("https://example.com/contacts/"), eq(1), any(DavReport.class)))
+        .thenReturn(new DavMultistatus(List.of(
+            new DavEntry("/contacts/john.vcf", 200, "\"1\"", vcfContent)), null));
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(1, contacts.size());
+    assertEquals("john", contacts.get(0).identifier());
+    verify(sardine, never()).propfind(anyString(), anyInt(), any());
+    verify(sardine, never()).get(anyString());
+  }
+
+  @Test
+  void testReadContactsWithBirthday_BirthdayQueryUnsupported() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.birthdayQuery()).thenReturn(true);
+
+    DavResource resource = mock(DavResource.class);
+    when(resource.isDirectory()).thenReturn(false);
+    when(resource.getDisplayName()).thenReturn("John Doe");
+    when(resource.getHref()).thenReturn(new URI("/contacts/john.vcf"));
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
+    when(sardine.report(eq("https://example.com/contacts/"), eq(1), any(DavReport.class)))
+        .thenThrow(new SardineException("not implemented", 501, "Not Implemented"));
+
+    String vcfContent = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+    when(sardine.get("https://example.com/contacts/john.vcf"))
+        .thenAnswer(invocation -> new ByteArrayInputStream(vcfContent.getBytes()));
+
+    assertEquals(1, cardHandler.readContactsWithBirthday().size());
+    assertEquals(1, cardHandler.readContactsWithBirthday().size());
+    verify(sardine).report(eq("https://example.com/contacts/"), eq(1), any(DavReport.class));
+  }
+
+  @Test
+  void testReadContactsWithBirthday_IncrementalInitialBirthdayQuery() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.incrementalSync()).thenReturn(true);
+    when(davConf.birthdayQuery()).thenReturn(true);
+
+    String vcfContent = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+    when(sardine.report(eq("https://example.com/contacts/"), eq(0), any(DavReport.class)))
+        .thenReturn(new DavMultistatus(List.of(
+            new DavEntry("/contacts/john.vcf", 200, "\"1\"", null),
+            new DavEntry("/contacts/nobd.vcf", 200, "\"2\"", null)), "token-1"));
+    when(sardine.report(eq("https://example.com/contacts/"), eq(1), any(DavReport.class)))
+        .thenReturn(new DavMultistatus(List.of(
+            new DavEntry("/contacts/john.vcf", 200, "\"1\"", vcfContent)), null));
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(1, contacts.size());
+    assertEquals("John", contacts.get(0).firstName());
+    verify(sardine, never()).get(anyString());
+  }
+
+  @Test
+  void testReadContactsWithBirthday_Parallel() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.fetchParallelism()).thenReturn(4);
+
+    List<DavResource> resources = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      DavResource resource = mock(DavResource.class);
+      when(resource.isDirectory()).thenReturn(false);
+      when(resource.getDisplayName()).thenReturn("Contact " + i);
+      when(resource.getHref()).thenReturn(new URI("/contacts/c" + i + ".vcf"));
+      resources.add(resource);
+      String vcfContent = (i == 3) ? "BEGIN:VCARD\nVERSION:4.0\nBDAY:19900520\nEND:VCARD\n" : """
+          BEGIN:VCARD
+          VERSION:4.0
+          N:Doe;John%d;;;
+          BDAY;VALUE=TEXT:--0415
+          END:VCARD
+          """.formatted(i);
+      when(sardine.get("https://example.com/contacts/c" + i + ".vcf"))
+          .thenReturn(new ByteArrayInputStream(vcfContent.getBytes()));
+    }
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(resources);
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(9, contacts.size());
+    assertEquals("John0", contacts.get(0).firstName());
+    assertEquals("John4", contacts.get(3).firstName());
+    assertEquals("John9", contacts.get(8).firstName());
+  }
+
+  @Test
+  void testReadContactsWithBirthday_UnchangedEtag() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+
+    DavResource resource1 = mock(DavResource.class);
+    when(resource1.getDisplayName()).thenReturn("John Doe");
+    when(resource1.getHref()).thenReturn(new URI("/contacts/john.vcf"));
+    when(resource1.getEtag()).thenReturn("\"1\"");
+    DavResource resource2 = mock(DavResource.class);
+    when(resource2.getDisplayName()).thenReturn("No Birthday");
+    when(resource2.getHref()).thenReturn(new URI("/contacts/nobody.vcf"));
+    when(resource2.getEtag()).thenReturn("\"2\"");
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource1, resource2));
+
+    String vcfJohn = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:John Doe
+        N:Doe;John;;;
+        BDAY;VALUE=TEXT:--0415
+        END:VCARD
+        """;
+    String vcfNobody = """
+        BEGIN:VCARD
+        VERSION:4.0
+        FN:No Birthday
+        N:Birthday;No;;;
+        END:VCARD
+        """;
+    when(sardine.get("https://example.com/contacts/john.vcf"))
+        .thenReturn(new ByteArrayInputStream(vcfJohn.getBytes()));
+    when(sardine.get("https://example.com/contacts/nobody.vcf"))
+        .thenReturn(new ByteArrayInputStream(vcfNobody.getBytes()));
+
+    assertEquals(1, cardHandler.readContactsWithBirthday().size());
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(1, contacts.size());
+    assertEquals("John", contacts.get(0).firstName());
+    verify(sardine, times(1)).get("https://example.com/contacts/john.vcf");
+    verify(sardine, times(1)).get("https://example.com/contacts/nobody.vcf");
+  }
+
+  @Test
+  void testReadContactsWithBirthday_ConditionalGet() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+
+    CardStore cardStore = new CardStore(mock(BcsConf.class));
+    cardStore.put("/contacts/john.vcf",
+        new CardStore.Entry("\"1\"", new Contact("John", "Doe", "John Doe", MonthDay.of(4, 15), "john")));
+    cardHandler = new CardHandler(davConf, sardineInitializer, cardStore, SyncMetrics.inMemory());
+
+    DavResource resource = mock(DavResource.class);
+    when(resource.getDisplayName()).thenReturn("John Doe");
+    when(resource.getHref()).thenReturn(new URI("/contacts/john.vcf"));
+    when(sardine.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(List.of(resource));
+    when(sardine.get("https://example.com/contacts/john.vcf", Map.of("If-None-Match", "\"1\"")))
+        .thenThrow(new SardineException("not modified", 304, "Not Modified"));
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(1, contacts.size());
+    assertEquals("John", contacts.get(0).firstName());
+    verify(sardine, never()).get("https://example.com/contacts/john.vcf");
+  }
+
+  @Test
+  void testReadContactsWithBirthday_Async() throws Exception {
+    when(sardineInitializer.canAccessBaseUrl()).thenReturn(true);
+    when(davConf.fetchParallelism()).thenReturn(2);
+    DavTransport transport = mock(DavTransport.class);
+    when(transport.isNonBlocking()).thenReturn(true);
+    when(sardineInitializer.getTransport()).thenReturn(transport);
+
+    CardStore cardStore = new CardStore(mock(BcsConf.class));
+    cardStore.put("/contacts/c0.vcf",
+        new CardStore.Entry("\"0\"", new Contact("Stored", "Doe", "Stored Doe", MonthDay.of(4, 15), "c0")));
+    cardHandler = new CardHandler(davConf, sardineInitializer, cardStore, SyncMetrics.inMemory());
+
+    List<String> calls = new ArrayList<>();
+    List<DavResource> resources = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      DavResource resource = mock(DavResource.class);
+      when(resource.getDisplayName()).thenReturn("Contact " + i);
+      when(resource.getHref()).thenReturn(new URI("/contacts/c" + i + ".vcf"));
+      resources.add(resource);
+      String vcfContent = """
+          BEGIN:VCARD
+          VERSION:4.0
+          N:Doe;John%d;;;
+          BDAY;VALUE=TEXT:--0415
+          END:VCARD
+          """.formatted(i);
+      String name = "c" + i;
+      when(transport.getAsync("https://example.com/contacts/" + name + ".vcf", Map.of())).thenAnswer(invocation -> {
+        calls.add("get " + name);
+        return CompletableFuture.completedFuture(new ByteArrayInputStream(vcfContent.getBytes()) {
+          @Override
+          public void close() {
+            calls.add("parsed " + name);
+          }
+        });
+      });
+    }
+    when(transport.getAsync("https://example.com/contacts/c0.vcf", Map.of("If-None-Match", "\"0\"")))
+        .thenReturn(CompletableFuture.failedFuture(new SardineException("not modified", 304, "Not Modified")));
+    when(transport.propfind("https://example.com/contacts/", 1, DavSardine.LIST_PROPERTIES)).thenReturn(resources);
+
+    List<Contact> contacts = cardHandler.readContactsWithBirthday();
+
+    assertEquals(5, contacts.size());
+    assertEquals("Stored", contacts.get(0).firstName());
+    assertEquals("John1", contacts.get(1).firstName());
+    assertEquals("John4", contacts.get(4).firstName());
+    verify(transport, never()).get(anyString());
+    // a vCard is requested only after the response two vCards before was parsed
+    assertEquals(List.of("get c1", "get c2", "parsed c1", "get c3", "parsed c2", "get c4", "parsed c3", "parsed c4"),
+        calls);
+  }
 }
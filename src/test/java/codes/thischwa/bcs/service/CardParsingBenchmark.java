@@ -0,0 +1,71 @@
+package codes.thischwa.bcs.service;
+
+import codes.thischwa.bcs.Contact;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import net.fortuna.ical4j.data.ParserException;
+import net.fortuna.ical4j.vcard.VCardBuilder;
+import org.jspecify.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the streaming {@link CardScanner} with the full parse by {@link VCardBuilder}, which was
+ * used before. Run it by: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=CardParsingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardParsingBenchmark {
+
+  /**
+   * The size of the embedded photo in bytes, 0 for a vCard without photo.
+   */
+  @Param({"0", "65536"})
+  public int photoSize;
+
+  private byte[] vcard;
+
+  @Setup
+  public void setUp() {
+    StringBuilder content = new StringBuilder("BEGIN:VCARD\r\nVERSION:3.0\r\nUID:4711\r\n")
+        .append("N:Doe;John;;;\r\nFN:John Doe\r\nEMAIL;TYPE=work:john@example.com\r\n")
+        .append("TEL;TYPE=cell:+49 123 456789\r\nADR;TYPE=home:;;Main Street 1;Berlin;;10115;Germany\r\n");
+    if (photoSize > 0) {
+      content.append("PHOTO;ENCODING=b;TYPE=JPEG:");
+      for (int i = 0; i < photoSize; i++) {
+        if (i > 0 && i % 74 == 0) {
+          content.append("\r\n ");
+        }
+        content.append((char) ('A' + i % 26));
+      }
+      content.append("\r\n");
+    }
+    content.append("BDAY:1990-05-20\r\nEND:VCARD\r\n");
+    vcard = content.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public @Nullable Contact scanner() throws IOException, ParserException, MissingBirthdayException {
+    return CardUtil.buildContact(new ByteArrayInputStream(vcard), "4711");
+  }
+
+  @Benchmark
+  public Contact builder() throws IOException, ParserException, MissingBirthdayException {
+    return CardUtil.convert(new VCardBuilder(new ByteArrayInputStream(vcard)).build(), "4711");
+  }
+}
@@ -0,0 +1,147 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import codes.thischwa.bcs.Contact;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.format.DateTimeParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CardScannerTest {
+
+  private static String vcard(String... lines) {
+    return "BEGIN:VCARD\r\nVERSION:4.0\r\n" + String.join("\r\n", lines) + "\r\nEND:VCARD\r\n";
+  }
+
+  private static CardScanner scan(String vcfContent) throws Exception {
+    CardScanner scanner = new CardScanner();
+    scanner.scan(new StringReader(vcfContent));
+    return scanner;
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "N:Doe;John;;;\r\nFN:John Doe\r\nBDAY:19900520",
+      "N:Doe;John;;;\r\nFN:John Doe\r\nBDAY:1990-05-20",
+      "N:Doe;John;;;\r\nFN:John Doe\r\nBDAY;VALUE=DATE:19900520",
+      "N:Doe;John;;;\r\nFN:John Doe\r\nBDAY;VALUE=TEXT:--0415",
+      "N:Doe;John;;;\r\nFN:John Doe\r\nbday;VALUE=TEXT:--1231",
+      "N:;John;;;\r\nBDAY:19900520",
+      "N:Doe;;;;\r\nBDAY:19900520",
+      "N:;;;;\r\nBDAY:19900520",
+      "N:Doe;John;;;\r\nFN:  John Doe  \r\nBDAY:19900520",
+      "N:Doe;John,Jack;;;\r\nFN:John\r\n  Doe\r\nBDAY:19900520",
+      "PHOTO;ENCODING=b:AAAA\r\n BBBB\r\nitem1.N:Doe;John;;;\r\nitem1.BDAY:19900520",
+      "FN;TYPE=work:John Doe\r\nN:Doe;John;;;\r\nBDAY:19900520\r\nBDAY:20000101",
+  })
+  void testScan_SameAsParser(String properties) throws Exception {
+    String vcfContent = vcard(properties);
+    CardScanner scanner = new CardScanner();
+    String retained = scanner.scan(new StringReader(vcfContent));
+
+    Contact scanned = scanner.toContact("id");
+
+    assertNotNull(scanned);
+    assertEquals(CardUtil.buildContactByParser(retained, "id"), scanned);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "N:Doe;John;;;\r\nBDAY;VALUE=TEXT:circa 1800",
+      "N:Doe;John;;;\r\nBDAY:1990-05-20T10:00:00Z",
+      "N:Doe;John;;;\r\nBDAY:--0415",
+      "FN;TYPE=\"a:b\":John Doe\r\nN:Doe;John;;;\r\nBDAY:19900520",
+      "N:Doe;John;;;\r\nBDAY:19900231",
+      "N;ENCODING=QUOTED-PRINTABLE:D=C3=B6e;John;;;\r\nBDAY:19900520",
+      "FN:John Doe\r\nBDAY:19900520",
+      "N:Doe;John;;;\r\nINVALID LINE\r\nBDAY:19900520",
+      "N:Doe;John;;;\r\nBDAY;value=text:--0415",
+  })
+  void testScan_Uncertain(String properties) throws Exception {
+    assertNull(scan(vcard(properties)).toContact("id"));
+  }
+
+  @Test
+  void testScan_LowerCaseValueType() {
+    // the full parser rejects it, so does the scanner
+    String vcfContent = vcard("N:Doe;John;;;\r\nBDAY;value=text:--0415");
+
+    assertThrows(DateTimeParseException.class,
+        () -> CardUtil.buildContact(new ByteArrayInputStream(vcfContent.getBytes(StandardCharsets.UTF_8)), "id"));
+  }
+
+  @Test
+  void testScan_FamilyNameOnly() throws Exception {
+    Contact contact = scan(vcard("N:Doe\r\nBDAY:19900520")).toContact("id");
+
+    assertNotNull(contact);
+    assertEquals("", contact.firstName());
+    assertEquals("Doe", contact.lastName());
+    assertEquals("", contact.displayName());
+  }
+
+  @Test
+  void testScan_EscapedSeparators() throws Exception {
+    Contact contact = scan(vcard("N:O\\,Brien;Se\\;an;;;\r\nFN:A\\, B\r\nBDAY:19900520")).toContact("id");
+
+    assertNotNull(contact);
+    assertEquals("Se;an", contact.firstName());
+    assertEquals("O,Brien", contact.lastName());
+    assertEquals("A\\, B", contact.displayName());
+  }
+
+  @Test
+  void testSplitName() {
+    assertArrayEquals(new String[] {"", ""}, CardScanner.splitName(""));
+    assertArrayEquals(new String[] {"", ""}, CardScanner.splitName(";;;;"));
+    assertArrayEquals(new String[] {"Doe", ""}, CardScanner.splitName("Doe;;;;"));
+    assertArrayEquals(new String[] {"Doe", "John"}, CardScanner.splitName("Doe;John"));
+    assertArrayEquals(new String[] {"Do;e", "Jo\\hn"}, CardScanner.splitName("Do\\;e;Jo\\\\hn;;"));
+    assertArrayEquals(new String[] {"Doe\\n", ""}, CardScanner.splitName("Doe\\n"));
+  }
+
+  @Test
+  void testScan_Truncated() throws Exception {
+    assertNull(scan("BEGIN:VCARD\r\nVERSION:4.0\r\nN:Doe;John;;;\r\nBDAY:19900520\r\n").toContact("id"));
+    assertNull(scan("INVALID VCARD CONTENT").toContact("id"));
+    assertNull(scan("").toContact("id"));
+  }
+
+  @Test
+  void testScan_MissingBirthday() throws Exception {
+    CardScanner scanner = scan(vcard("N:Doe;John;;;", "FN:John Doe"));
+
+    assertThrows(MissingBirthdayException.class, () -> scanner.toContact("id"));
+  }
+
+  @Test
+  void testScan_FirstCardOnly() throws Exception {
+    String vcfContent = vcard("N:Doe;John;;;", "BDAY;VALUE=TEXT:--0415")
+        + vcard("N:Smith;Jane;;;", "BDAY:19900520");
+    CardScanner scanner = new CardScanner();
+    String retained = scanner.scan(new StringReader(vcfContent));
+
+    Contact contact = scanner.toContact("id");
+
+    assertEquals(MonthDay.of(4, 15), contact.birthday());
+    assertEquals(vcard("N:Doe;John;;;", "BDAY;VALUE=TEXT:--0415"), retained);
+  }
+
+  @Test
+  void testScan_UnixLineBreaks() throws Exception {
+    Contact contact = scan("BEGIN:VCARD\nVERSION:3.0\nN:Doe;John;;;\nBDAY:1990-05-20\nEND:VCARD\n")
+        .toContact("id");
+
+    assertEquals(new Contact("John", "Doe", "", LocalDate.of(1990, 5, 20), "id"), contact);
+  }
+}
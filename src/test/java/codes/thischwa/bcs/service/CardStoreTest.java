@@ -0,0 +1,127 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import codes.thischwa.bcs.Contact;
+import codes.thischwa.bcs.conf.BcsConf;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CardStoreTest {
+
+  @TempDir
+  Path stateDir;
+
+  private CardStore newCardStore() {
+    BcsConf conf = mock(BcsConf.class);
+    when(conf.stateDir()).thenReturn(stateDir.toString());
+    return new CardStore(conf);
+  }
+
+  @Test
+  void testSaveAndLoad() throws Exception {
+    CardStore cardStore = newCardStore();
+    assertNull(cardStore.getSyncToken());
+    cardStore.put("/contacts/john.vcf",
+        new CardStore.Entry("\"1\"", new Contact("John", "Doe", "John\tDoe", MonthDay.of(4, 15), "john")));
+    cardStore.put("/contacts/jane.vcf",
+        new CardStore.Entry(null, new Contact(null, "Smith", "Jane Smith", LocalDate.of(1990, 5, 20), "jane")));
+    cardStore.put("/contacts/nobody.vcf", new CardStore.Entry("\"2\"", null));
+    cardStore.save("token-1");
+    assertTrue(Files.exists(stateDir.resolve(CardStore.FILE_NAME)));
+
+    CardStore loaded = newCardStore();
+    assertEquals("token-1", loaded.getSyncToken());
+    List<Contact> contacts = loaded.getContacts();
+    assertEquals(2, contacts.size());
+    assertEquals(new Contact("John", "Doe", "John\tDoe", MonthDay.of(4, 15), "john"), contacts.get(0));
+    assertEquals(LocalDate.of(1990, 5, 20), contacts.get(1).birthday());
+    assertNull(contacts.get(1).firstName());
+    assertEquals(new CardStore.Entry("\"2\"", null), loaded.get("/contacts/nobody.vcf"));
+    assertNull(loaded.get("/contacts/jane.vcf").etag());
+  }
+
+  @Test
+  void testRetainAndResetSyncToken() throws Exception {
+    CardStore cardStore = newCardStore();
+    cardStore.put("/contacts/john.vcf", new CardStore.Entry("\"1\"", null));
+    cardStore.put("/contacts/jane.vcf", new CardStore.Entry("\"2\"", null));
+    cardStore.save("token-1");
+
+    cardStore.retain(List.of("/contacts/jane.vcf"));
+    cardStore.resetSyncToken();
+    cardStore.save(cardStore.getSyncToken());
+
+    CardStore loaded = newCardStore();
+    assertNull(loaded.getSyncToken());
+    assertNull(loaded.get("/contacts/john.vcf"));
+    assertEquals("\"2\"", loaded.get("/contacts/jane.vcf").etag());
+  }
+
+  @Test
+  void testOtherVersionIsDiscarded() throws Exception {
+    Files.writeString(stateDir.resolve(CardStore.FILE_NAME), "version\t1\nsync-token\ttoken-1\n");
+
+    CardStore loaded = newCardStore();
+    assertNull(loaded.getSyncToken());
+    assertTrue(loaded.getContacts().isEmpty());
+  }
+
+  @Test
+  void testHasEtag() {
+    assertTrue(new CardStore.Entry("\"1\"", null).hasEtag("\"1\""));
+    assertFalse(new CardStore.Entry("\"1\"", null).hasEtag("\"2\""));
+    assertFalse(new CardStore.Entry("\"1\"", null).hasEtag(null));
+    assertFalse(new CardStore.Entry(null, null).hasEtag(null));
+    assertFalse(new CardStore.Entry("W/\"1\"", null).hasEtag("W/\"1\""));
+  }
+
+  @Test
+  void testClear() throws Exception {
+    CardStore cardStore = newCardStore();
+    cardStore.put("/contacts/john.vcf",
+        new CardStore.Entry("\"1\"", new Contact("John", "Doe", "John Doe", MonthDay.of(4, 15), "john")));
+    cardStore.save("token-1");
+
+    cardStore.clear();
+    cardStore.save(null);
+
+    CardStore loaded = newCardStore();
+    assertNull(loaded.getSyncToken());
+    assertTrue(loaded.getContacts().isEmpty());
+  }
+
+  @Test
+  void testInMemory() throws Exception {
+    CardStore cardStore = new CardStore(mock(BcsConf.class));
+    cardStore.put("/contacts/john.vcf",
+        new CardStore.Entry("\"1\"", new Contact("John", "Doe", "John Doe", MonthDay.of(4, 15), "john")));
+    cardStore.save("token-1");
+
+    assertEquals("token-1", cardStore.getSyncToken());
+    assertEquals(1, cardStore.getContacts().size());
+    try (var files = Files.list(stateDir)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void testBirthdayFormat() {
+    assertEquals("--04-15", CardStore.formatBirthday(MonthDay.of(4, 15)));
+    assertEquals(MonthDay.of(4, 15), CardStore.parseBirthday("--04-15"));
+    assertEquals(LocalDate.of(1990, 5, 20), CardStore.parseBirthday("1990-05-20"));
+    assertNull(CardStore.formatBirthday(null));
+    assertThrows(IllegalArgumentException.class, () -> CardStore.formatBirthday(LocalDate.of(1990, 5, 20).atStartOfDay()));
+  }
+}
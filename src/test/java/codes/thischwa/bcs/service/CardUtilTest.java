@@ -10,6 +10,7 @@ import codes.thischwa.bcs.Contact;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.net.URI;
 import java.time.LocalDate;
 import java.time.MonthDay;
@@ -209,4 +210,27 @@ class CardUtilTest {
     VCardBuilder builder = new VCardBuilder(new ByteArrayInputStream(vcfContent.getBytes()));
     return builder.build();
   }
+
+  @Test
+  void testBuildContact_SkipsLargeProperties() throws Exception {
+    String vcfContent = "BEGIN:VCARD\r\n"
+        + "VERSION:3.0\r\n"
+        + "PHOTO;ENCODING=b;TYPE=JPEG:" + "A".repeat(70) + "\r\n"
+        + " " + "B".repeat(70) + "\r\n"
+        + "\t" + "C".repeat(70) + "\r\n"
+        + "FN:Dana Scully\r\n"
+        + "N:Scully;Dana;;;\r\n"
+        + "item1.BDAY:1964-02-23\r\n"
+        + "NOTE:line one\r\n"
+        + "  continued\r\n"
+        + "END:VCARD\r\n";
+
+    String filtered = new CardScanner().scan(new StringReader(vcfContent));
+
+    assertEquals("BEGIN:VCARD\r\nVERSION:3.0\r\nFN:Dana Scully\r\nN:Scully;Dana;;;\r\n"
+        + "item1.BDAY:1964-02-23\r\nEND:VCARD\r\n", filtered);
+    Contact contact = CardUtil.buildContact(new ByteArrayInputStream(vcfContent.getBytes()), "dana-uuid");
+    assertEquals("Dana", contact.firstName());
+    assertEquals("Dana Scully", contact.displayName());
+  }
 }
@@ -0,0 +1,111 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import codes.thischwa.bcs.conf.BcsConf;
+import codes.thischwa.bcs.conf.DavConf;
+import com.github.sardine.DavResource;
+import com.github.sardine.Sardine;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangeProbeTest {
+
+  private static final String CARD_URL = "https://example.com/contacts/";
+  private static final String CAL_URL = "https://example.com/calendars/birthday/";
+
+  @TempDir
+  Path stateDir;
+
+  private BcsConf conf;
+  private DavConf davConf;
+  private SardineInitializer sardineInitializer;
+  private Sardine sardine;
+
+  @BeforeEach
+  void setUp() {
+    conf = mock(BcsConf.class);
+    davConf = mock(DavConf.class);
+    sardineInitializer = mock(SardineInitializer.class);
+    sardine = mock(Sardine.class);
+    when(conf.stateDir()).thenReturn(stateDir.toString());
+    when(davConf.changeProbe()).thenReturn(true);
+    when(davConf.cardUrl()).thenReturn(CARD_URL);
+    when(davConf.calUrl()).thenReturn(CAL_URL);
+    when(sardineInitializer.getTransport()).thenReturn(new SardineDavTransport(sardine));
+  }
+
+  private void mockTag(String url, QName name, String tag) throws IOException {
+    DavResource resource = mock(DavResource.class);
+    when(resource.getCustomPropsNS()).thenReturn(Map.of(name, tag));
+    when(sardine.propfind(url, 0, DavSardine.TAG_PROPERTIES)).thenReturn(List.of(resource));
+  }
+
+  @Test
+  void testProbe_Disabled() {
+    when(davConf.changeProbe()).thenReturn(false);
+
+    assertNull(new ChangeProbe(conf, davConf, sardineInitializer).probe("config"));
+    verify(sardineInitializer, never()).getTransport();
+  }
+
+  @Test
+  void testProbe_Unchanged() throws Exception {
+    mockTag(CARD_URL, DavSardine.GETCTAG, "card-1");
+    mockTag(CAL_URL, DavSardine.SYNC_TOKEN, "cal-1");
+    ChangeProbe changeProbe = new ChangeProbe(conf, davConf, sardineInitializer);
+
+    ChangeProbe.Tags tags = changeProbe.probe("config");
+    assertEquals(new ChangeProbe.Tags("card-1", "cal-1", "config"), tags);
+    assertFalse(changeProbe.isUnchanged(tags));
+
+    // the own writes changed the tag of the calendar
+    mockTag(CAL_URL, DavSardine.SYNC_TOKEN, "cal-2");
+    changeProbe.record(tags);
+
+    // a new instance reads the persisted tags
+    ChangeProbe loaded = new ChangeProbe(conf, davConf, sardineInitializer);
+    assertTrue(loaded.isUnchanged(loaded.probe("config")));
+    assertFalse(loaded.isUnchanged(loaded.probe("other config")));
+
+    mockTag(CARD_URL, DavSardine.GETCTAG, "card-2");
+    assertFalse(loaded.isUnchanged(loaded.probe("config")));
+  }
+
+  @Test
+  void testProbe_NoTags() throws Exception {
+    DavResource resource = mock(DavResource.class);
+    when(sardine.propfind(CARD_URL, 0, DavSardine.TAG_PROPERTIES)).thenReturn(List.of(resource));
+    mockTag(CAL_URL, DavSardine.GETCTAG, "cal-1");
+    ChangeProbe changeProbe = new ChangeProbe(conf, davConf, sardineInitializer);
+
+    ChangeProbe.Tags tags = changeProbe.probe("config");
+    changeProbe.record(tags);
+
+    assertFalse(changeProbe.isUnchanged(changeProbe.probe("config")));
+  }
+
+  @Test
+  void testProbe_Failed() throws Exception {
+    when(sardine.propfind(CARD_URL, 0, DavSardine.TAG_PROPERTIES)).thenThrow(new IOException("timeout"));
+    ChangeProbe changeProbe = new ChangeProbe(conf, davConf, sardineInitializer);
+
+    ChangeProbe.Tags tags = changeProbe.probe("config");
+
+    assertNull(tags);
+    assertFalse(changeProbe.isUnchanged(tags));
+  }
+}
@@ -0,0 +1,62 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+  private static final Instant START = Instant.parse("2024-05-01T10:00:00Z");
+
+  @Test
+  void testStates() {
+    Instant[] now = {START};
+    Clock clock = new Clock() {
+      @Override
+      public ZoneOffset getZone() {
+        return ZoneOffset.UTC;
+      }
+
+      @Override
+      public Clock withZone(ZoneId zone) {
+        return this;
+      }
+
+      @Override
+      public Instant instant() {
+        return now[0];
+      }
+    };
+    CircuitBreaker breaker = new CircuitBreaker(clock, Duration.ofMinutes(5));
+    assertTrue(breaker.allowRequest());
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    breaker.recordFailure();
+    assertFalse(breaker.allowRequest());
+    assertEquals(START.plus(Duration.ofMinutes(5)), breaker.getOpenUntil());
+
+    now[0] = START.plus(Duration.ofMinutes(5));
+    assertTrue(breaker.allowRequest());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertNull(breaker.getOpenUntil());
+
+    // the half-open probe failed
+    breaker.recordFailure();
+    assertFalse(breaker.allowRequest());
+    assertEquals(START.plus(Duration.ofMinutes(10)), breaker.getOpenUntil());
+
+    now[0] = START.plus(Duration.ofMinutes(10));
+    assertTrue(breaker.allowRequest());
+    breaker.recordSuccess();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowRequest());
+  }
+}
@@ -0,0 +1,231 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.model.Multistatus;
+import com.github.sardine.util.SardineUtil;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+class DavReportTest {
+
+  @Test
+  void testAddressbookMultiget_Body() {
+    DavReport report = DavReport.addressbookMultiget(List.of("/contacts/a.vcf", "/contacts/b&c.vcf"));
+    String xml = report.toXml();
+
+    assertTrue(xml.contains("<C:addressbook-multiget"));
+    assertTrue(xml.contains("<D:prop><D:getetag/><C:address-data><C:prop name=\"VERSION\"/>"));
+    assertTrue(xml.contains("<C:prop name=\"BDAY\"/></C:address-data></D:prop>"));
+    assertTrue(xml.contains("<D:href>/contacts/a.vcf</D:href>"));
+    assertTrue(xml.contains("<D:href>/contacts/b&amp;c.vcf</D:href>"));
+  }
+
+  @Test
+  void testCalendarMultiget_Body() {
+    DavReport report = DavReport.calendarMultiget(List.of("/calendars/birthday/a.ics"));
+    String xml = report.toXml();
+
+    assertTrue(xml.contains("<C:calendar-multiget xmlns:D=\"DAV:\" xmlns:C=\"urn:ietf:params:xml:ns:caldav\">"));
+    assertTrue(xml.contains("<D:prop><D:getetag/><C:calendar-data/></D:prop>"));
+    assertTrue(xml.contains("<D:href>/calendars/birthday/a.ics</D:href>"));
+  }
+
+  @Test
+  void testFromMultistatus_CalendarData() throws Exception {
+    String response = """
+        <?xml version="1.0" encoding="utf-8"?>
+        <d:multistatus xmlns:d="DAV:" xmlns:cal="urn:ietf:params:xml:ns:caldav">
+          <d:response>
+            <d:href>/calendars/birthday/a.ics</d:href>
+            <d:propstat>
+              <d:prop>
+                <d:getetag>"etag-1"</d:getetag>
+                <cal:calendar-data>BEGIN:VCALENDAR
+        END:VCALENDAR
+        </cal:calendar-data>
+              </d:prop>
+              <d:status>HTTP/1.1 200 OK</d:status>
+            </d:propstat>
+          </d:response>
+        </d:multistatus>
+        """;
+    Multistatus multistatus = SardineUtil.unmarshal(
+        new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+
+    List<DavEntry> entries = DavReport.calendarMultiget(List.of()).fromMultistatus(multistatus).entries();
+
+    assertEquals(1, entries.size());
+    assertEquals("\"etag-1\"", entries.get(0).etag());
+    assertTrue(entries.get(0).data().startsWith("BEGIN:VCALENDAR"));
+  }
+
+  @Test
+  void testFromMultistatus() throws Exception {
+    String response = """
+        <?xml version="1.0" encoding="utf-8"?>
+        <d:multistatus xmlns:d="DAV:" xmlns:card="urn:ietf:params:xml:ns:carddav">
+          <d:response>
+            <d:href>/contacts/john.vcf</d:href>
+            <d:propstat>
+              <d:prop>
+                <d:getetag>"etag-1"</d:getetag>
+                <card:address-data>BEGIN:VCARD
+        VERSION:4.0
+        N:Doe;John;;;
+        END:VCARD
+        </card:address-data>
+              </d:prop>
+              <d:status>HTTP/1.1 200 OK</d:status>
+            </d:propstat>
+          </d:response>
+          <d:response>
+            <d:href>/contacts/missing.vcf</d:href>
+            <d:status>HTTP/1.1 404 Not Found</d:status>
+          </d:response>
+        </d:multistatus>
+        """;
+    Multistatus multistatus = SardineUtil.unmarshal(
+        new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+
+    List<DavEntry> entries = DavReport.addressbookMultiget(List.of()).fromMultistatus(multistatus).entries();
+
+    assertEquals(2, entries.size());
+    DavEntry john = entries.get(0);
+    assertEquals("/contacts/john.vcf", john.href());
+    assertEquals(200, john.status());
+    assertEquals("\"etag-1\"", john.etag());
+    assertTrue(john.hasData());
+    assertTrue(john.data().contains("N:Doe;John;;;"));
+
+    DavEntry missing = entries.get(1);
+    assertEquals(404, missing.status());
+    assertNull(missing.data());
+    assertFalse(missing.hasData());
+  }
+
+  @Test
+  void testParseStatus() {
+    assertEquals(200, DavReport.parseStatus("HTTP/1.1 200 OK"));
+    assertEquals(404, DavReport.parseStatus("HTTP/1.1 404 Not Found"));
+    assertEquals(200, DavReport.parseStatus(null));
+    assertEquals(200, DavReport.parseStatus("invalid"));
+  }
+
+  @Test
+  void testIsUnsupported() {
+    assertTrue(DavReport.isUnsupported(new SardineException("not implemented", 501, "Not Implemented")));
+    assertTrue(DavReport.isUnsupported(
+        new DavException("forbidden", 403, "Forbidden", DavReport.SUPPORTED_REPORT)));
+    // a missing permission or a malformed request isn't hidden by a fallback
+    assertFalse(DavReport.isUnsupported(new SardineException("forbidden", 403, "Forbidden")));
+    assertFalse(DavReport.isUnsupported(new SardineException("bad request", 400, "Bad Request")));
+    assertFalse(DavReport.isUnsupported(new SardineException("server error", 500, "Internal Server Error")));
+  }
+
+  @Test
+  void testToJaxb() throws Exception {
+    DavReport report = DavReport.addressbookMultiget(List.of("/contacts/a&b.vcf"));
+
+    // the marshalled body is equivalent to the rendered one
+    String xml = SardineUtil.toXml(report.toJaxb());
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    Element element = factory.newDocumentBuilder()
+        .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))).getDocumentElement();
+    assertEquals(DavReport.NS_CARDDAV, element.getNamespaceURI());
+    assertEquals("addressbook-multiget", element.getLocalName());
+    assertEquals("/contacts/a&b.vcf",
+        element.getElementsByTagNameNS(DavReport.NS_DAV, "href").item(0).getTextContent());
+    assertEquals(1, element.getElementsByTagNameNS(DavReport.NS_DAV, "getetag").getLength());
+  }
+
+  @Test
+  void testParseCondition() {
+    String error = """
+        <?xml version="1.0" encoding="utf-8"?>
+        <D:error xmlns:D="DAV:"><D:valid-sync-token/></D:error>
+        """;
+    assertEquals(DavReport.VALID_SYNC_TOKEN,
+        DavSardine.parseCondition(new ByteArrayInputStream(error.getBytes(StandardCharsets.UTF_8))));
+    assertNull(DavSardine.parseCondition(
+        new ByteArrayInputStream("<html><body>Forbidden</body></html>".getBytes(StandardCharsets.UTF_8))));
+    assertNull(DavSardine.parseCondition(new ByteArrayInputStream(new byte[0])));
+  }
+
+  @Test
+  void testEntryPath() {
+    assertEquals("/contacts/a b.vcf", new DavEntry("/contacts/a%20b.vcf", 200, null, null).path());
+    assertEquals("/contacts/a.vcf", new DavEntry("https://example.com/contacts/a.vcf", 200, null, null).path());
+  }
+
+  @Test
+  void testSyncCollection_Body() {
+    assertTrue(DavReport.syncCollection(null).toXml().contains("<D:sync-token/>"));
+    String xml = DavReport.syncCollection("http://example.com/sync/1&2").toXml();
+    assertTrue(xml.contains("<D:sync-collection"));
+    assertTrue(xml.contains("<D:sync-token>http://example.com/sync/1&amp;2</D:sync-token>"));
+    assertTrue(xml.contains("<D:sync-level>1</D:sync-level>"));
+  }
+
+  @Test
+  void testSyncCollection_FromMultistatus() throws Exception {
+    String response = """
+        <?xml version="1.0" encoding="utf-8"?>
+        <d:multistatus xmlns:d="DAV:">
+          <d:response>
+            <d:href>/contacts/john.vcf</d:href>
+            <d:propstat>
+              <d:prop><d:getetag>"etag-1"</d:getetag></d:prop>
+              <d:status>HTTP/1.1 200 OK</d:status>
+            </d:propstat>
+          </d:response>
+          <d:response>
+            <d:href>/contacts/removed.vcf</d:href>
+            <d:status>HTTP/1.1 404 Not Found</d:status>
+          </d:response>
+          <d:sync-token>http://example.com/sync/2</d:sync-token>
+        </d:multistatus>
+        """;
+    Multistatus multistatus = SardineUtil.unmarshal(
+        new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+
+    DavMultistatus result = DavReport.syncCollection(null).fromMultistatus(multistatus);
+
+    assertEquals("http://example.com/sync/2", result.syncToken());
+    assertEquals(2, result.entries().size());
+    assertEquals("\"etag-1\"", result.entries().get(0).etag());
+    assertEquals(404, result.entries().get(1).status());
+    assertFalse(result.isTruncated());
+  }
+
+  @Test
+  void testIsInvalidSyncToken() {
+    assertTrue(DavReport.isInvalidSyncToken(
+        new DavException("forbidden", 403, "Forbidden", DavReport.VALID_SYNC_TOKEN)));
+    // other errors don't reset the sync token
+    assertFalse(DavReport.isInvalidSyncToken(new SardineException("forbidden", 403, "Forbidden")));
+    assertFalse(DavReport.isInvalidSyncToken(
+        new DavException("forbidden", 403, "Forbidden", DavReport.SUPPORTED_REPORT)));
+    assertFalse(DavReport.isInvalidSyncToken(new SardineException("gone", 410, "Gone")));
+    assertFalse(DavReport.isInvalidSyncToken(new SardineException("server error", 500, "Internal Server Error")));
+  }
+
+  @Test
+  void testAddressbookQuery_Body() {
+    String xml = DavReport.addressbookQuery("BDAY").toXml();
+
+    assertTrue(xml.contains("<C:addressbook-query"));
+    assertTrue(xml.contains("<D:prop><D:getetag/><C:address-data><C:prop name=\"VERSION\"/>"));
+    assertTrue(xml.contains("<C:prop name=\"BDAY\"/></C:address-data></D:prop>"));
+    assertTrue(xml.contains("<C:filter><C:prop-filter name=\"BDAY\"/></C:filter>"));
+  }
+}
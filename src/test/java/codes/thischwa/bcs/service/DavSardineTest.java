@@ -0,0 +1,132 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.sardine.DavResource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.namespace.QName;
+import org.junit.jupiter.api.Test;
+
+class DavSardineTest {
+
+  @Test
+  void testToXml() {
+    String xml = DavSardine.toXml(Set.of(new QName(DavReport.NS_DAV, "getetag"),
+        new QName("http://calendarserver.org/ns/", "getctag")));
+
+    assertTrue(xml.contains("<D:propfind xmlns:D=\"DAV:\"><D:prop>"));
+    assertTrue(xml.contains("<D:getetag/>"));
+    assertTrue(xml.contains("<X:getctag xmlns:X=\"http://calendarserver.org/ns/\"/>"));
+    assertFalse(xml.contains("displayname"));
+  }
+
+  @Test
+  void testParse() throws Exception {
+    String response = """
+        <?xml version="1.0" encoding="utf-8"?>
+        <d:multistatus xmlns:d="DAV:" xmlns:cs="http://calendarserver.org/ns/">
+          <d:response>
+            <d:href>/contacts/</d:href>
+            <d:propstat>
+              <d:prop>
+                <d:resourcetype><d:collection/><card:addressbook xmlns:card="urn:ietf:params:xml:ns:carddav"/></d:resourcetype>
+              </d:prop>
+              <d:status>HTTP/1.1 200 OK</d:status>
+            </d:propstat>
+            <d:propstat>
+              <d:prop><d:getcontenttype/><d:getetag/></d:prop>
+              <d:status>HTTP/1.1 404 Not Found</d:status>
+            </d:propstat>
+          </d:response>
+          <d:response>
+            <d:href>/contacts/john.vcf</d:href>
+            <d:propstat>
+              <d:prop>
+                <d:resourcetype/>
+                <d:getcontenttype>text/vcard; charset=utf-8</d:getcontenttype>
+                <d:getetag>"etag-1"</d:getetag>
+              </d:prop>
+              <d:status>HTTP/1.1 200 OK</d:status>
+            </d:propstat>
+          </d:response>
+          <d:response>
+            <d:href>/contacts/jane.vcf</d:href>
+            <d:propstat>
+              <d:prop><d:getetag>"etag-2"</d:getetag></d:prop>
+              <d:status>HTTP/1.1 200 OK</d:status>
+            </d:propstat>
+            <d:propstat>
+              <d:prop><d:getcontenttype/></d:prop>
+              <d:status>HTTP/1.1 404 Not Found</d:status>
+            </d:propstat>
+          </d:response>
+          <d:response>
+            <d:href>/contacts/gone.vcf</d:href>
+            <d:status>HTTP/1.1 404 Not Found</d:status>
+          </d:response>
+        </d:multistatus>
+        """;
+
+    List<DavResource> resources = DavSardine.parse(
+        new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(3, resources.size());
+    assertTrue(resources.get(0).isDirectory());
+    assertNull(resources.get(0).getEtag());
+
+    DavResource john = resources.get(1);
+    assertFalse(john.isDirectory());
+    assertEquals("/contacts/john.vcf", john.getHref().toString());
+    assertEquals("text/vcard; charset=utf-8", john.getContentType());
+    assertEquals("\"etag-1\"", john.getEtag());
+
+    DavResource jane = resources.get(2);
+    assertEquals(DavResource.DEFAULT_CONTENT_TYPE, jane.getContentType());
+    assertEquals("\"etag-2\"", jane.getEtag());
+  }
+
+  @Test
+  void testParse_CustomProps() throws Exception {
+    String response = """
+        <d:multistatus xmlns:d="DAV:" xmlns:cs="http://calendarserver.org/ns/">
+          <d:response>
+            <d:href>/calendars/birthday/</d:href>
+            <d:propstat>
+              <d:prop>
+                <cs:getctag>ctag-1</cs:getctag>
+                <d:sync-token>https://example.com/sync/42</d:sync-token>
+              </d:prop>
+              <d:status>HTTP/1.1 200 OK</d:status>
+            </d:propstat>
+            <d:propstat>
+              <d:prop><d:displayname/></d:prop>
+              <d:status>HTTP/1.1 404 Not Found</d:status>
+            </d:propstat>
+          </d:response>
+        </d:multistatus>
+        """;
+
+    List<DavResource> resources = DavSardine.parse(
+        new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(1, resources.size());
+    assertEquals(Map.of(DavSardine.GETCTAG, "ctag-1", DavSardine.SYNC_TOKEN, "https://example.com/sync/42"),
+        resources.get(0).getCustomPropsNS());
+  }
+
+  @Test
+  void testParse_Invalid() {
+    byte[] response = "<d:multistatus xmlns:d=\"DAV:\"><d:response>".getBytes(StandardCharsets.UTF_8);
+
+    assertThrows(IOException.class, () -> DavSardine.parse(new ByteArrayInputStream(response)));
+  }
+}
@@ -0,0 +1,87 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class EventScannerTest {
+
+  private static String calendar(String... lines) {
+    return "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//Test//Test//EN\r\nBEGIN:VEVENT\r\n"
+        + String.join("\r\n", lines) + "\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n";
+  }
+
+  private static EventRef scan(String icsContent) throws Exception {
+    EventScanner scanner = new EventScanner();
+    scanner.scan(new StringReader(icsContent));
+    return scanner.toEventRef("/cal/a.ics", "\"1\"");
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "UID:uuid-1\r\nDTSTART;VALUE=DATE:20240415\r\nSUMMARY:Birthday",
+      "DTSTART;VALUE=DATE:20240415\r\nUID:uuid-\r\n 1",
+      "uid:uuid-1\r\ndtstart;value=date:20240415",
+      "UID:uuid-1\r\nDTSTART;VALUE=DATE:20240415\r\nX-BCS-HASH:0123abcd",
+      "UID:uuid-1\r\nDTSTART;VALUE=DATE:20240415\r\nBEGIN:VALARM\r\nTRIGGER:-PT1H\r\nACTION:DISPLAY\r\n"
+          + "DESCRIPTION:Birthday\r\nEND:VALARM",
+  })
+  void testScan_SameAsParser(String properties) throws Exception {
+    String icsContent = calendar(properties);
+
+    EventRef eventRef = scan(icsContent);
+
+    assertNotNull(eventRef);
+    Calendar calendar = new CalendarBuilder().build(
+        new ByteArrayInputStream(icsContent.getBytes(StandardCharsets.UTF_8)));
+    VEvent event = (VEvent) calendar.getComponents().get(0);
+    assertEquals(CalUtil.extractContactsUuidFromEvent(event), eventRef.uid());
+    assertEquals(event.getDateTimeStart().getDate(), eventRef.dtStart());
+    assertEquals("/cal/a.ics", eventRef.href());
+    assertEquals("\"1\"", eventRef.etag());
+    assertEquals(event.getProperty(CalUtil.FINGERPRINT_PROPERTY).map(p -> p.getValue()).orElse(null), eventRef.hash());
+  }
+
+  @Test
+  void testScan_Values() throws Exception {
+    EventRef eventRef = scan(calendar("UID:uuid-1", "DTSTART;VALUE=DATE:20240415", "X-BCS-HASH:abc"));
+
+    assertEquals(new EventRef("uuid-1", LocalDate.of(2024, 4, 15), "/cal/a.ics", "\"1\"", "abc"), eventRef);
+    assertNull(scan(calendar("UID:uuid-1", "DTSTART;VALUE=DATE:20240415")).hash());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "UID:uuid-1\r\nDTSTART:20240415T100000Z",
+      "UID:uuid-1\r\nDTSTART;TZID=Europe/Berlin:20240415T100000",
+      "UID:uuid-1\r\nDTSTART;VALUE=DATE:20240231",
+      "UID:uuid\\,1\r\nDTSTART;VALUE=DATE:20240415",
+      "UID:uuid-1\r\nUID:uuid-2\r\nDTSTART;VALUE=DATE:20240415",
+      "UID:uuid-1\r\nDTSTART;VALUE=DATE:20240415\r\nX-BCS-HASH:a\r\nX-BCS-HASH:b",
+      "UID:uuid-1",
+      "DTSTART;VALUE=DATE:20240415",
+      "UID;X-PARAM=\"a:b\":uuid-1\r\nDTSTART;VALUE=DATE:20240415",
+      "UID:uuid-1\r\nDTSTART;VALUE=DATE:20240415\r\nEND:VEVENT\r\nBEGIN:VEVENT\r\nUID:uuid-2",
+      "UID:uuid-1\r\nDTSTART;VALUE=DATE:20240415\r\nEND:VEVENT\r\nBEGIN:VTIMEZONE\r\nTZID:UTC\r\nEND:VTIMEZONE"
+          + "\r\nBEGIN:VEVENT",
+  })
+  void testScan_Uncertain(String properties) throws Exception {
+    assertNull(scan(calendar(properties)));
+  }
+
+  @Test
+  void testScan_Truncated() throws Exception {
+    assertNull(scan("BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nUID:uuid-1\r\nDTSTART;VALUE=DATE:20240415\r\n"));
+  }
+}
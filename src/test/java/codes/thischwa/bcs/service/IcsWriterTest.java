@@ -0,0 +1,177 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.Recur;
+import net.fortuna.ical4j.model.component.VAlarm;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.Action;
+import net.fortuna.ical4j.model.property.CalScale;
+import net.fortuna.ical4j.model.property.Categories;
+import net.fortuna.ical4j.model.property.Description;
+import net.fortuna.ical4j.model.property.ProdId;
+import net.fortuna.ical4j.model.property.RRule;
+import net.fortuna.ical4j.model.property.Status;
+import net.fortuna.ical4j.model.property.Summary;
+import net.fortuna.ical4j.model.property.Transp;
+import net.fortuna.ical4j.model.property.Uid;
+import net.fortuna.ical4j.model.property.Version;
+import net.fortuna.ical4j.model.property.XProperty;
+import net.fortuna.ical4j.transform.recurrence.Frequency;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class IcsWriterTest {
+
+  private static final String PROD_ID = "-//BirthdayCalendarService//iCal4j 1.0//EN";
+  private static final Instant DTSTAMP = Instant.parse("2026-03-01T04:30:00Z");
+  private static final String FINGERPRINT = "eadb084a05a39c6e8371fcbd7ae7e0cd062ebf5ac9d8b86ebfa898a6b4e1ae15";
+
+  private static final List<IcsWriter.BirthdayEvent> EVENTS = List.of(
+      new IcsWriter.BirthdayEvent("uuid-1", LocalDate.of(1980, 2, 29), "🎂 John Doe", "Birthday: 1980-02-29",
+          "Birthday", Duration.ofDays(-1), FINGERPRINT),
+      new IcsWriter.BirthdayEvent("a;b,c\\d", LocalDate.of(2000, 12, 31), "Birthday: Jöhn, the \"one\"; \\o/",
+          "first line\nsecond line\r\nthird line", "Geburtstag, Familie", Duration.ofHours(-36), FINGERPRINT),
+      new IcsWriter.BirthdayEvent("uuid-3", LocalDate.of(1970, 1, 1),
+          "🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂🎂 Ünïcödé Ëxtrâ lông sümmâry wîth mänÿ chàräctérs",
+          "x".repeat(200), "Birthday", null, FINGERPRINT));
+
+  /**
+   * Builds the event with ical4j, like it was done before the {@link IcsWriter}.
+   */
+  private static Calendar buildWithIcal4j(IcsWriter.BirthdayEvent event) {
+    Version version = new Version();
+    version.setValue(Version.VALUE_2_0);
+    Calendar calendar = new Calendar();
+    calendar.add(new ProdId(PROD_ID));
+    calendar.add(version);
+    calendar.add(new CalScale(CalScale.VALUE_GREGORIAN));
+
+    Summary summary = new Summary(event.summary());
+    VEvent birthdayEvent = new VEvent(event.start(), Duration.ofDays(1), summary.getValue());
+    birthdayEvent.add(new Uid(event.uid()));
+    birthdayEvent.add(new RRule<>(new Recur.Builder<LocalDate>().frequency(Frequency.YEARLY).build()));
+    if (event.alarm() != null) {
+      VAlarm alarm = new VAlarm(event.alarm());
+      alarm.add(new Action(Action.VALUE_DISPLAY));
+      alarm.add(new Description(event.description()));
+      alarm.add(summary);
+      birthdayEvent.add(alarm);
+    }
+    birthdayEvent.add(new Categories(event.category()));
+    birthdayEvent.add(new Transp(Transp.VALUE_TRANSPARENT));
+    birthdayEvent.add(new Description(event.description()));
+    birthdayEvent.add(new Status(Status.VALUE_CONFIRMED));
+    birthdayEvent.add(new XProperty(CalUtil.FINGERPRINT_PROPERTY, event.fingerprint()));
+    calendar.add(birthdayEvent);
+    return calendar;
+  }
+
+  private static String unfold(String ics) {
+    return ics.replace("\r\n ", "");
+  }
+
+  private static String normalizeDtStamp(String ics) {
+    return ics.replaceAll("DTSTAMP:\\d{8}T\\d{6}Z", "DTSTAMP:<normalized>");
+  }
+
+  private static boolean hasLongLines(String ics) {
+    return ics.lines().anyMatch(line -> line.getBytes(StandardCharsets.UTF_8).length > IcsWriter.MAX_LINE_OCTETS);
+  }
+
+  @Test
+  void testWrite_SameAsIcal4j() {
+    for (IcsWriter.BirthdayEvent event : EVENTS) {
+      String expected = normalizeDtStamp(buildWithIcal4j(event).toString());
+      String written = new String(IcsWriter.write(PROD_ID, event, DTSTAMP), StandardCharsets.UTF_8);
+      String actual = normalizeDtStamp(written);
+
+      // ical4j doesn't fold, so the raw output differs exactly by the folding of the long lines
+      if (hasLongLines(expected)) {
+        assertNotEquals(expected, actual, "event: " + event.uid());
+        assertFalse(hasLongLines(actual), "event: " + event.uid());
+        assertEquals(expected, unfold(actual), "event: " + event.uid());
+      } else {
+        assertEquals(expected, actual, "event: " + event.uid());
+      }
+      assertTrue(written.contains("DTSTAMP:20260301T043000Z\r\n"));
+    }
+    // both cases are covered
+    assertFalse(hasLongLines(buildWithIcal4j(EVENTS.get(0)).toString()));
+    assertTrue(hasLongLines(buildWithIcal4j(EVENTS.get(2)).toString()));
+  }
+
+  @Test
+  void testWrite_Folding() throws CharacterCodingException {
+    for (IcsWriter.BirthdayEvent event : EVENTS) {
+      byte[] written = IcsWriter.write(PROD_ID, event, DTSTAMP);
+
+      int lineStart = 0;
+      for (int i = 0; i < written.length - 1; i++) {
+        if (written[i] == '\r' && written[i + 1] == '\n') {
+          assertTrue(i - lineStart <= IcsWriter.MAX_LINE_OCTETS, "line too long: " + (i - lineStart));
+          // each line is valid UTF-8 on its own, so no multi-octet sequence was split
+          StandardCharsets.UTF_8.newDecoder()
+              .onMalformedInput(CodingErrorAction.REPORT)
+              .onUnmappableCharacter(CodingErrorAction.REPORT)
+              .decode(ByteBuffer.wrap(written, lineStart, i - lineStart));
+          lineStart = i + 2;
+        }
+      }
+      assertEquals(written.length, lineStart);
+    }
+  }
+
+  @Test
+  void testWrite_ParsedByIcal4j() throws Exception {
+    for (IcsWriter.BirthdayEvent event : EVENTS) {
+      String written = new String(IcsWriter.write(PROD_ID, event, DTSTAMP), StandardCharsets.UTF_8);
+
+      Calendar calendar = new CalendarBuilder().build(new StringReader(written));
+      VEvent parsed = calendar.<VEvent>getComponent(VEvent.VEVENT).orElseThrow();
+      assertEquals(event.uid(), parsed.getProperty(Property.UID).orElseThrow().getValue());
+      assertEquals(event.summary(), parsed.getProperty(Property.SUMMARY).orElseThrow().getValue());
+      assertEquals(event.description().replace("\r\n", "\n"),
+          parsed.getProperty(Property.DESCRIPTION).orElseThrow().getValue());
+      assertEquals(event.fingerprint(), parsed.getProperty(CalUtil.FINGERPRINT_PROPERTY).orElseThrow().getValue());
+    }
+  }
+
+  @Test
+  void testWrite_GoldenFile() throws Exception {
+    byte[] expected;
+    try (InputStream in = getClass().getResourceAsStream("birthday-event.ics")) {
+      assert in != null;
+      expected = in.readAllBytes();
+    }
+
+    assertArrayEquals(expected, IcsWriter.write(PROD_ID, EVENTS.get(2), DTSTAMP));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"-PT24H", "-PT168H", "-PT12H", "-PT36H", "-PT48H", "PT0S", "PT1H30M", "-PT25H1M1S"})
+  void testFormatDuration(String duration) {
+    VAlarm alarm = new VAlarm(Duration.parse(duration));
+
+    assertEquals(alarm.getProperty(Property.TRIGGER).orElseThrow().getValue(),
+        IcsWriter.formatDuration(Duration.parse(duration)));
+  }
+}
@@ -0,0 +1,223 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codes.thischwa.bcs.conf.DavConf;
+import com.github.sardine.DavResource;
+import com.github.sardine.Sardine;
+import com.github.sardine.impl.SardineException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class JdkDavTransportTest {
+
+  private static final String MULTISTATUS = """
+      <?xml version="1.0" encoding="utf-8"?>
+      <D:multistatus xmlns:D="DAV:" xmlns:C="urn:ietf:params:xml:ns:carddav">
+        <D:response>
+          <D:href>/contacts/john.vcf</D:href>
+          <D:propstat>
+            <D:prop><D:getetag>"1"</D:getetag><C:address-data>BEGIN:VCARD</C:address-data></D:prop>
+            <D:status>HTTP/1.1 200 OK</D:status>
+          </D:propstat>
+        </D:response>
+      </D:multistatus>
+      """;
+
+  private static final String VALID_SYNC_TOKEN_ERROR = """
+      <?xml version="1.0" encoding="utf-8"?>
+      <D:error xmlns:D="DAV:"><D:valid-sync-token/></D:error>
+      """;
+
+  private final Map<String, String> received = new ConcurrentHashMap<>();
+  private final AtomicLong bodyBytes = new AtomicLong();
+
+  private HttpServer server;
+  private String baseUrl;
+  private RequestCounter requestCounter;
+  private JdkDavTransport transport;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+    baseUrl = "http://localhost:" + server.getAddress().getPort();
+    requestCounter = new RequestCounter(bodyBytes::addAndGet);
+    transport = new JdkDavTransport("user", "password", DavConf.Http.DEFAULT, requestCounter);
+  }
+
+  @AfterEach
+  void tearDown() {
+    transport.shutdown();
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String request = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+    byte[] requestBody = exchange.getRequestBody().readAllBytes();
+    received.put(request, new String(requestBody, StandardCharsets.UTF_8));
+    exchange.getRequestHeaders().forEach((name, values) ->
+        received.put(request + " " + name.toLowerCase(), values.get(0)));
+    byte[] body = new byte[0];
+    int status = switch (request) {
+      case "PROPFIND /contacts/", "REPORT /contacts/" -> {
+        body = MULTISTATUS.getBytes(StandardCharsets.UTF_8);
+        yield 207;
+      }
+      case "GET /contacts/john.vcf" -> {
+        if ("\"1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          yield 304;
+        }
+        body = "BEGIN:VCARD".getBytes(StandardCharsets.UTF_8);
+        yield 200;
+      }
+      case "REPORT /sync/" -> {
+        body = VALID_SYNC_TOKEN_ERROR.getBytes(StandardCharsets.UTF_8);
+        yield 403;
+      }
+      case "PUT /calendar/event.ics" -> {
+        exchange.getResponseHeaders().set("ETag", "\"2\"");
+        yield 201;
+      }
+      case "DELETE /calendar/event.ics", "HEAD /contacts/" -> 204;
+      default -> 404;
+    };
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    if (body.length > 0) {
+      exchange.getResponseBody().write(body);
+    }
+    exchange.close();
+  }
+
+  @Test
+  void testPropfind() throws Exception {
+    List<DavResource> resources = transport.propfind(baseUrl + "/contacts/", 1, DavSardine.LIST_PROPERTIES);
+
+    assertEquals(1, resources.size());
+    assertEquals("\"1\"", resources.get(0).getEtag());
+    assertEquals("1", received.get("PROPFIND /contacts/ depth"));
+    assertEquals(DavSardine.toXml(DavSardine.LIST_PROPERTIES), received.get("PROPFIND /contacts/"));
+    assertEquals(MULTISTATUS.getBytes(StandardCharsets.UTF_8).length, bodyBytes.get());
+    // preemptive Basic authentication
+    assertTrue(received.get("PROPFIND /contacts/ authorization").startsWith("Basic "));
+  }
+
+  @Test
+  void testReport() throws Exception {
+    DavMultistatus multistatus = transport.report(baseUrl + "/contacts/", 1,
+        DavReport.addressbookMultiget(List.of("/contacts/john.vcf")));
+
+    assertEquals(List.of(new DavEntry("/contacts/john.vcf", 200, "\"1\"", "BEGIN:VCARD")), multistatus.entries());
+    assertEquals(MULTISTATUS.getBytes(StandardCharsets.UTF_8).length, bodyBytes.get());
+
+    // the Sardine client counts the body of the REPORT and the PROPFIND, too
+    Sardine sardine = SardineInitializer.CustomFactory.begin("user", "password", DavConf.Http.DEFAULT, 1,
+        requestCounter);
+    try {
+      sardine.report(baseUrl + "/contacts/", 1, DavReport.addressbookMultiget(List.of("/contacts/john.vcf")));
+      sardine.propfind(baseUrl + "/contacts/", 1, DavSardine.LIST_PROPERTIES);
+      assertEquals(3L * MULTISTATUS.getBytes(StandardCharsets.UTF_8).length, bodyBytes.get());
+    } finally {
+      sardine.shutdown();
+    }
+  }
+
+  @Test
+  void testReport_Error() throws Exception {
+    DavException e = assertThrows(DavException.class,
+        () -> transport.report(baseUrl + "/sync/", 0, DavReport.syncCollection("token-1")));
+    assertEquals(403, e.getStatusCode());
+    assertTrue(DavReport.isInvalidSyncToken(e));
+    assertEquals(404, assertThrows(SardineException.class,
+        () -> transport.report(baseUrl + "/missing/", 0, DavReport.syncCollection(null))).getStatusCode());
+
+    // the Sardine client reads the error body, too
+    Sardine sardine = SardineInitializer.CustomFactory.begin("user", "password", DavConf.Http.DEFAULT, 1,
+        new RequestCounter());
+    try {
+      DavException sardineError = assertThrows(DavException.class,
+          () -> sardine.report(baseUrl + "/sync/", 0, DavReport.syncCollection("token-1")));
+      assertEquals(DavReport.VALID_SYNC_TOKEN, sardineError.getCondition());
+    } finally {
+      sardine.shutdown();
+    }
+  }
+
+  @Test
+  void testGet() throws Exception {
+    try (InputStream in = transport.get(baseUrl + "/contacts/john.vcf")) {
+      assertEquals("BEGIN:VCARD", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+    SardineException e = assertThrows(SardineException.class,
+        () -> transport.get(baseUrl + "/contacts/john.vcf", Map.of("If-None-Match", "\"1\"")));
+    assertEquals(304, e.getStatusCode());
+    assertEquals(404, assertThrows(SardineException.class,
+        () -> transport.get(baseUrl + "/contacts/missing.vcf")).getStatusCode());
+  }
+
+  @Test
+  void testGetAsync() throws Exception {
+    try (InputStream in = transport.getAsync(baseUrl + "/contacts/john.vcf", Map.of()).get()) {
+      assertEquals("BEGIN:VCARD", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> transport.getAsync(baseUrl + "/contacts/john.vcf", Map.of("If-None-Match", "\"1\"")).get());
+    assertEquals(304, assertInstanceOf(SardineException.class, e.getCause()).getStatusCode());
+    assertTrue(transport.isNonBlocking());
+  }
+
+  @Test
+  void testWrite() throws Exception {
+    byte[] content = "BEGIN:VCALENDAR".getBytes(StandardCharsets.UTF_8);
+    assertEquals("\"2\"", transport.put(baseUrl + "/calendar/event.ics", content,
+        Map.of("Content-Type", "text/calendar", "If-None-Match", "*")));
+    transport.delete(baseUrl + "/calendar/event.ics");
+
+    assertArrayEquals(content, received.get("PUT /calendar/event.ics").getBytes(StandardCharsets.UTF_8));
+    assertEquals("text/calendar", received.get("PUT /calendar/event.ics content-type"));
+    assertEquals("*", received.get("PUT /calendar/event.ics if-none-match"));
+    assertEquals(Integer.toString(content.length), received.get("PUT /calendar/event.ics content-length"));
+    assertTrue(received.containsKey("DELETE /calendar/event.ics"));
+    assertEquals(404, assertThrows(SardineException.class,
+        () -> transport.delete(baseUrl + "/calendar/missing.ics")).getStatusCode());
+
+    // the Sardine client returns the ETag of the PUT, too
+    DavSardine sardine = (DavSardine) SardineInitializer.CustomFactory.begin("user", "password",
+        DavConf.Http.DEFAULT, 1, new RequestCounter());
+    try {
+      assertEquals("\"2\"", new SardineDavTransport(sardine).put(baseUrl + "/calendar/event.ics", content,
+          Map.of("Content-Type", "text/calendar", "If-Match", "\"1\"")));
+      assertEquals("\"1\"", received.get("PUT /calendar/event.ics if-match"));
+      assertEquals(404, assertThrows(SardineException.class,
+          () -> sardine.putForEtag(baseUrl + "/calendar/missing.ics", content, Map.of())).getStatusCode());
+    } finally {
+      sardine.shutdown();
+    }
+  }
+
+  @Test
+  void testExists() throws Exception {
+    assertTrue(transport.exists(baseUrl + "/contacts/"));
+    assertFalse(transport.exists(baseUrl + "/missing/"));
+    assertEquals(new RequestCounter.Stats(2, 0), requestCounter.getAndReset());
+  }
+}
@@ -0,0 +1,94 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.fortuna.ical4j.data.ParserException;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.Uid;
+import net.fortuna.ical4j.vcard.VCard;
+import org.junit.jupiter.api.Test;
+
+class ParserPoolTest {
+
+  private static final String EVENT = """
+      BEGIN:VCALENDAR
+      VERSION:2.0
+      PRODID:-//Test//EN
+      BEGIN:VEVENT
+      UID:%s
+      DTSTAMP:20240101T000000Z
+      DTSTART;TZID=Europe/Berlin:20240415T100000
+      END:VEVENT
+      END:VCALENDAR
+      """;
+
+  private static Calendar build(String content) throws Exception {
+    return ParserPool.buildCalendar(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String uid(Calendar calendar) {
+    VEvent event = (VEvent) calendar.getComponents().get(0);
+    return event.getProperty(Property.UID).map(Uid.class::cast).orElseThrow().getValue();
+  }
+
+  @Test
+  void testBuildCalendar() throws Exception {
+    assertEquals("uuid-1", uid(build(EVENT.formatted("uuid-1"))));
+    assertEquals("uuid-2", uid(build(EVENT.formatted("uuid-2"))));
+    assertTrue(ParserPool.getIdleCount() >= 1);
+
+    VEvent event = (VEvent) build(EVENT.formatted("uuid-3")).getComponents().get(0);
+    assertEquals(ZonedDateTime.parse("2024-04-15T10:00+02:00[Europe/Berlin]").toInstant(),
+        ZonedDateTime.from(event.getDateTimeStart().getDate()).toInstant());
+  }
+
+  @Test
+  void testBuildCalendarInvalid() throws Exception {
+    build(EVENT.formatted("uuid-1"));
+
+    // a reused builder doesn't return the previous calendar
+    assertThrows(ParserException.class, () -> build("BEGIN:VCARD\nEND:VCARD\n"));
+    assertEquals("uuid-2", uid(build(EVENT.formatted("uuid-2"))));
+  }
+
+  @Test
+  void testBuildCalendarConcurrently() throws Exception {
+    List<Callable<String>> tasks = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      String uid = "uuid-" + i;
+      tasks.add(() -> uid(build(EVENT.formatted(uid))));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = executor.invokeAll(tasks);
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals("uuid-" + i, results.get(i).get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(ParserPool.getIdleCount() <= ParserPool.MAX_IDLE);
+  }
+
+  @Test
+  void testBuildVCard() throws Exception {
+    VCard card = ParserPool.buildCard(new StringReader("BEGIN:VCARD\r\nVERSION:3.0\r\nUID:4711\r\n"
+        + "FN:John Doe\r\nBDAY:1990-05-20\r\nEND:VCARD\r\n"));
+
+    assertEquals("4711", card.getUid().getValue());
+  }
+}
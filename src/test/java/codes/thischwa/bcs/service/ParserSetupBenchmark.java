@@ -0,0 +1,57 @@
+package codes.thischwa.bcs.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.data.ParserException;
+import net.fortuna.ical4j.model.Calendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the parsers of the {@link ParserPool} with a new builder per resource, which was used
+ * before. Run it by: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=ParserSetupBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ParserSetupBenchmark {
+
+  private static final byte[] EVENT = """
+      BEGIN:VCALENDAR\r
+      VERSION:2.0\r
+      PRODID:-//Test//EN\r
+      BEGIN:VEVENT\r
+      UID:4711\r
+      DTSTAMP:20240101T000000Z\r
+      DTSTART;TZID=Europe/Berlin:20240415T100000\r
+      SUMMARY:Birthday: John Doe\r
+      RRULE:FREQ=YEARLY\r
+      END:VEVENT\r
+      END:VCALENDAR\r
+      """.getBytes(StandardCharsets.UTF_8);
+
+  @Benchmark
+  public Calendar calendarPooled() throws IOException, ParserException {
+    return ParserPool.buildCalendar(new ByteArrayInputStream(EVENT));
+  }
+
+  @Benchmark
+  public Calendar calendarNewBuilder() throws IOException, ParserException {
+    return new CalendarBuilder().build(new ByteArrayInputStream(EVENT));
+  }
+}
@@ -0,0 +1,37 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+  @Test
+  void testAcquire_Limited() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(20);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      rateLimiter.acquire();
+    }
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // the first permit is granted immediately, the others every 50 ms
+    assertTrue(elapsedMillis >= 190, "elapsed: " + elapsedMillis);
+  }
+
+  @Test
+  void testAcquire_Unlimited() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(0);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 1000; i++) {
+      rateLimiter.acquire();
+    }
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue(elapsedMillis < 100, "elapsed: " + elapsedMillis);
+    new RateLimiter(null).acquire();
+  }
+}
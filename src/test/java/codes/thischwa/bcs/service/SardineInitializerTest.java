@@ -0,0 +1,155 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import codes.thischwa.bcs.conf.DavConf;
+import com.github.sardine.Sardine;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.CircularRedirectException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.jupiter.api.Test;
+
+class SardineInitializerTest {
+
+  private static HttpResponse redirect(String location) {
+    HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_MOVED_TEMPORARILY, "Found");
+    response.addHeader("Location", location);
+    return response;
+  }
+
+  @Test
+  void testLimitedRedirectStrategy_CountsPerContext() throws Exception {
+    SardineInitializer.CustomFactory.LimitedRedirectStrategy strategy =
+        new SardineInitializer.CustomFactory.LimitedRedirectStrategy();
+    HttpGet request = new HttpGet("https://example.com/dav/");
+    HttpContext parent = new BasicHttpContext();
+    HttpContext first = new BasicHttpContext(parent);
+    HttpContext second = new BasicHttpContext(parent);
+
+    for (int i = 1; i <= SardineInitializer.CustomFactory.LimitedRedirectStrategy.MAX_REDIRECTS; i++) {
+      assertEquals("https://example.com/dav" + i + "/",
+          strategy.getRedirect(request, redirect("https://example.com/dav" + i + "/"), first).getURI().toString());
+    }
+    assertThrows(CircularRedirectException.class,
+        () -> strategy.getRedirect(request, redirect("https://example.com/dav4/"), first));
+
+    // another request isn't affected by the redirects of the first one
+    strategy.getRedirect(request, redirect("https://example.com/other/"), second);
+    assertEquals(1, second.getAttribute(SardineInitializer.CustomFactory.LimitedRedirectStrategy.REDIRECT_COUNT));
+  }
+
+  /**
+   * Starts a server which requires Basic authentication for each request.
+   */
+  private static HttpServer startServer() throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+      if (authorization == null || !authorization.startsWith("Basic ")) {
+        exchange.getResponseHeaders().add("WWW-Authenticate", "Basic realm=\"dav\"");
+        exchange.sendResponseHeaders(401, -1);
+      } else {
+        exchange.sendResponseHeaders(200, -1);
+      }
+      exchange.close();
+    });
+    server.start();
+    return server;
+  }
+
+  private static RequestCounter.Stats countRequests(boolean preemptive) throws Exception {
+    HttpServer server = startServer();
+    String baseUrl = "http://localhost:" + server.getAddress().getPort();
+    RequestCounter requestCounter = new RequestCounter();
+    Sardine sardine = SardineInitializer.CustomFactory.begin("user", "password", DavConf.Http.DEFAULT, 2,
+        requestCounter);
+    try {
+      if (preemptive) {
+        sardine.enablePreemptiveAuthentication(URI.create(baseUrl).toURL());
+      }
+      for (int i = 0; i < 3; i++) {
+        assertTrue(sardine.exists(baseUrl + "/contacts/"));
+      }
+      return requestCounter.getAndReset();
+    } finally {
+      sardine.shutdown();
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void testAuthChallenges() throws Exception {
+    // the scheme is cached after the first challenge
+    assertEquals(new RequestCounter.Stats(4, 1), countRequests(false));
+    assertEquals(new RequestCounter.Stats(3, 0), countRequests(true));
+  }
+
+  @Test
+  void testBegin() throws Exception {
+    Sardine sardine = SardineInitializer.CustomFactory.begin("user", "password", DavConf.Http.DEFAULT, 32,
+        new RequestCounter());
+
+    assertInstanceOf(DavSardine.class, sardine);
+    sardine.shutdown();
+  }
+
+  @Test
+  void testBackoffDelay() {
+    for (int i = 0; i < 100; i++) {
+      long first = SardineInitializer.backoffDelay(0, 1000, 60_000);
+      assertTrue(first >= 500 && first <= 1000, "delay: " + first);
+      long third = SardineInitializer.backoffDelay(2, 1000, 60_000);
+      assertTrue(third >= 2000 && third <= 4000, "delay: " + third);
+      long capped = SardineInitializer.backoffDelay(20, 1000, 60_000);
+      assertTrue(capped >= 30_000 && capped <= 60_000, "delay: " + capped);
+    }
+    assertEquals(0, SardineInitializer.backoffDelay(3, 0, 60_000));
+  }
+
+  @Test
+  void testCanAccessBaseUrl() throws Exception {
+    HttpServer server = startServer();
+    DavConf davConf = mock(DavConf.class);
+    when(davConf.user()).thenReturn("user");
+    when(davConf.password()).thenReturn("password");
+    when(davConf.getHttp()).thenReturn(DavConf.Http.DEFAULT);
+    when(davConf.getTransport()).thenReturn(DavConf.Transport.SARDINE);
+    when(davConf.getBaseUrl()).thenReturn("http://localhost:" + server.getAddress().getPort());
+    when(davConf.maxRetries()).thenReturn(3);
+    when(davConf.getCircuitOpenDuration()).thenReturn(Duration.ofHours(1));
+    SardineInitializer sardineInitializer = new SardineInitializer(davConf, SyncMetrics.inMemory());
+    try {
+      // a successful probe is valid for the run
+      assertTrue(sardineInitializer.beginRun());
+      assertTrue(sardineInitializer.canAccessBaseUrl());
+      assertTrue(sardineInitializer.canAccessBaseUrl());
+      assertEquals(1, sardineInitializer.getAndResetRequestStats().requests());
+
+      // the server is down: the circuit breaker opens after all attempts
+      server.stop(0);
+      assertTrue(sardineInitializer.beginRun());
+      assertFalse(sardineInitializer.canAccessBaseUrl());
+      assertFalse(sardineInitializer.canAccessBaseUrl());
+      assertFalse(sardineInitializer.beginRun());
+    } finally {
+      sardineInitializer.destroy();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StateFileTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void testJoinAndSplit() {
+    String[] fields = {"a\tb", "c\\d", "e\nf\r", "", null};
+    String line = StateFile.join(fields);
+
+    assertFalse(line.contains("\n"));
+    assertArrayEquals(fields, StateFile.split(line));
+  }
+
+  @Test
+  void testWriteAndRead() throws Exception {
+    Path file = dir.resolve("sub").resolve("state.tsv");
+    StateFile.write(file, "test", List.of(new String[] {"x", "1"}, new String[] {"y", "2\t3"}));
+    StateFile.write(file, "test", List.<String[]>of(new String[] {"z", "4"}));
+
+    List<String[]> records = new ArrayList<>();
+    assertTrue(StateFile.read(file, records::add));
+    assertEquals(1, records.size());
+    assertArrayEquals(new String[] {"z", "4"}, records.get(0));
+    try (var files = Files.list(file.getParent())) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  void testReadMissing() throws Exception {
+    assertFalse(StateFile.read(dir.resolve("missing.tsv"), fields -> { }));
+  }
+}
@@ -0,0 +1,105 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codes.thischwa.bcs.Contact;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+import org.junit.jupiter.api.Test;
+
+class SyncDiffTest {
+
+  // an event is outdated if its hash differs from the display name of the contact
+  private static final BiPredicate<Contact, EventRef> CHANGED =
+      (contact, event) -> !contact.displayName().equals(event.hash());
+
+  private static Contact contact(String uid, String displayName) {
+    return new Contact("First", "Last", displayName, MonthDay.of(4, 15), uid);
+  }
+
+  private static EventRef event(String uid, String hash) {
+    return new EventRef(uid, LocalDate.of(2000, 4, 15), "/cal/" + uid + ".ics", "\"1\"", hash);
+  }
+
+  @Test
+  void testDiff() {
+    List<Contact> contacts = List.of(contact("c", "C"), contact("a", "A"), contact("d", "D2"), contact("f", "F"));
+    List<EventRef> events = List.of(event("e", "E"), event("d", "D"), event("a", "A"), event("b", "B"));
+
+    SyncPlan plan = new SyncDiff(CHANGED).diff(contacts, events);
+
+    assertEquals(List.of(contact("c", "C"), contact("f", "F")), plan.creates());
+    assertEquals(List.of(new SyncPlan.Update(contact("d", "D2"), event("d", "D"))), plan.updates());
+    assertEquals(List.of(event("b", "B"), event("e", "E")), plan.deletes());
+    assertEquals(5, plan.size());
+    assertEquals("2 to create, 1 to update, 2 to delete", plan.toString());
+  }
+
+  @Test
+  void testDiffUpToDate() {
+    SyncPlan plan = new SyncDiff(CHANGED)
+        .diff(List.of(contact("a", "A")), List.of(event("a", "A")));
+
+    assertTrue(plan.isEmpty());
+  }
+
+  @Test
+  void testDiffBirthdayChanged() {
+    Contact moved = new Contact("First", "Last", "A", MonthDay.of(4, 16), "a");
+
+    SyncPlan plan = new SyncDiff((contact, event) -> !CalUtil.isBirthdayEquals(event, contact))
+        .diff(List.of(moved), List.of(event("a", "A")));
+
+    assertEquals(List.of(new SyncPlan.Update(moved, event("a", "A"))), plan.updates());
+  }
+
+  @Test
+  void testDiffDuplicateAndNullIdentifiers() {
+    Contact noIdentifier = new Contact("No", "Id", "No Id", MonthDay.of(5, 20), null);
+    List<Contact> contacts = List.of(contact("a", "A"), contact("a", "A2"), noIdentifier);
+
+    SyncPlan plan = new SyncDiff(CHANGED).diff(contacts, List.of(event("a", "A")));
+
+    // only the first contact with the identifier is compared with the event, it's up to date
+    assertEquals(List.of(noIdentifier), plan.creates());
+    assertTrue(plan.updates().isEmpty());
+    assertTrue(plan.deletes().isEmpty());
+  }
+
+  @Test
+  void testDiffDuplicateIdentifiersWithoutEvent() {
+    List<Contact> contacts = List.of(contact("b", "B"), contact("a", "A"), contact("b", "B2"), contact("b", "B3"));
+
+    SyncPlan plan = new SyncDiff(CHANGED).diff(contacts, List.of());
+
+    // the event of an identifier is created once, by the first contact
+    assertEquals(List.of(contact("a", "A"), contact("b", "B")), plan.creates());
+    assertTrue(plan.updates().isEmpty());
+  }
+
+  @Test
+  void testDiffReverseOrder() {
+    List<Contact> contacts = new ArrayList<>();
+    List<EventRef> events = new ArrayList<>();
+    for (int i = 999; i >= 0; i--) {
+      String uid = "uid-%04d".formatted(i);
+      if (i % 10 != 0) {
+        contacts.add(contact(uid, i % 10 == 1 ? "changed" : uid));
+      }
+      if (i % 10 != 9) {
+        events.add(event(uid, uid));
+      }
+    }
+
+    SyncPlan plan = new SyncDiff(CHANGED).diff(contacts, events);
+
+    assertEquals(100, plan.creates().size());
+    assertEquals(100, plan.updates().size());
+    assertEquals(100, plan.deletes().size());
+    assertEquals(event("uid-0000", "uid-0000"), plan.deletes().get(0));
+  }
+}
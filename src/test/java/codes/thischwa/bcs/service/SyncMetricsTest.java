@@ -0,0 +1,112 @@
+package codes.thischwa.bcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import codes.thischwa.bcs.conf.BcsConf;
+import com.github.sardine.impl.SardineException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class SyncMetricsTest {
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+  private final SyncMetrics metrics = new SyncMetrics(registry,
+      Clock.fixed(Instant.parse("2024-05-01T10:00:00Z"), ZoneOffset.UTC));
+
+  @Test
+  void testCounters() {
+    metrics.contactSeen(true);
+    metrics.contactSeen(false);
+    metrics.eventWritten(true);
+    metrics.eventWritten(false);
+    metrics.eventWritten(false);
+    metrics.eventDeleted();
+    metrics.failure("upload");
+    metrics.failure("upload");
+    metrics.failure("sync");
+
+    assertEquals(2, registry.get("bcs.contacts.seen").counter().count());
+    assertEquals(1, registry.get("bcs.contacts.birthday").counter().count());
+    assertEquals(1, registry.get("bcs.events").tag("operation", "created").counter().count());
+    assertEquals(2, registry.get("bcs.events").tag("operation", "updated").counter().count());
+    assertEquals(1, registry.get("bcs.events").tag("operation", "deleted").counter().count());
+    assertEquals(2, registry.get("bcs.failures").tag("type", "upload").counter().count());
+    assertEquals(1, registry.get("bcs.failures").tag("type", "sync").counter().count());
+  }
+
+  @Test
+  void testLastSuccess() {
+    assertEquals(0, registry.get("bcs.sync.last.success").gauge().value());
+    metrics.syncSucceeded();
+    assertEquals(Instant.parse("2024-05-01T10:00:00Z").getEpochSecond(),
+        registry.get("bcs.sync.last.success").gauge().value());
+  }
+
+  @Test
+  void testMeteredTransport() throws Exception {
+    DavTransport delegate = mock(DavTransport.class);
+    when(delegate.get("http://dav/card.vcf")).thenReturn(new ByteArrayInputStream(new byte[42]));
+    when(delegate.getAsync(any(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(new ByteArrayInputStream(new byte[8])));
+    doThrow(new SardineException("Forbidden", 403, "Forbidden")).when(delegate).delete("http://dav/event.ics");
+    DavTransport transport = new MeteredDavTransport(delegate, metrics);
+
+    try (InputStream in = transport.get("http://dav/card.vcf")) {
+      assertEquals(42, in.readAllBytes().length);
+    }
+    try (InputStream in = transport.getAsync("http://dav/card2.vcf", Map.of()).join()) {
+      in.readAllBytes();
+    }
+    transport.put("http://dav/event.ics", new byte[100], Map.of());
+    assertThrows(IOException.class, () -> transport.delete("http://dav/event.ics"));
+
+    assertEquals(2, registry.get("bcs.sync.phase").tag("phase", "get").timer().count());
+    assertEquals(1, registry.get("bcs.sync.phase").tag("phase", "upload").timer().count());
+    // a failed request is timed, too
+    assertEquals(1, registry.get("bcs.sync.phase").tag("phase", "delete").timer().count());
+    assertEquals(50, registry.get("bcs.transfer.bytes").tag("direction", "received").summary().totalAmount());
+    assertEquals(100, registry.get("bcs.transfer.bytes").tag("direction", "sent").summary().totalAmount());
+  }
+
+  @Test
+  void testPrometheusEndpoint() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    SyncMetrics exported = new SyncMetrics(
+        new BcsConf("BCS", "Birthday", "0 30 4 * * *", false, null, null, port));
+    try {
+      exported.eventWritten(true);
+      HttpResponse<String> response = HttpClient.newHttpClient().send(
+          HttpRequest.newBuilder(URI.create("http://localhost:" + port + SyncMetrics.METRICS_PATH)).build(),
+          HttpResponse.BodyHandlers.ofString());
+      assertEquals(200, response.statusCode());
+      assertTrue(response.body().contains("bcs_events_total{operation=\"created\"} 1.0"), response.body());
+      assertTrue(response.body().contains("bcs_sync_phase_seconds_count{phase=\"diff\"} 0"), response.body());
+    } finally {
+      exported.destroy();
+    }
+  }
+}